@@ -1,13 +1,18 @@
 package org.ovirt.vdsm.jsonrpc.client;
 
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.logException;
+import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.toMap;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.ovirt.vdsm.jsonrpc.client.utils.JsonSlice;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,21 +23,34 @@ import org.slf4j.LoggerFactory;
 public class EventDecomposer {
     private static Logger log = LoggerFactory.getLogger(ResponseDecomposer.class);
     private static ObjectMapper mapper = new ObjectMapper();
+    private final ObjectReader reader;
 
     public EventDecomposer() {
         mapper.configure(DeserializationFeature.USE_JAVA_ARRAY_FOR_JSON_ARRAY, true);
+        this.reader = mapper.readerFor(new TypeReference<Map<String, Object>>() {
+        });
     }
 
     /**
-     * Decomposes an event to a map.
+     * Decomposes an event to a map. Parameters which were not parsed yet are read directly from the received
+     * content, otherwise their tree is converted.
      * @param event represents event received.
      * @return Decomposed event as <code>Map</code>.
      */
     public Map<String, Object> decompose(JsonRpcEvent event) {
         try {
-            return mapper.readValue(mapper.writeValueAsBytes(event.getParams()),
-                    new TypeReference<Map<String, Object>>() {
-                    });
+            JsonSlice raw = event.getRawParams();
+            if (raw != null && !raw.isParsed()) {
+                return raw.readValue(this.reader);
+            }
+            JsonNode params = event.getParams();
+            if (params == null || params.isNull()) {
+                return null;
+            }
+            if (!params.isObject()) {
+                throw new IOException("Event parameters are not an object");
+            }
+            return toMap(params, new LinkedHashMap<>());
         } catch (IOException e) {
             logException(log, "Event decomposition failed", e);
             return null;
@@ -0,0 +1,15 @@
+package org.ovirt.vdsm.jsonrpc.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Generates ids of requests built by {@link RequestBuilder}.
+ *
+ */
+public interface IdGenerator {
+
+    /**
+     * @return Id which is unique among requests sent by this process. It is called concurrently.
+     */
+    JsonNode next();
+}
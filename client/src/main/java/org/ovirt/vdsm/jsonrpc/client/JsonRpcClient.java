@@ -1,20 +1,26 @@
 package org.ovirt.vdsm.jsonrpc.client;
 
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.getTimeout;
-import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.jsonToByteArray;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.mapValues;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import org.ovirt.vdsm.jsonrpc.client.internal.BatchCall;
 import org.ovirt.vdsm.jsonrpc.client.internal.Call;
 import org.ovirt.vdsm.jsonrpc.client.internal.ClientPolicy;
 import org.ovirt.vdsm.jsonrpc.client.internal.JsonRpcCall;
+import org.ovirt.vdsm.jsonrpc.client.internal.RequestCoalescer;
 import org.ovirt.vdsm.jsonrpc.client.internal.ResponseTracker;
+import org.ovirt.vdsm.jsonrpc.client.internal.TypedCall;
 import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient;
 import org.ovirt.vdsm.jsonrpc.client.utils.JsonResponseUtil;
 import org.ovirt.vdsm.jsonrpc.client.utils.ResponseTracking;
@@ -31,6 +37,7 @@ import org.slf4j.LoggerFactory;
 public class JsonRpcClient {
     private final Logger log = LoggerFactory.getLogger(JsonRpcClient.class);
     private final ReactorClient client;
+    private final RequestCoalescer coalescer;
     private ResponseTracker tracker;
     private ClientPolicy policy;
     private ScheduledExecutorService executorService;
@@ -44,6 +51,7 @@ public class JsonRpcClient {
     public JsonRpcClient(ReactorClient client, ResponseTracker tracker) {
         this.client = client;
         this.tracker = tracker;
+        this.coalescer = new RequestCoalescer(this::sendCoalesced);
     }
 
     public void setClientRetryPolicy(ClientPolicy policy) {
@@ -76,7 +84,8 @@ public class JsonRpcClient {
     }
 
     /**
-     * Sends single request and returns {@link Future} representation of {@link JsonRpcResponse}.
+     * Sends single request and returns {@link Future} representation of {@link JsonRpcResponse}. When the retry
+     * policy enables coalescing the request may be sent in a batch together with requests of other threads.
      *
      * @param req - Request which is about to be sent.
      * @return Future representation of the response or <code>null</code> if sending failed.
@@ -88,7 +97,7 @@ public class JsonRpcClient {
         this.tracker.registerCall(req, call);
         retryCall(req, call);
         try {
-            this.getClient().sendMessage(jsonToByteArray(req.toJson()));
+            send(req);
         } finally {
             retryCall(req, call);
         }
@@ -102,7 +111,7 @@ public class JsonRpcClient {
         retryCall(req, call);
         boolean exceptionOccurred = false;
         try {
-            this.getClient().sendMessage(jsonToByteArray(req.toJson()));
+            send(req);
         } catch (ClientConnectionException ex) {
             exceptionOccurred = true;
             throw ex;
@@ -116,25 +125,135 @@ public class JsonRpcClient {
         return call;
     }
 
-    public void removeCall(Future<JsonRpcResponse> call) {
+    /**
+     * Sends requests in a single message and returns {@link BatchCall} which completes when all the responses
+     * arrive. Each request is tracked, timed out and retried by its id so futures of particular requests are
+     * available from {@link BatchCall#getCalls()}.
+     *
+     * @param requests - Requests which are about to be sent.
+     * @return Future representation of the responses in the order of the requests.
+     * @throws ClientConnectionException is thrown when connection issues occur.
+     * @throws RequestAlreadySentException when any of the requests is attempted to be send twice.
+     */
+    public BatchCall batchCall(List<JsonRpcRequest> requests) throws ClientConnectionException {
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("Batch has to contain at least one request");
+        }
+        final BatchCall batch = new BatchCall(requests);
+        final List<Call> calls = batch.getCalls();
+        for (int i = 0; i < calls.size(); i++) {
+            try {
+                this.tracker.registerCall(requests.get(i), calls.get(i));
+            } catch (RequestAlreadySentException e) {
+                calls.subList(0, i).forEach(this::removeCall);
+                throw e;
+            }
+        }
+        for (int i = 0; i < calls.size(); i++) {
+            retryCall(requests.get(i), calls.get(i));
+        }
+        try {
+            send(requests);
+        } finally {
+            for (int i = 0; i < calls.size(); i++) {
+                retryCall(requests.get(i), calls.get(i));
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Sends single request and returns {@link Future} representation of its result bound to provided type.
+     *
+     * @param req - Request which is about to be sent.
+     * @param type - Class of the result.
+     * @param <T> - Type of the result.
+     * @return Future representation of the result which fails with {@link JsonRpcErrorException} when error
+     *         response arrives.
+     * @throws ClientConnectionException is thrown when connection issues occur.
+     * @throws RequestAlreadySentException when the same requests is attempted to be send twice.
+     */
+    public <T> Future<T> call(JsonRpcRequest req, Class<T> type) throws ClientConnectionException {
+        return new TypedCall<>((Call) call(req), TypeFactory.defaultInstance().constructType(type));
+    }
+
+    /**
+     * Sends single request and returns {@link Future} representation of its result bound to provided generic type.
+     *
+     * @param req - Request which is about to be sent.
+     * @param type - Type reference of the result.
+     * @param <T> - Type of the result.
+     * @return Future representation of the result which fails with {@link JsonRpcErrorException} when error
+     *         response arrives.
+     * @throws ClientConnectionException is thrown when connection issues occur.
+     * @throws RequestAlreadySentException when the same requests is attempted to be send twice.
+     */
+    public <T> Future<T> call(JsonRpcRequest req, TypeReference<T> type) throws ClientConnectionException {
+        return new TypedCall<>((Call) call(req), TypeFactory.defaultInstance().constructType(type));
+    }
+
+    public void removeCall(Future<?> call) {
+        if (BatchCall.class.isInstance(call)) {
+            ((BatchCall) call).getCalls().forEach(this::removeCall);
+            return;
+        }
+        if (TypedCall.class.isInstance(call)) {
+            call = ((TypedCall<?>) call).getCall();
+        }
         if (!Call.class.isInstance(call)) {
             return;
         }
         this.tracker.removeCall(((Call)call).getId());
     }
 
-    private void retryCall(final JsonRpcRequest request, final JsonRpcCall call) {
+    private void retryCall(final JsonRpcRequest request, final Call call) {
         ResponseTracking tracking =
                 new ResponseTracking(request, call, new RetryContext(policy), getTimeout(this.policy.getRetryTimeOut(),
                         this.policy.getTimeUnit()), this.client, !Objects.equals(request.getMethod(), "Host.ping"));
         this.tracker.registerTrackingRequest(request, tracking);
+        if (call.isDone()) {
+            // the response arrived before the request was registered again
+            this.tracker.removeCall(request.getId());
+        }
+    }
+
+    private void send(JsonRpcRequest req) throws ClientConnectionException {
+        if (this.policy.isCoalescing()) {
+            this.coalescer.send(req, this.policy.getCoalescingWindow(), TimeUnit.MICROSECONDS,
+                    this.policy.getCoalescingLimit());
+            return;
+        }
+        final ReactorClient client = this.getClient();
+        sendMessage(client, req.toByteArray(client.getPayloadFormat()));
+    }
+
+    private void send(List<JsonRpcRequest> requests) throws ClientConnectionException {
+        final ReactorClient client = this.getClient();
+        sendMessage(client, client.getPayloadFormat().toByteArray(requests));
+    }
+
+    private void sendCoalesced(List<JsonRpcRequest> requests) throws ClientConnectionException {
+        if (requests.size() == 1) {
+            final ReactorClient client = this.getClient();
+            sendMessage(client, requests.get(0).toByteArray(client.getPayloadFormat()));
+        } else {
+            send(requests);
+        }
+    }
+
+    private static void sendMessage(ReactorClient client, byte[] message) throws ClientConnectionException {
+        try {
+            client.sendMessage(message);
+        } catch (RejectedExecutionException e) {
+            throw new ClientConnectionException("Unable to send message to " + client.getHostname(), e);
+        }
     }
 
     public ReactorClient getClient() throws ClientConnectionException {
         if (this.client.isOpen()) {
             return this.client;
         }
-        this.client.connect();
+        this.client.connect(this.tracker.hasTrackedRequests(this.client.getHostname()));
         return this.client;
     }
 
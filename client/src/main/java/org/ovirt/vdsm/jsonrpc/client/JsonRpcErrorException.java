@@ -0,0 +1,29 @@
+package org.ovirt.vdsm.jsonrpc.client;
+
+import java.util.Map;
+
+/**
+ * Exception used to inform user that a typed call was answered with an error response.
+ *
+ */
+public class JsonRpcErrorException extends Exception {
+
+    private static final long serialVersionUID = -2087455396386264325L;
+    private final Map<String, Object> error;
+
+    /**
+     * @param error - Decomposed error containing <code>code</code> and <code>message</code>.
+     */
+    public JsonRpcErrorException(Map<String, Object> error) {
+        super(error != null ? String.valueOf(error.get("message")) : null);
+        this.error = error;
+    }
+
+    public Map<String, Object> getError() {
+        return this.error;
+    }
+
+    public Object getCode() {
+        return this.error != null ? this.error.get("code") : null;
+    }
+}
@@ -6,7 +6,9 @@ import java.util.Map;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.ovirt.vdsm.jsonrpc.client.utils.JsonSlice;
 import org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils;
+import org.ovirt.vdsm.jsonrpc.client.utils.PayloadFormat;
 
 /**
  * Java bean representation of an event.
@@ -19,6 +21,7 @@ public class JsonRpcEvent {
     private static final ObjectMapper MAPPER = new ObjectMapper();
     private String method;
     private JsonNode params;
+    private JsonSlice rawParams;
     private long arrivalTime;
 
     /**
@@ -32,6 +35,17 @@ public class JsonRpcEvent {
         this.params = params;
     }
 
+    /**
+     * Creates notification object which parameters are parsed when they are read for the first time.
+     *
+     * @param method - Name of the method which will be executed remotely.
+     * @param params - Raw content of the parameters.
+     */
+    public JsonRpcEvent(String method, JsonSlice params) {
+        this.method = method;
+        this.rawParams = params;
+    }
+
     /**
      * @return Id of this event which is used to match a subscriber.
      */
@@ -47,11 +61,19 @@ public class JsonRpcEvent {
      * @return Content of an event.
      */
     public JsonNode getParams() {
-        return this.params;
+        return this.rawParams != null ? this.rawParams.getNode() : this.params;
+    }
+
+    /**
+     * @return Raw content of the parameters or <code>null</code> when they were provided as a tree.
+     */
+    public JsonSlice getRawParams() {
+        return this.rawParams;
     }
 
     public void setParams(JsonNode node) {
         this.params = node;
+        this.rawParams = null;
     }
 
     /**
@@ -111,7 +133,7 @@ public class JsonRpcEvent {
      */
     public static JsonRpcEvent fromByteArray(byte[] message) {
         try {
-            return fromJsonNode(MAPPER.readTree(message));
+            return fromJsonNode(PayloadFormat.readTree(message));
         } catch (IOException e) {
             return null;
         }
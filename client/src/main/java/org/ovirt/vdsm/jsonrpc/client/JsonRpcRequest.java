@@ -3,9 +3,11 @@ package org.ovirt.vdsm.jsonrpc.client;
 import java.io.IOException;
 import java.util.Map;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.ovirt.vdsm.jsonrpc.client.utils.PayloadFormat;
 
 /**
  * Java bean representation of the request.
@@ -16,6 +18,7 @@ public class JsonRpcRequest {
     private String method;
     private JsonNode params;
     private JsonNode id;
+    private volatile Encoded encoded;
 
     /**
      * Creates request object.
@@ -35,6 +38,7 @@ public class JsonRpcRequest {
 
     public void setMethod(String method) {
         this.method = method;
+        this.encoded = null;
     }
 
     public JsonNode getParams() {
@@ -43,6 +47,7 @@ public class JsonRpcRequest {
 
     public void setParams(JsonNode node) {
         this.params = node;
+        this.encoded = null;
     }
 
     public JsonNode getId() {
@@ -51,6 +56,7 @@ public class JsonRpcRequest {
 
     public void setId(JsonNode node) {
         this.id = node;
+        this.encoded = null;
     }
 
     public String getPlainId() {
@@ -100,7 +106,7 @@ public class JsonRpcRequest {
      */
     public static JsonRpcRequest fromByteArray(byte[] message) {
         try {
-            return fromJsonNode(MAPPER.readTree(message));
+            return fromJsonNode(PayloadFormat.readTree(message));
         } catch (IOException e) {
             return null;
         }
@@ -131,6 +137,62 @@ public class JsonRpcRequest {
         return node;
     }
 
+    /**
+     * Writes this request by provided generator without building its tree.
+     *
+     * @param generator - Generator to write to.
+     * @throws IOException when writing fails.
+     */
+    public void writeTo(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("jsonrpc", "2.0");
+        generator.writeFieldName("method");
+        if (getMethod() == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(getMethod());
+        }
+        generator.writeFieldName("params");
+        if (getParams() == null) {
+            generator.writeNull();
+        } else {
+            generator.writeTree(getParams());
+        }
+        generator.writeFieldName("id");
+        if (getId() == null) {
+            generator.writeNull();
+        } else {
+            generator.writeTree(getId());
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Encodes this request in provided format. The content is encoded when the request is sent for the first
+     * time and reused when it is retried so parameters changed in place afterwards are not reflected.
+     *
+     * @param format - Format of the content.
+     * @return Encoded request.
+     */
+    public byte[] toByteArray(PayloadFormat format) {
+        Encoded current = this.encoded;
+        if (current == null || current.format != format) {
+            current = new Encoded(format, format.toByteArray(this));
+            this.encoded = current;
+        }
+        return current.content;
+    }
+
+    private static final class Encoded {
+        private final PayloadFormat format;
+        private final byte[] content;
+
+        private Encoded(PayloadFormat format, byte[] content) {
+            this.format = format;
+            this.content = content;
+        }
+    }
+
     @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
     public String toString() {
@@ -9,6 +9,8 @@ import java.util.Objects;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.ovirt.vdsm.jsonrpc.client.utils.JsonSlice;
+import org.ovirt.vdsm.jsonrpc.client.utils.PayloadFormat;
 
 /**
  * Java bean representing response object.
@@ -17,6 +19,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 public final class JsonRpcResponse {
     private static final ObjectMapper MAPPER = new ObjectMapper();
     private JsonNode result;
+    private JsonSlice rawResult;
     private JsonNode error;
     private JsonNode id;
 
@@ -33,12 +36,31 @@ public final class JsonRpcResponse {
         this.id = id;
     }
 
+    /**
+     * Creates successful response which result is parsed when it is read for the first time.
+     * @param result - Raw content of the result.
+     * @param id - Unique identifier of the message which is exactly the same
+     *               as in request.
+     */
+    public JsonRpcResponse(JsonSlice result, JsonNode id) {
+        this.rawResult = result;
+        this.id = id;
+    }
+
     public JsonNode getResult() {
-        return this.result;
+        return this.rawResult != null ? this.rawResult.getNode() : this.result;
+    }
+
+    /**
+     * @return Raw content of the result or <code>null</code> when the result was provided as a tree.
+     */
+    public JsonSlice getRawResult() {
+        return this.rawResult;
     }
 
     public void setResult(JsonNode result) {
         this.result = result;
+        this.rawResult = null;
     }
 
     public JsonNode getError() {
@@ -64,7 +86,7 @@ public final class JsonRpcResponse {
      */
     public static JsonRpcResponse fromByteArray(byte[] message) {
         try {
-            return fromJsonNode(MAPPER.readTree(message));
+            return fromJsonNode(PayloadFormat.readTree(message));
         } catch (IOException e) {
             return null;
         }
@@ -142,11 +164,12 @@ public final class JsonRpcResponse {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         JsonRpcResponse that = (JsonRpcResponse) o;
-        return Objects.equals(result, that.result) && Objects.equals(error, that.error) && Objects.equals(id, that.id);
+        return Objects.equals(getResult(), that.getResult()) && Objects.equals(error, that.error)
+                && Objects.equals(id, that.id);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(result, error, id);
+        return Objects.hash(getResult(), error, id);
     }
 }
@@ -2,11 +2,12 @@ package org.ovirt.vdsm.jsonrpc.client;
 
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Objects;
+
+import org.ovirt.vdsm.jsonrpc.client.utils.SequentialIdGenerator;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
 
 /**
  * Utility class which helps to build {@link JsonRpcRequest} by providing
@@ -16,6 +17,7 @@ import com.fasterxml.jackson.databind.node.TextNode;
 public class RequestBuilder {
 
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static volatile IdGenerator idGenerator = SequentialIdGenerator.getDefault();
     private final ObjectNode parameters;
     private final String methodName;
 
@@ -119,11 +121,19 @@ public class RequestBuilder {
 
     /**
      * Builds {@link JsonRpcRequest} based on provided method name, parameter and
-     * generates id using {@link UUID}.
+     * generates id using {@link IdGenerator}.
      * @return Request object.
      */
     public JsonRpcRequest build() {
-        final TextNode id = this.parameters.textNode(UUID.randomUUID().toString());
-        return new JsonRpcRequest(this.methodName, this.parameters, id);
+        return new JsonRpcRequest(this.methodName, this.parameters, idGenerator.next());
+    }
+
+    /**
+     * Sets generator of ids used by all builders. {@link SequentialIdGenerator#getDefault()} is used by default
+     * and its ids are tracked by their sequence numbers.
+     * @param generator - Generator of request ids.
+     */
+    public static void setIdGenerator(IdGenerator generator) {
+        idGenerator = Objects.requireNonNull(generator);
     }
 }
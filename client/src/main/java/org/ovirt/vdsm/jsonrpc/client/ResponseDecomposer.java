@@ -1,16 +1,20 @@
 package org.ovirt.vdsm.jsonrpc.client;
 
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.logException;
+import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.mapValues;
+import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.toJavaValue;
 
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.HashMap;
 import java.util.Map;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.ovirt.vdsm.jsonrpc.client.internal.JsonRpcError;
+import org.ovirt.vdsm.jsonrpc.client.utils.JsonSlice;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +26,7 @@ public class ResponseDecomposer {
     private static Logger log = LoggerFactory.getLogger(ResponseDecomposer.class);
     private static ObjectMapper mapper = new ObjectMapper();
     private JsonRpcResponse response;
+    private final ObjectReader reader;
 
     /**
      * Creates decomposer for a response.
@@ -30,6 +35,7 @@ public class ResponseDecomposer {
     public ResponseDecomposer(JsonRpcResponse response) {
         this.response = response;
         mapper.configure(DeserializationFeature.USE_JAVA_ARRAY_FOR_JSON_ARRAY, true);
+        this.reader = mapper.readerFor(Object.class);
     }
 
     /**
@@ -41,7 +47,8 @@ public class ResponseDecomposer {
     }
 
     /**
-     * Decomposes response to provided type.
+     * Decomposes response to provided type. Result which was not parsed yet is read directly from the received
+     * content, otherwise its tree is converted.
      * @param clazz - Class to which response will be decomposed.
      * @param <T> -Type of the object to which response will be decomposed.
      * @return Decomposed response of provided type.
@@ -49,9 +56,9 @@ public class ResponseDecomposer {
     @SuppressWarnings("unchecked")
     public <T> T decomposeResponse(Class<T> clazz) {
         try {
-            T t = mapper.readValue(mapper.writeValueAsBytes(this.response.getResult()),
-                    new TypeReference<T>() {
-                    });
+            JsonSlice raw = this.response.getRawResult();
+            T t = raw != null && !raw.isParsed() ? raw.readValue(this.reader)
+                    : (T) toJavaValue(this.response.getResult());
             if (String.class.equals(clazz) && !String.class.isInstance(t)) {
                 t = (T) t.toString();
             }
@@ -90,16 +97,13 @@ public class ResponseDecomposer {
      * @return Decomposed response error.
      */
     public Map<String, Object> decomposeError() {
-        try {
-            Map<String, Object> status = mapper.readValue(mapper.writeValueAsBytes(this.response.getError()),
-                    new TypeReference<HashMap<String, Object>>() {
-                    });
-            Map<String, Object> map = new HashMap<>();
-            map.put("status", status);
-            return map;
-        } catch (IOException e) {
-            logException(log, "Response decomposition failed", e);
+        JsonNode error = this.response.getError();
+        if (error != null && !error.isNull() && !error.isObject()) {
+            logException(log, "Response decomposition failed", new IOException("Error is not an object"));
             return new HashMap<String, Object>();
         }
+        Map<String, Object> map = new HashMap<>();
+        map.put("status", mapValues(error));
+        return map;
     }
 }
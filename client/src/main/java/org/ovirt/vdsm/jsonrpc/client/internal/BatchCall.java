@@ -0,0 +1,91 @@
+package org.ovirt.vdsm.jsonrpc.client.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcRequest;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * <code>BatchCall</code> holds responses for requests sent together in a single message. Each request is
+ * represented by its own {@link Call} so it is completed, timed out and retried independently of the others.
+ *
+ */
+public class BatchCall implements Future<List<JsonRpcResponse>> {
+
+    private final List<Call> calls;
+
+    public BatchCall(List<JsonRpcRequest> requests) {
+        List<Call> calls = new ArrayList<>(requests.size());
+        for (JsonRpcRequest request : requests) {
+            calls.add(new Call(request));
+        }
+        this.calls = Collections.unmodifiableList(calls);
+    }
+
+    /**
+     * @return Calls of the requests in the order they were sent.
+     */
+    public List<Call> getCalls() {
+        return this.calls;
+    }
+
+    /**
+     * @param id - Id of a request in the batch.
+     * @return Call of the request or <code>null</code> when it is not part of the batch.
+     */
+    public Future<JsonRpcResponse> getCall(JsonNode id) {
+        for (Call call : this.calls) {
+            if (call.getId().equals(id)) {
+                return call;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    /**
+     * @return Responses in the order of the requests.
+     */
+    @Override
+    public List<JsonRpcResponse> get() throws InterruptedException {
+        List<JsonRpcResponse> responses = new ArrayList<>(this.calls.size());
+        for (Call call : this.calls) {
+            responses.add(call.get());
+        }
+        return responses;
+    }
+
+    /**
+     * @return Responses in the order of the requests.
+     */
+    @Override
+    public List<JsonRpcResponse> get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<JsonRpcResponse> responses = new ArrayList<>(this.calls.size());
+        for (Call call : this.calls) {
+            responses.add(call.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+        }
+        return responses;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.calls.stream().allMatch(Call::isDone);
+    }
+}
@@ -3,9 +3,14 @@ package org.ovirt.vdsm.jsonrpc.client.internal;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.ovirt.vdsm.jsonrpc.client.reactors.ConnectionAdmission;
+import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.FrameDecoder;
+import org.ovirt.vdsm.jsonrpc.client.utils.PayloadFormat;
+
 /**
  * Java bean which provide information how retry logic should work.
  *
@@ -21,6 +26,13 @@ public class ClientPolicy {
 
     private TimeUnit timeUnit = TimeUnit.MILLISECONDS;
     private String identifier;
+    private ConnectionAdmission connectionAdmission;
+    private volatile int streamingThreshold;
+    private volatile int compressionThreshold;
+    private volatile PayloadFormat payloadFormat = PayloadFormat.JSON;
+    private volatile int coalescingWindow;
+    private volatile int coalescingLimit;
+    private volatile int maxFrameLength = FrameDecoder.DEFAULT_MAX_FRAME_LENGTH;
 
     /**
      * Create policy using provided values.
@@ -145,9 +157,111 @@ public class ClientPolicy {
         this.isOutgoingHeartbeat.set(isHeartbeat && this.outgoingHeartbeat != 0);
     }
 
+    public ConnectionAdmission getConnectionAdmission() {
+        return this.connectionAdmission;
+    }
+
+    /**
+     * Sets admission control used when connecting. The same instance should be shared by policies of
+     * all clients. When not set connection attempts start immediately.
+     *
+     * @param connectionAdmission - admission control or <code>null</code>.
+     */
+    public void setConnectionAdmission(ConnectionAdmission connectionAdmission) {
+        this.connectionAdmission = connectionAdmission;
+    }
+
+    public int getStreamingThreshold() {
+        return this.streamingThreshold;
+    }
+
+    /**
+     * Sets the size from which message content is parsed while it is being received instead of being
+     * accumulated first.
+     *
+     * @param streamingThreshold - content length in bytes, <code>0</code> disables streaming.
+     */
+    public void setStreamingThreshold(int streamingThreshold) {
+        this.streamingThreshold = streamingThreshold;
+    }
+
+    public int getCompressionThreshold() {
+        return this.compressionThreshold;
+    }
+
+    /**
+     * Sets the size from which message content is compressed when the peer supports compression.
+     *
+     * @param compressionThreshold - content length in bytes, <code>0</code> disables compression.
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public PayloadFormat getPayloadFormat() {
+        return this.payloadFormat;
+    }
+
+    /**
+     * Sets the payload format to be offered to the peer. JSON is used when the peer does not support it.
+     */
+    public void setPayloadFormat(PayloadFormat payloadFormat) {
+        this.payloadFormat = Objects.requireNonNull(payloadFormat);
+    }
+
+    public int getCoalescingWindow() {
+        return this.coalescingWindow;
+    }
+
+    public int getCoalescingLimit() {
+        return this.coalescingLimit;
+    }
+
+    /**
+     * Enables merging of requests issued concurrently by different threads into a single batch message.
+     *
+     * @param coalescingWindow - how long in microseconds the first request of a batch waits for the others.
+     * @param coalescingLimit - maximal number of requests in a batch, value lower than <code>2</code> disables
+     *            coalescing.
+     */
+    public void setCoalescing(int coalescingWindow, int coalescingLimit) {
+        this.coalescingWindow = coalescingWindow;
+        this.coalescingLimit = coalescingLimit;
+    }
+
+    /**
+     * @return <code>true</code> when requests are coalesced into batches.
+     */
+    public boolean isCoalescing() {
+        return this.coalescingLimit > 1;
+    }
+
+    public int getMaxFrameLength() {
+        return this.maxFrameLength;
+    }
+
+    /**
+     * Sets the maximal length of received frames. Connection receiving a longer frame is closed.
+     *
+     * @param maxFrameLength - length in bytes including decompressed content.
+     */
+    public void setMaxFrameLength(int maxFrameLength) {
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("Maximal frame length has to be positive");
+        }
+        this.maxFrameLength = maxFrameLength;
+    }
+
     @Override
     public ClientPolicy clone() {
-        return new ClientPolicy(this.retryTimeOut, this.retryNumber, this.incomingHeartbeat, this.outgoingHeartbeat,
-                this.exceptions);
+        ClientPolicy policy = new ClientPolicy(this.retryTimeOut, this.retryNumber, this.incomingHeartbeat,
+                this.outgoingHeartbeat, this.exceptions);
+        policy.setConnectionAdmission(this.connectionAdmission);
+        policy.setStreamingThreshold(this.streamingThreshold);
+        policy.setCompressionThreshold(this.compressionThreshold);
+        policy.setPayloadFormat(this.payloadFormat);
+        policy.setCoalescing(this.coalescingWindow, this.coalescingLimit);
+        policy.setMaxFrameLength(this.maxFrameLength);
+        return policy;
     }
 }
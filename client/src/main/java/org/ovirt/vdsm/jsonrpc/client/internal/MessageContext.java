@@ -2,17 +2,32 @@ package org.ovirt.vdsm.jsonrpc.client.internal;
 
 import org.ovirt.vdsm.jsonrpc.client.JsonRpcClient;
 
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
 /**
- * Context containing a message and client.
+ * Context containing a message and client. The message is either raw content or tokens of content parsed
+ * while it was being received.
  *
  */
 public class MessageContext {
     private JsonRpcClient client;
     private byte[] message;
+    private TokenBuffer tokens;
+    private int size;
 
     public MessageContext(JsonRpcClient client, byte[] message) {
         this.client = client;
         this.message = message;
+        this.size = message != null ? message.length : 0;
+    }
+
+    /**
+     * @param size - length of the content the tokens were parsed from.
+     */
+    public MessageContext(JsonRpcClient client, TokenBuffer tokens, int size) {
+        this.client = client;
+        this.tokens = tokens;
+        this.size = size;
     }
 
     public JsonRpcClient getClient() {
@@ -22,4 +37,18 @@ public class MessageContext {
     public byte[] getMessage() {
         return message;
     }
+
+    /**
+     * @return Tokens of the message or <code>null</code> when only raw content is available.
+     */
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    /**
+     * @return Length of the received content in bytes.
+     */
+    public int getSize() {
+        return size;
+    }
 }
@@ -0,0 +1,120 @@
+package org.ovirt.vdsm.jsonrpc.client.internal;
+
+import java.io.IOException;
+
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcEvent;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
+import org.ovirt.vdsm.jsonrpc.client.utils.JsonSlice;
+import org.ovirt.vdsm.jsonrpc.client.utils.PayloadFormat;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+
+/**
+ * Routing fields of a single json-rpc message which are read by a streaming parser. The result of a response
+ * and the parameters of an event are only validated and kept as raw content so their tree is built when
+ * a consumer reads them.
+ *
+ */
+final class MessageEnvelope {
+    private static final ObjectMapper MAPPER = PayloadFormat.JSON.getMapper();
+    private final JsonNode id;
+    private final String method;
+    private final JsonSlice body;
+
+    private MessageEnvelope(JsonNode id, String method, JsonSlice body) {
+        this.id = id;
+        this.method = method;
+        this.body = body;
+    }
+
+    /**
+     * Reads routing fields of json content.
+     *
+     * @param content - json message.
+     * @return Envelope of the message or <code>null</code> when the message has to be processed as a tree
+     *         which is the case of batches, error responses and content which is not valid.
+     */
+    static MessageEnvelope read(byte[] content) {
+        // the non-blocking parser reports byte offsets even when field names are not canonicalized
+        try (JsonParser parser = MAPPER.getFactory().createNonBlockingByteArrayParser()) {
+            final ByteArrayFeeder feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+            feeder.feedInput(content, 0, content.length);
+            feeder.endOfInput();
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            String version = null;
+            JsonNode id = null;
+            String method = null;
+            String bodyName = null;
+            JsonSlice body = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.currentName();
+                final JsonToken value = parser.nextToken();
+                switch (name) {
+                case "jsonrpc":
+                    version = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    break;
+                case "id":
+                    id = value == JsonToken.VALUE_NULL ? NullNode.getInstance() : MAPPER.readTree(parser);
+                    break;
+                case "method":
+                    if (value != JsonToken.VALUE_STRING) {
+                        return null;
+                    }
+                    method = parser.getText();
+                    break;
+                case "error":
+                    if (value != JsonToken.VALUE_NULL) {
+                        return null;
+                    }
+                    break;
+                case "result":
+                case "params":
+                    if (body != null || !value.isStructStart()) {
+                        return null;
+                    }
+                    // the parser is right after the opening bracket
+                    final int start = (int) parser.currentLocation().getByteOffset() - 1;
+                    parser.skipChildren();
+                    final int end = (int) parser.currentLocation().getByteOffset();
+                    bodyName = name;
+                    body = new JsonSlice(content, start, end - start);
+                    break;
+                default:
+                    parser.skipChildren();
+                }
+            }
+            if (parser.nextToken() != null || !"2.0".equals(version) || body == null) {
+                return null;
+            }
+            final boolean event = id == null || id.isNull();
+            if (event && "params".equals(bodyName) && method != null && !method.isEmpty()) {
+                return new MessageEnvelope(null, method, body);
+            }
+            if (!event && "result".equals(bodyName) && method == null) {
+                return new MessageEnvelope(id, null, body);
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    boolean isEvent() {
+        return this.method != null;
+    }
+
+    JsonRpcEvent toEvent() {
+        return new JsonRpcEvent(this.method, this.body);
+    }
+
+    JsonRpcResponse toResponse() {
+        return new JsonRpcResponse(this.body, this.id);
+    }
+}
@@ -0,0 +1,85 @@
+package org.ovirt.vdsm.jsonrpc.client.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcRequest;
+
+/**
+ * Merges requests issued concurrently to a single client into batches so they are sent in a single message.
+ *
+ * The first request of a batch waits for the others up to the coalescing window and then sends the batch. When
+ * the batch reaches the limit before the window elapses it is sent right away by the thread which filled it.
+ * Other callers return immediately after adding their request so only the sending thread is notified about
+ * connection issues, the remaining requests are retried by {@link ResponseTracker}.
+ *
+ */
+public final class RequestCoalescer {
+
+    /**
+     * Sends coalesced requests.
+     */
+    public interface Sender {
+
+        /**
+         * @param requests - one or more requests to be sent in a single message.
+         * @throws ClientConnectionException when sending fails.
+         */
+        void send(List<JsonRpcRequest> requests) throws ClientConnectionException;
+    }
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition filled = this.lock.newCondition();
+    private final Sender sender;
+    private List<JsonRpcRequest> pending = new ArrayList<>();
+
+    public RequestCoalescer(Sender sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * Adds request to the current batch.
+     *
+     * @param request - Request which is about to be sent.
+     * @param window - How long the first request of a batch waits for the others.
+     * @param unit - Unit of the window.
+     * @param limit - Maximal number of requests in a batch.
+     * @throws ClientConnectionException when this thread sends the batch and sending fails.
+     */
+    public void send(JsonRpcRequest request, long window, TimeUnit unit, int limit)
+            throws ClientConnectionException {
+        final List<JsonRpcRequest> batch;
+        this.lock.lock();
+        try {
+            batch = this.pending;
+            batch.add(request);
+            if (batch.size() == 1 && limit > 1) {
+                long remaining = unit.toNanos(window);
+                while (this.pending == batch && batch.size() < limit && remaining > 0) {
+                    try {
+                        remaining = this.filled.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                if (this.pending != batch) {
+                    // the batch was filled and sent by other thread
+                    return;
+                }
+            } else if (batch.size() < limit) {
+                return;
+            }
+            this.pending = new ArrayList<>();
+            this.filled.signal();
+        } finally {
+            this.lock.unlock();
+        }
+        this.sender.send(batch);
+    }
+}
@@ -0,0 +1,83 @@
+package org.ovirt.vdsm.jsonrpc.client.internal;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient.ContentConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Parses message content while it is being received using non-blocking parser. Tokens are buffered
+ * as they are parsed so the content does not have to be accumulated. The tree is built from the tokens
+ * by the consumer of the callback so the reactor thread only tokenizes the content.
+ *
+ * Instances parse a single message and are used by the reactor thread.
+ */
+public class ResponseStreamParser implements ContentConsumer {
+    private static final Logger log = LoggerFactory.getLogger(ResponseStreamParser.class);
+    private final Consumer<TokenBuffer> callback;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final TokenBuffer tokens;
+    private IOException failure;
+
+    /**
+     * @param mapper - used to create the parser and the token buffer.
+     * @param callback - receives tokens of the whole content.
+     */
+    public ResponseStreamParser(ObjectMapper mapper, Consumer<TokenBuffer> callback) throws IOException {
+        this.callback = callback;
+        this.parser = mapper.getFactory().createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) this.parser.getNonBlockingInputFeeder();
+        this.tokens = new TokenBuffer(mapper, false);
+    }
+
+    @Override
+    public void accept(byte[] array, int offset, int length) {
+        if (this.failure != null) {
+            return;
+        }
+        try {
+            this.feeder.feedInput(array, offset, offset + length);
+            // the feeder does not copy the input so it has to be consumed before returning
+            drain();
+        } catch (IOException e) {
+            this.failure = e;
+        }
+    }
+
+    @Override
+    public void complete() {
+        try {
+            if (this.failure != null) {
+                throw this.failure;
+            }
+            this.feeder.endOfInput();
+            drain();
+            this.parser.close();
+            if (this.tokens.firstToken() == null) {
+                throw new IOException("Message content is empty");
+            }
+            this.callback.accept(this.tokens);
+        } catch (IOException e) {
+            log.warn("Exception thrown during message processing");
+            if (log.isDebugEnabled()) {
+                log.debug(e.getMessage(), e);
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = this.parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            this.tokens.copyCurrentEvent(this.parser);
+        }
+    }
+}
@@ -3,20 +3,21 @@ package org.ovirt.vdsm.jsonrpc.client.internal;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.buildErrorResponse;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.buildFailedResponse;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.getTimeout;
-import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.jsonToByteArray;
+import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.logException;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.mapValues;
 
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -26,8 +27,10 @@ import org.ovirt.vdsm.jsonrpc.client.JsonRpcRequest;
 import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
 import org.ovirt.vdsm.jsonrpc.client.RequestAlreadySentException;
 import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient;
+import org.ovirt.vdsm.jsonrpc.client.utils.ConcurrentLongMap;
 import org.ovirt.vdsm.jsonrpc.client.utils.LockWrapper;
 import org.ovirt.vdsm.jsonrpc.client.utils.ResponseTracking;
+import org.ovirt.vdsm.jsonrpc.client.utils.SequentialIdGenerator;
 import org.ovirt.vdsm.jsonrpc.client.utils.retry.RetryContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,31 +42,99 @@ import com.fasterxml.jackson.databind.node.NullNode;
  * Response tracker thread is responsible for tracking and retrying requests. For each connection there is single
  * instance of the thread.
  *
+ * Tracked requests are ordered by their deadlines so the thread wakes up when the closest deadline passes and
+ * visits only the expired requests. Deadlines of requests which got their responses are left in the queue and
+ * skipped when they expire, they are purged once they outnumber the tracked requests.
+ *
  */
 public class ResponseTracker implements Runnable {
     private static final Logger log = LoggerFactory.getLogger(ResponseTracker.class);
     private static final int TRACKING_TIMEOUT = 500;
+    private static final int PURGE_THRESHOLD = 1024;
     private final AtomicBoolean isTracking;
-    private final ConcurrentMap<JsonNode, JsonRpcCall> runningCalls;
-    private final ConcurrentMap<JsonNode, ResponseTracking> map;
+    private final IdMap<JsonRpcCall> runningCalls;
+    private final IdMap<ResponseTracking> map;
     private final ConcurrentMap<String, List<JsonNode>> hostToId;
-    private final Queue<JsonNode> queue;
+    private final PriorityQueue<Deadline> deadlines;
     private final Lock lock;
+    private final Condition deadlineChanged;
+    // guarded by lock, keeps registration order of requests with the same deadline
+    private long scheduled;
     private ScheduledExecutorService executorService;
 
+    /**
+     * Time at which tracked request is retried or failed.
+     */
+    private static final class Deadline {
+        private final long key;
+        private final JsonNode id;
+        private final ResponseTracking tracking;
+        private final long time;
+        private final long order;
+
+        private Deadline(long key, JsonNode id, ResponseTracking tracking, long order) {
+            this.key = key;
+            this.id = id;
+            this.tracking = tracking;
+            this.time = tracking.getTimeout();
+            this.order = order;
+        }
+    }
+
+    /**
+     * Values of requests by their ids. Ids generated by the default generator are kept by their sequence numbers
+     * so lookups neither box nor compare text, other ids are kept as they are.
+     */
+    private static final class IdMap<V> {
+        private final ConcurrentLongMap<V> generated = new ConcurrentLongMap<>();
+        private final ConcurrentMap<JsonNode, V> foreign = new ConcurrentHashMap<>();
+
+        private V get(long key, JsonNode id) {
+            return key < 0 ? this.foreign.get(id) : this.generated.get(key);
+        }
+
+        private boolean containsKey(long key, JsonNode id) {
+            return get(key, id) != null;
+        }
+
+        private V put(long key, JsonNode id, V value) {
+            return key < 0 ? this.foreign.put(id, value) : this.generated.put(key, value);
+        }
+
+        private V putIfAbsent(long key, JsonNode id, V value) {
+            return key < 0 ? this.foreign.putIfAbsent(id, value) : this.generated.putIfAbsent(key, value);
+        }
+
+        private V remove(long key, JsonNode id) {
+            return key < 0 ? this.foreign.remove(id) : this.generated.remove(key);
+        }
+
+        private int size() {
+            return this.generated.size() + this.foreign.size();
+        }
+    }
+
     public ResponseTracker() {
         this.isTracking = new AtomicBoolean(true);
-        this.runningCalls = new ConcurrentHashMap<>();
-        this.map = new ConcurrentHashMap<>();
+        this.runningCalls = new IdMap<>();
+        this.map = new IdMap<>();
         this.hostToId = new ConcurrentHashMap<>();
-        this.queue = new ConcurrentLinkedQueue<>();
+        this.deadlines = new PriorityQueue<>(Comparator.<Deadline> comparingLong(deadline -> deadline.time)
+                .thenComparingLong(deadline -> deadline.order));
         this.lock = new ReentrantLock();
+        this.deadlineChanged = this.lock.newCondition();
+    }
+
+    /**
+     * @return Sequence number of generated id or <code>-1</code> for ids generated elsewhere.
+     */
+    private static long key(JsonNode id) {
+        return SequentialIdGenerator.getDefault().toKey(id);
     }
 
     private void removeRequestFromTracking(JsonNode id) {
         try (LockWrapper ignored = new LockWrapper(this.lock)) {
-            this.queue.remove(id);
-            ResponseTracking tracking = this.map.remove(id);
+            ResponseTracking tracking = this.map.remove(key(id), id);
             if (tracking != null && tracking.getClient() != null) {
                 this.hostToId.computeIfPresent(tracking.getClient().getClientId(), (clientId, nodes) -> {
                     nodes.remove(id);
@@ -74,25 +145,24 @@ public class ResponseTracker implements Runnable {
     }
 
     public void registerCall(JsonRpcRequest req, JsonRpcCall call) {
-        if (this.runningCalls.putIfAbsent(req.getId(), call) != null) {
+        final JsonNode id = req.getId();
+        if (this.runningCalls.putIfAbsent(key(id), id, call) != null) {
             throw new RequestAlreadySentException();
         }
     }
 
     public JsonRpcCall removeCall(JsonNode id) {
         removeRequestFromTracking(id);
-        return this.runningCalls.remove(id);
+        return this.runningCalls.remove(key(id), id);
     }
 
     public void registerTrackingRequest(JsonRpcRequest req, ResponseTracking tracking) {
         JsonNode id = req.getId();
         List<JsonNode> nodes = new CopyOnWriteArrayList<>();
         try (LockWrapper ignored = new LockWrapper(this.lock)) {
-            this.map.put(id, tracking);
-
-            if(!this.queue.contains(id)){
-                this.queue.add(id);
-            }
+            final long key = key(id);
+            this.map.put(key, id, tracking);
+            schedule(key, id, tracking);
 
             nodes.add(id);
             nodes = this.hostToId.putIfAbsent(tracking.getClient().getClientId(), nodes);
@@ -102,45 +172,120 @@ public class ResponseTracker implements Runnable {
         }
     }
 
+    private void schedule(long key, JsonNode id, ResponseTracking tracking) {
+        final Deadline deadline = new Deadline(key, id, tracking, this.scheduled++);
+        this.deadlines.add(deadline);
+        if (this.deadlines.peek() == deadline) {
+            this.deadlineChanged.signal();
+        }
+    }
+
     @Override
     public void run() {
         try {
             while (this.isTracking.get()) {
-                TimeUnit.MILLISECONDS.sleep(TRACKING_TIMEOUT);
-                loop();
+                awaitDeadline();
+                try {
+                    loop();
+                } catch (RuntimeException e) {
+                    logException(log, "Unable to process expired requests", e);
+                }
             }
         } catch (InterruptedException e) {
             log.warn("Tracker thread interrupted");
         }
     }
 
+    private void awaitDeadline() throws InterruptedException {
+        try (LockWrapper ignored = new LockWrapper(this.lock)) {
+            final Deadline closest = this.deadlines.peek();
+            final long delay = closest == null ? TRACKING_TIMEOUT
+                    : Math.min(TRACKING_TIMEOUT, closest.time - System.currentTimeMillis());
+            if (delay > 0) {
+                this.deadlineChanged.await(delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Retries or fails requests which deadlines passed. Requests retried by this call are visited again by
+     * the next one at the earliest.
+     */
     protected void loop() {
-        for (JsonNode id : queue) {
-            if (this.runningCalls.computeIfAbsent(id, _id -> {
-                removeRequestFromTracking(id);
-                return null;
-            }) == null) {
-                continue;
+        final List<Deadline> expired = new ArrayList<>();
+        try (LockWrapper ignored = new LockWrapper(this.lock)) {
+            final long now = System.currentTimeMillis();
+            while (!this.deadlines.isEmpty() && this.deadlines.peek().time <= now) {
+                expired.add(this.deadlines.poll());
+            }
+            purge();
+        }
+        for (Deadline deadline : expired) {
+            try {
+                expire(deadline);
+            } catch (RuntimeException e) {
+                // a failing request must not prevent processing of the others
+                logException(log, "Unable to process expired request " + deadline.id.asText(), e);
             }
+        }
+    }
 
-            ResponseTracking tracking = this.map.get(id);
-            if (System.currentTimeMillis() >= tracking.getTimeout()) {
-                RetryContext context = tracking.getContext();
-                context.decreaseAttempts();
-                if (context.getNumberOfAttempts() <= 0) {
-                    handleFailure(tracking, id, "Too many attempts");
-                    continue;
-                }
-                final byte[] message = jsonToByteArray(tracking.getRequest().toJson());
-                if (log.isDebugEnabled()){
-                    log.debug("Message to be sent {}", new String(message, StandardCharsets.UTF_8));
-                }
-                tracking.getClient().sendMessage(message);
-                tracking.setTimeout(getTimeout(context.getTimeout(), context.getTimeUnit()));
-            } else {
-                log.debug("Tracking timeout detected for request id {} ", id.asText());
+    private void expire(Deadline deadline) {
+        final JsonNode id = deadline.id;
+        final ResponseTracking tracking = this.map.get(deadline.key, id);
+        if (tracking != deadline.tracking) {
+            // the response arrived or the request was registered again
+            return;
+        }
+        if (!this.runningCalls.containsKey(deadline.key, id)) {
+            removeRequestFromTracking(id);
+            return;
+        }
+
+        RetryContext context = tracking.getContext();
+        context.decreaseAttempts();
+        if (context.getNumberOfAttempts() <= 0) {
+            handleFailure(tracking, id, "Too many attempts");
+            return;
+        }
+        final JsonRpcRequest request = tracking.getRequest();
+        if (log.isDebugEnabled()){
+            log.debug("Message to be sent {}", request.toJson());
+        }
+        try {
+            // content encoded by the first attempt is reused
+            tracking.getClient().sendMessage(request.toByteArray(tracking.getClient().getPayloadFormat()));
+        } catch (RuntimeException e) {
+            // the attempt is spent, the request fails once there are no attempts left
+            logException(log, "Unable to retry request " + id.asText(), e);
+        }
+        tracking.setTimeout(getTimeout(context.getTimeout(), context.getTimeUnit()));
+        try (LockWrapper ignored = new LockWrapper(this.lock)) {
+            schedule(deadline.key, id, tracking);
+        }
+    }
+
+    private void purge() {
+        if (this.deadlines.size() <= 2 * this.map.size() + PURGE_THRESHOLD) {
+            return;
+        }
+        final List<Deadline> tracked = new ArrayList<>(this.map.size());
+        for (Deadline deadline : this.deadlines) {
+            if (this.map.get(deadline.key, deadline.id) == deadline.tracking) {
+                tracked.add(deadline);
             }
         }
+        this.deadlines.clear();
+        this.deadlines.addAll(tracked);
+    }
+
+    /**
+     * @return Number of deadlines in the queue including the ones of requests which are not tracked anymore.
+     */
+    protected int getDeadlineCount() {
+        try (LockWrapper ignored = new LockWrapper(this.lock)) {
+            return this.deadlines.size();
+        }
     }
 
     public void close() {
@@ -161,7 +306,7 @@ public class ResponseTracker implements Runnable {
 
     private void remove(ResponseTracking tracking, JsonNode id, JsonRpcResponse response) {
         try (LockWrapper ignored = new LockWrapper(this.lock)) {
-            JsonRpcCall call = this.runningCalls.remove(id);
+            JsonRpcCall call = this.runningCalls.remove(key(id), id);
             boolean callbackNotified = false;
             if (call != null) {
                 call.addResponse(response);
@@ -207,7 +352,18 @@ public class ResponseTracker implements Runnable {
     private void removeNodes(List<JsonNode> nodes, JsonRpcResponse errorResponse) {
         nodes.stream()
                 .filter(id -> !(id instanceof NullNode))
-                .forEach(id -> remove(this.map.get(id), id, errorResponse));
+                .forEach(id -> remove(this.map.get(key(id), id), id, errorResponse));
+    }
+
+    /**
+     * @param hostname - Name of the host requests were sent to.
+     * @return <code>true</code> when there are requests sent to the host which wait for their responses.
+     */
+    public boolean hasTrackedRequests(String hostname) {
+        final String prefix = hostname + ":";
+        return this.hostToId.entrySet()
+                .stream()
+                .anyMatch(entry -> entry.getKey().startsWith(prefix) && !entry.getValue().isEmpty());
     }
 
     protected Map<String, List<JsonNode>> getHostMap() {
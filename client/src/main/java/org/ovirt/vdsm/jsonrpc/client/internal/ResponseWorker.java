@@ -4,11 +4,18 @@ import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.UTF8;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.logException;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.mapValues;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,12 +24,13 @@ import org.ovirt.vdsm.jsonrpc.client.JsonRpcEvent;
 import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
 import org.ovirt.vdsm.jsonrpc.client.events.EventPublisher;
 import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient;
+import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient.ContentConsumer;
+import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient.MessageStreamListener;
 import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorFactory;
+import org.ovirt.vdsm.jsonrpc.client.utils.PayloadFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonFactoryBuilder;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.NullNode;
@@ -32,24 +40,40 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
  * <code>ResponseWorker</code> is responsible to process responses for all the {@link JsonRpcClient} and it is produced
  * by {@link ReactorFactory}.
  *
+ * Messages are processed by a number of partition threads. Each connection is assigned to a single partition when it
+ * is registered so its messages are processed in the order they arrived, while a large message from one host does not
+ * delay processing of messages from hosts assigned to other partitions.
+ *
  */
-public final class ResponseWorker extends Thread {
-    private final LinkedBlockingQueue<MessageContext> queue;
-    private static final ObjectMapper MAPPER;
+public final class ResponseWorker {
+    public static final long DEFAULT_HIGH_WATERMARK = 64L * 1024 * 1024;
+    public static final long DEFAULT_LOW_WATERMARK = 16L * 1024 * 1024;
+    public static final int DEFAULT_PARTITIONS = Runtime.getRuntime().availableProcessors();
+    private final Partition[] partitions;
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final Map<JsonRpcClient, Producer> producers = new ConcurrentHashMap<>();
+    private final Set<Producer> suspended = ConcurrentHashMap.newKeySet();
+    private volatile long highWatermark = DEFAULT_HIGH_WATERMARK;
+    private volatile long lowWatermark = DEFAULT_LOW_WATERMARK;
+    private static final ObjectMapper MAPPER = PayloadFormat.JSON.getMapper();
     private final ResponseTracker tracker;
     private final EventPublisher publisher;
     private static final Logger log = LoggerFactory.getLogger(ResponseWorker.class);
     private static final Pattern SENSITIVE_DATA_PATTERN = Pattern.compile("(\"_X_[a-zA-Z0-9_]+\": *)\"[^\"]+\"");
 
-    static {
-        MAPPER = new ObjectMapper(new JsonFactoryBuilder()
-                .configure(JsonFactory.Feature.INTERN_FIELD_NAMES, false)
-                .configure(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES, false)
-                .build());
+    public ResponseWorker(int parallelism, int eventTimeoutInHours) {
+        this(parallelism, eventTimeoutInHours, DEFAULT_PARTITIONS);
     }
 
-    public ResponseWorker(int parallelism, int eventTimeoutInHours) {
-        this.queue = new LinkedBlockingQueue<>();
+    /**
+     * @param parallelism - the parallelism level using for event processing.
+     * @param eventTimeoutInHours - the timeout after which the events are purged from the queue.
+     * @param partitions - number of threads processing incoming messages.
+     */
+    public ResponseWorker(int parallelism, int eventTimeoutInHours, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Number of partitions has to be positive");
+        }
         this.tracker = new ResponseTracker();
         this.publisher =
                 new EventPublisher(new ForkJoinPool(parallelism,
@@ -63,9 +87,67 @@ public final class ResponseWorker extends Thread {
         trackerThread.setDaemon(true);
         trackerThread.start();
 
-        setName("ResponseWorker");
-        setDaemon(true);
-        start();
+        this.partitions = new Partition[partitions];
+        for (int i = 0; i < partitions; i++) {
+            this.partitions[i] = new Partition(partitions > 1 ? "ResponseWorker " + i : "ResponseWorker");
+            this.partitions[i].start();
+        }
+    }
+
+    /**
+     * Processes messages of the connections assigned to it.
+     */
+    private final class Partition extends Thread {
+        private final LinkedBlockingQueue<QueuedMessage> queue = new LinkedBlockingQueue<>();
+
+        Partition(String name) {
+            setName(name);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    final QueuedMessage queued = this.queue.take();
+                    if (queued.producer == null) {
+                        break;
+                    }
+                    dequeued(queued.producer, queued.context);
+                    process(queued.context);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Bytes queued by a single connection.
+     */
+    private static final class Producer {
+        private final ReactorClient client;
+        private final Partition partition;
+        private final AtomicLong queued = new AtomicLong();
+
+        Producer(ReactorClient client, Partition partition) {
+            this.client = client;
+            this.partition = partition;
+        }
+    }
+
+    /**
+     * Message waiting for processing together with the connection it is accounted to. The producer travels with
+     * the message so it is accounted correctly even when the client was closed before it was processed.
+     */
+    private static final class QueuedMessage {
+        private final Producer producer;
+        private final MessageContext context;
+
+        QueuedMessage(Producer producer, MessageContext context) {
+            this.producer = producer;
+            this.context = context;
+        }
     }
 
     static class ResponseForkJoinWorkerThread extends ForkJoinWorkerThread {
@@ -84,38 +166,175 @@ public final class ResponseWorker extends Thread {
      */
     public JsonRpcClient register(ReactorClient client) {
         final JsonRpcClient jsonRpcClient = new JsonRpcClient(client, this.tracker);
-        client.addEventListener(message -> queue.add(new MessageContext(jsonRpcClient, message)));
+        final Producer producer = new Producer(client, leastLoaded());
+        this.producers.put(jsonRpcClient, producer);
+        // clients are registered before they connect and reconnect, so only closing them unregisters
+        client.addCloseListener(() -> this.producers.remove(jsonRpcClient, producer));
+        client.addEventListener(new MessageStreamListener() {
+
+            @Override
+            public void onMessageReceived(byte[] message) {
+                enqueue(producer, new MessageContext(jsonRpcClient, message));
+            }
+
+            @Override
+            public ContentConsumer onMessageStarted(int length) {
+                try {
+                    return new ResponseStreamParser(MAPPER,
+                            tokens -> enqueue(producer, new MessageContext(jsonRpcClient, tokens, length)));
+                } catch (IOException e) {
+                    logException(log, "Unable to stream message content", e);
+                    return null;
+                }
+            }
+        });
         return jsonRpcClient;
     }
 
-    public void run() {
-        AtomicReference<MessageContext> contextRef = new AtomicReference<>();
-        while (true) {
-            try {
-                contextRef.set(this.queue.take());
-                if (contextRef.get().getClient() == null) {
-                    break;
+    /**
+     * Selects the partition with the lowest number of registered clients, ties are broken by the size of queued
+     * messages.
+     */
+    private Partition leastLoaded() {
+        if (this.partitions.length == 1) {
+            return this.partitions[0];
+        }
+        final Map<Partition, Integer> connections = new HashMap<>();
+        final Map<Partition, Long> queued = new HashMap<>();
+        for (Producer producer : this.producers.values()) {
+            connections.merge(producer.partition, 1, Integer::sum);
+            queued.merge(producer.partition, producer.queued.get(), Long::sum);
+        }
+        return Arrays.stream(this.partitions)
+                .min(Comparator.<Partition> comparingInt(p -> connections.getOrDefault(p, 0))
+                        .thenComparingLong(p -> queued.getOrDefault(p, 0L)))
+                .get();
+    }
+
+    /**
+     * Queues a message received by the reactor thread. The reactor must not block so the queue is not
+     * bounded, instead reading from the connections which queued the most is suspended when the queued
+     * size reaches the high watermark.
+     */
+    private void enqueue(Producer producer, MessageContext context) {
+        final long size = context.getSize();
+        producer.queued.addAndGet(size);
+        final long queued = this.queuedBytes.addAndGet(size);
+        producer.partition.queue.add(new QueuedMessage(producer, context));
+        if (queued > this.highWatermark) {
+            if (queued - size <= this.highWatermark) {
+                suspendProducers(null);
+            } else if (!this.suspended.contains(producer)) {
+                suspendProducers(producer);
+            }
+        }
+    }
+
+    /**
+     * Suspends reading from connections which queued more than an average connection.
+     *
+     * @param producer - the only connection to check or <code>null</code> to check all of them.
+     */
+    private void suspendProducers(Producer producer) {
+        synchronized (this.suspended) {
+            final long queued = this.queuedBytes.get();
+            if (queued <= this.highWatermark) {
+                return;
+            }
+            final long active = this.producers.values().stream().filter(p -> p.queued.get() > 0).count();
+            for (Producer candidate : producer == null ? this.producers.values()
+                    : Collections.singleton(producer)) {
+                final long produced = candidate.queued.get();
+                if (produced > 0 && produced * active >= queued && this.suspended.add(candidate)) {
+                    log.warn("Suspending reading from host '{}' with {} bytes waiting for processing",
+                            candidate.client.getHostname(),
+                            produced);
+                    candidate.client.suspendReading();
                 }
-                if (log.isDebugEnabled()) {
-                    String message = new String(contextRef.get().getMessage(), UTF8);
-                    Matcher matcher = SENSITIVE_DATA_PATTERN.matcher(message);
-                    if (matcher.find()) {
-                        message = matcher.replaceAll("$1\"***\"");
-                    }
-                    log.debug("Message received: " + message);
+            }
+        }
+    }
+
+    private void dequeued(Producer producer, MessageContext context) {
+        producer.queued.addAndGet(-context.getSize());
+        final long queued = this.queuedBytes.addAndGet(-context.getSize());
+        if (queued <= this.lowWatermark && !this.suspended.isEmpty()) {
+            synchronized (this.suspended) {
+                if (this.queuedBytes.get() > this.lowWatermark) {
+                    return;
                 }
-                JsonNode rootNode = MAPPER.readTree(contextRef.get().getMessage());
-                if (!rootNode.isArray()) {
-                    processIncomingObject(contextRef.get().getClient(), rootNode);
-                } else {
-                    rootNode.elements()
-                            .forEachRemaining(node -> processIncomingObject(contextRef.get().getClient(), node));
+                for (Producer suspendedProducer : this.suspended) {
+                    log.info("Resuming reading from host '{}'", suspendedProducer.client.getHostname());
+                    suspendedProducer.client.resumeReading();
+                }
+                this.suspended.clear();
+            }
+        }
+    }
+
+    /**
+     * Sets the sizes of queued messages at which reading from connections is suspended and resumed.
+     *
+     * @param lowWatermark - queued bytes at which reading is resumed.
+     * @param highWatermark - queued bytes at which reading is suspended.
+     */
+    public void setWatermarks(long lowWatermark, long highWatermark) {
+        if (lowWatermark < 0 || lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("Low watermark has to be between 0 and high watermark");
+        }
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+    }
+
+    /**
+     * @return Size of messages waiting for processing in bytes.
+     */
+    public long getQueuedBytes() {
+        return this.queuedBytes.get();
+    }
+
+    private void process(MessageContext context) {
+        try {
+            final byte[] content = context.getMessage();
+            JsonNode rootNode = null;
+            MessageEnvelope envelope = null;
+            if (context.getTokens() != null) {
+                // tokens of streamed content are turned into the tree here so the reactor thread is not stalled
+                rootNode = MAPPER.readTree(context.getTokens().asParser());
+            } else if (PayloadFormat.detect(content) == PayloadFormat.JSON) {
+                envelope = MessageEnvelope.read(content);
+            } else {
+                // binary payloads are logged after parsing
+                rootNode = PayloadFormat.readTree(content);
+            }
+            if (log.isDebugEnabled()) {
+                String message = rootNode != null ? rootNode.toString() : new String(content, UTF8);
+                Matcher matcher = SENSITIVE_DATA_PATTERN.matcher(message);
+                if (matcher.find()) {
+                    message = matcher.replaceAll("$1\"***\"");
                 }
-            } catch (Exception e) {
-                log.warn("Exception thrown during message processing");
-                if (log.isDebugEnabled()) {
-                    log.debug(e.getMessage(), e);
+                log.debug("Message received: " + message);
+            }
+            if (envelope != null) {
+                if (envelope.isEvent()) {
+                    processEvent(context.getClient(), envelope.toEvent());
+                } else {
+                    context.getClient().processResponse(envelope.toResponse());
                 }
+                return;
+            }
+            if (rootNode == null) {
+                rootNode = MAPPER.readTree(content);
+            }
+            if (!rootNode.isArray()) {
+                processIncomingObject(context.getClient(), rootNode);
+            } else {
+                rootNode.elements().forEachRemaining(node -> processIncomingObject(context.getClient(), node));
+            }
+        } catch (Exception e) {
+            log.warn("Exception thrown during message processing");
+            if (log.isDebugEnabled()) {
+                log.debug(e.getMessage(), e);
             }
         }
     }
@@ -143,13 +362,7 @@ public final class ResponseWorker extends Thread {
         }
 
         if (id == null || NullNode.class.isInstance(id)) {
-            JsonRpcEvent event = JsonRpcEvent.fromJsonNode(node);
-            String method = client.getHostname() + event.getMethod();
-            event.setMethod(method);
-            if (log.isDebugEnabled()) {
-                log.debug("Event arrived from " + client.getHostname() + " containing " + event.getParams());
-            }
-            processNotifications(event);
+            processEvent(client, JsonRpcEvent.fromJsonNode(node));
             return;
         }
         try {
@@ -159,12 +372,23 @@ public final class ResponseWorker extends Thread {
         }
     }
 
+    private void processEvent(JsonRpcClient client, JsonRpcEvent event) {
+        String method = client.getHostname() + event.getMethod();
+        event.setMethod(method);
+        if (log.isDebugEnabled()) {
+            log.debug("Event arrived from " + client.getHostname() + " containing " + event.getParams());
+        }
+        processNotifications(event);
+    }
+
     private void processNotifications(JsonRpcEvent notification) {
         this.publisher.process(notification);
     }
 
     public void close() {
-        this.queue.add(new MessageContext(null, null));
+        for (Partition partition : this.partitions) {
+            partition.queue.add(new QueuedMessage(null, null));
+        }
         this.tracker.close();
         this.publisher.close();
     }
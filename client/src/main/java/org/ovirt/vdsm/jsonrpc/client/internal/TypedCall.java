@@ -0,0 +1,106 @@
+package org.ovirt.vdsm.jsonrpc.client.internal;
+
+import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.mapValues;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcErrorException;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
+import org.ovirt.vdsm.jsonrpc.client.utils.JsonSlice;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * <code>TypedCall</code> binds the result of a single {@link Call} to the requested type. Result which was not parsed
+ * yet is bound directly from the received content so neither the tree nor intermediate maps are built.
+ *
+ * Properties unknown to the requested type are ignored so new fields in responses do not break callers.
+ *
+ * @param <T> - Type of the result.
+ */
+public class TypedCall<T> implements Future<T> {
+    private static final ObjectMapper MAPPER =
+            new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final Map<JavaType, ObjectReader> READERS = new ConcurrentHashMap<>();
+    private final Call call;
+    private final ObjectReader reader;
+    private boolean decoded;
+    private T result;
+    private ExecutionException failure;
+
+    /**
+     * @param call - Call providing the response.
+     * @param type - Type of the result, readers are created once per type.
+     */
+    public TypedCall(Call call, JavaType type) {
+        this.call = call;
+        this.reader = READERS.computeIfAbsent(type, MAPPER::readerFor);
+    }
+
+    public Call getCall() {
+        return this.call;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return this.call.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.call.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.call.isDone();
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        return decode(this.call.get());
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return decode(this.call.get(timeout, unit));
+    }
+
+    private synchronized T decode(JsonRpcResponse response) throws ExecutionException {
+        if (!this.decoded) {
+            this.decoded = true;
+            try {
+                this.result = bind(response);
+            } catch (JsonRpcErrorException | IOException e) {
+                this.failure = new ExecutionException(e);
+            }
+        }
+        if (this.failure != null) {
+            throw this.failure;
+        }
+        return this.result;
+    }
+
+    private T bind(JsonRpcResponse response) throws JsonRpcErrorException, IOException {
+        final JsonNode error = response.getError();
+        if (error != null && !error.isNull()) {
+            throw new JsonRpcErrorException(mapValues(error));
+        }
+        final JsonSlice raw = response.getRawResult();
+        if (raw != null && !raw.isParsed()) {
+            return raw.readValue(this.reader);
+        }
+        final JsonNode node = response.getResult();
+        return node != null ? this.reader.readValue(node) : null;
+    }
+}
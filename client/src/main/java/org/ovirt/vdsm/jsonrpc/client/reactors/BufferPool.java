@@ -0,0 +1,138 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of buffers shared by clients of a <code>Reactor</code>. Buffers are kept in power of two size
+ * classes so a leased buffer may be bigger than requested. Requests bigger than the largest class are
+ * allocated and dropped on release.
+ *
+ * A buffer has to be released exactly once and must not be used afterwards. Instances are thread safe.
+ */
+public class BufferPool {
+    public static final int DEFAULT_MAX_POOLED = 64;
+    private static final int MIN_SHIFT = 9;
+    private static final int MAX_SHIFT = 20;
+
+    private final boolean direct;
+    private final BlockingQueue<ByteBuffer>[] heap;
+    private final BlockingQueue<ByteBuffer>[] directs;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public BufferPool() {
+        this(false, DEFAULT_MAX_POOLED);
+    }
+
+    /**
+     * @param direct - whether {@link #lease(int)} returns direct buffers.
+     * @param maxPooled - maximal number of idle buffers kept per size class.
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(boolean direct, int maxPooled) {
+        this.direct = direct;
+        this.heap = new BlockingQueue[MAX_SHIFT - MIN_SHIFT + 1];
+        this.directs = new BlockingQueue[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = 0; i < this.heap.length; i++) {
+            this.heap[i] = new ArrayBlockingQueue<>(maxPooled);
+            this.directs[i] = new ArrayBlockingQueue<>(maxPooled);
+        }
+    }
+
+    /**
+     * @return Cleared buffer with at least the requested capacity, direct when the pool is configured
+     *         to use direct buffers.
+     */
+    public ByteBuffer lease(int capacity) {
+        return lease(capacity, this.direct);
+    }
+
+    /**
+     * @return Cleared buffer backed by an accessible array with at least the requested capacity.
+     */
+    public ByteBuffer leaseHeap(int capacity) {
+        return lease(capacity, false);
+    }
+
+    private ByteBuffer lease(int capacity, boolean direct) {
+        final int index = index(capacity);
+        if (index == -1) {
+            this.misses.increment();
+            return allocate(capacity, direct);
+        }
+        final ByteBuffer buffer = (direct ? this.directs : this.heap)[index].poll();
+        if (buffer == null) {
+            this.misses.increment();
+            return allocate(1 << (index + MIN_SHIFT), direct);
+        }
+        this.hits.increment();
+        return buffer;
+    }
+
+    /**
+     * Returns a leased buffer to the pool.
+     */
+    public void release(ByteBuffer buffer) {
+        final int index = index(buffer.capacity());
+        if (index == -1 || buffer.capacity() != 1 << (index + MIN_SHIFT)) {
+            this.dropped.increment();
+            return;
+        }
+        buffer.clear();
+        if (!(buffer.isDirect() ? this.directs : this.heap)[index].offer(buffer)) {
+            this.dropped.increment();
+        }
+    }
+
+    private static int index(int capacity) {
+        if (capacity <= 1 << MIN_SHIFT) {
+            return 0;
+        }
+        final int shift = Integer.SIZE - Integer.numberOfLeadingZeros(capacity - 1);
+        return shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+    }
+
+    private static ByteBuffer allocate(int capacity, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    public boolean isDirect() {
+        return this.direct;
+    }
+
+    /**
+     * @return Number of leases served by a pooled buffer.
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return Number of leases which had to allocate a buffer.
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return Number of released buffers which were not kept because of their size or a full size class.
+     */
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * @return Number of idle buffers kept by the pool.
+     */
+    public int getPooled() {
+        int pooled = 0;
+        for (int i = 0; i < this.heap.length; i++) {
+            pooled += this.heap[i].size() + this.directs[i].size();
+        }
+        return pooled;
+    }
+}
@@ -0,0 +1,231 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admission control for connection attempts. It limits number of connects and handshakes which are in
+ * progress on a single <code>Reactor</code> and delays attempts to hosts which recently failed using
+ * exponential backoff with jitter. Attempts which can't be admitted are queued and the ones with pending
+ * calls go first.
+ *
+ * Single instance is meant to be shared by policies of all clients so the limits apply to all of them.
+ */
+public final class ConnectionAdmission {
+    private static final Logger log = LoggerFactory.getLogger(ConnectionAdmission.class);
+
+    public static final int DEFAULT_MAX_IN_PROGRESS = 32;
+    public static final long DEFAULT_MIN_BACKOFF = 1000;
+    public static final long DEFAULT_MAX_BACKOFF = 60000;
+    private static final int MAX_SHIFT = 20;
+
+    private final int maxInProgress;
+    private final long minBackoff;
+    private final long maxBackoff;
+    private final LongSupplier clock;
+    private final Map<Reactor, Integer> inProgress = new HashMap<>();
+    private final Map<String, Backoff> backoffs = new HashMap<>();
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>();
+    private long sequence;
+    private long wakeupAt = Long.MAX_VALUE;
+
+    public ConnectionAdmission() {
+        this(DEFAULT_MAX_IN_PROGRESS, DEFAULT_MIN_BACKOFF, DEFAULT_MAX_BACKOFF, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param maxInProgress - maximal number of connection attempts in progress per reactor.
+     * @param minBackoff - delay after the first failed attempt to a host.
+     * @param maxBackoff - upper bound of the delay which doubles with every failed attempt.
+     * @param unit - unit of the delays.
+     */
+    public ConnectionAdmission(int maxInProgress, long minBackoff, long maxBackoff, TimeUnit unit) {
+        this(maxInProgress, minBackoff, maxBackoff, unit, System::nanoTime);
+    }
+
+    ConnectionAdmission(int maxInProgress, long minBackoff, long maxBackoff, TimeUnit unit, LongSupplier clock) {
+        if (maxInProgress <= 0 || minBackoff <= 0 || maxBackoff < minBackoff) {
+            throw new IllegalArgumentException("Invalid admission limits");
+        }
+        this.maxInProgress = maxInProgress;
+        this.minBackoff = unit.toNanos(minBackoff);
+        this.maxBackoff = unit.toNanos(maxBackoff);
+        this.clock = clock;
+    }
+
+    /**
+     * Queues connection attempt which is started as soon as limits allow it.
+     *
+     * @param client - client which is about to connect.
+     * @param pendingCalls - <code>true</code> when there are calls waiting for the connection.
+     * @param start - starts the attempt, run by the thread which admitted it.
+     * @return Ticket which has to be released when the attempt finishes.
+     */
+    Ticket acquire(ReactorClient client, boolean pendingCalls, Runnable start) {
+        final Ticket ticket;
+        synchronized (this) {
+            ticket = new Ticket(client, pendingCalls, start, this.sequence++);
+            this.queue.add(ticket);
+        }
+        drain();
+        return ticket;
+    }
+
+    public synchronized int getInProgress(Reactor reactor) {
+        return this.inProgress.getOrDefault(reactor, 0);
+    }
+
+    public synchronized int getQueued() {
+        return this.queue.size();
+    }
+
+    /**
+     * @return Time left until a new attempt to the host is admitted.
+     */
+    public synchronized long getBackoff(String hostname, int port, TimeUnit unit) {
+        final Backoff backoff = this.backoffs.get(hostname + ":" + port);
+        if (backoff == null) {
+            return 0;
+        }
+        return unit.convert(Math.max(backoff.notBefore - this.clock.getAsLong(), 0), TimeUnit.NANOSECONDS);
+    }
+
+    private void drain() {
+        final List<Ticket> admitted = new ArrayList<>();
+        synchronized (this) {
+            final long now = this.clock.getAsLong();
+            final List<Ticket> blocked = new ArrayList<>();
+            long next = Long.MAX_VALUE;
+            Reactor waker = null;
+            Ticket ticket;
+            while ((ticket = this.queue.poll()) != null) {
+                final Backoff backoff = this.backoffs.get(ticket.address);
+                if (backoff != null && backoff.notBefore - now > 0) {
+                    blocked.add(ticket);
+                    if (backoff.notBefore < next) {
+                        next = backoff.notBefore;
+                        waker = ticket.reactor;
+                    }
+                    continue;
+                }
+                final int count = this.inProgress.getOrDefault(ticket.reactor, 0);
+                if (count >= this.maxInProgress) {
+                    blocked.add(ticket);
+                    continue;
+                }
+                this.inProgress.put(ticket.reactor, count + 1);
+                ticket.admitted = true;
+                admitted.add(ticket);
+            }
+            this.queue.addAll(blocked);
+            if (waker != null && next < this.wakeupAt) {
+                this.wakeupAt = next;
+                waker.schedule(this::wakeup, TimeUnit.NANOSECONDS.toMillis(next - now) + 1);
+            }
+        }
+        admitted.forEach(ticket -> ticket.start.run());
+    }
+
+    private void wakeup() {
+        synchronized (this) {
+            this.wakeupAt = Long.MAX_VALUE;
+        }
+        drain();
+    }
+
+    private long nextBackoff(int failures) {
+        final long ceiling = Math.min(this.maxBackoff, this.minBackoff << Math.min(failures - 1, MAX_SHIFT));
+        final long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+
+    private static class Backoff {
+        private int failures;
+        private long notBefore;
+    }
+
+    /**
+     * Represents single connection attempt waiting for or holding admission.
+     */
+    public final class Ticket implements Comparable<Ticket> {
+        private final String address;
+        private final Reactor reactor;
+        private final Runnable start;
+        private final long order;
+        private boolean pendingCalls;
+        private boolean admitted;
+        private boolean released;
+
+        private Ticket(ReactorClient client, boolean pendingCalls, Runnable start, long order) {
+            this.address = client.getHostname() + ":" + client.getPort();
+            this.reactor = client.getReactor();
+            this.pendingCalls = pendingCalls;
+            this.start = start;
+            this.order = order;
+        }
+
+        /**
+         * Moves queued attempt in front of the ones without pending calls.
+         */
+        public void prioritize() {
+            synchronized (ConnectionAdmission.this) {
+                if (this.pendingCalls || this.admitted || this.released || !queue.remove(this)) {
+                    return;
+                }
+                this.pendingCalls = true;
+                queue.add(this);
+            }
+            drain();
+        }
+
+        /**
+         * Finishes the attempt. Queued attempt is dropped, admitted one frees its slot and updates backoff
+         * of the host.
+         *
+         * @param connected - <code>true</code> when connection was established.
+         */
+        public void release(boolean connected) {
+            synchronized (ConnectionAdmission.this) {
+                if (this.released) {
+                    return;
+                }
+                this.released = true;
+                if (!this.admitted) {
+                    queue.remove(this);
+                    return;
+                }
+                inProgress.computeIfPresent(this.reactor, (key, count) -> count > 1 ? count - 1 : null);
+                if (connected) {
+                    backoffs.remove(this.address);
+                } else {
+                    final Backoff backoff = backoffs.computeIfAbsent(this.address, key -> new Backoff());
+                    backoff.failures++;
+                    final long delay = nextBackoff(backoff.failures);
+                    backoff.notBefore = clock.getAsLong() + delay;
+                    log.debug("Connection to '{}' failed {} times, next attempt in {} ms",
+                            this.address,
+                            backoff.failures,
+                            TimeUnit.NANOSECONDS.toMillis(delay));
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            if (this.pendingCalls != other.pendingCalls) {
+                return this.pendingCalls ? -1 : 1;
+            }
+            return Long.compare(this.order, other.order);
+        }
+    }
+}
@@ -37,10 +37,13 @@ public abstract class PlainClient extends StompCommonClient {
 
     @Override
     public void updateInterestedOps() {
+        if (getSelectionKey() == null || isConnectPending()) {
+            return;
+        }
         if (outbox.isEmpty()) {
-            getSelectionKey().interestOps(SelectionKey.OP_READ);
+            getSelectionKey().interestOps(readInterest());
         } else {
-            getSelectionKey().interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            getSelectionKey().interestOps(readInterest() | SelectionKey.OP_WRITE);
         }
     }
 
@@ -54,6 +57,11 @@ public abstract class PlainClient extends StompCommonClient {
         channel.write(buff);
     }
 
+    @Override
+    protected long write(ByteBuffer[] buffs, int offset, int length) throws IOException {
+        return channel.write(buffs, offset, length);
+    }
+
     @Override
     protected void postConnect(OneTimeCallback callback) throws ClientConnectionException {
         try {
@@ -74,6 +82,12 @@ public abstract class PlainClient extends StompCommonClient {
         }
     }
 
+    @Override
+    protected void onChannelConnected() throws ClientConnectionException {
+        key.interestOps(SelectionKey.OP_READ);
+        getPostConnectCallback().checkAndExecute();
+    }
+
     @Override
     public void postDisconnect() {
     }
@@ -10,12 +10,18 @@ import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.AbstractSelector;
 import java.nio.channels.spi.SelectorProvider;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
 import org.ovirt.vdsm.jsonrpc.client.utils.ReactorScheduler;
+import org.ovirt.vdsm.jsonrpc.client.utils.ReactorTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,22 +36,55 @@ public abstract class Reactor extends Thread {
     private static final int TIMEOUT = 1000;
     private final AbstractSelector selector;
     private final ReactorScheduler scheduler;
-    private boolean isRunning;
+    private final ReactorTimer timer;
+    private final AtomicInteger clients;
+    private final AtomicBoolean wakeupPending;
+    private volatile ReactorGroup group;
+    private volatile boolean isRunning;
+    private boolean tasksPending;
+    private volatile ReactorMetrics metrics = ReactorMetrics.NOOP;
+    private volatile BufferPool bufferPool = new BufferPool();
+    // accessed only by the reactor thread, lists are reused so the loop does not allocate
+    private final List<SelectionKey> selectedKeys = new ArrayList<>();
+    private final Consumer<SelectionKey> onSelected = this.selectedKeys::add;
+    private List<ReactorClient> carriedClients = new ArrayList<>();
+    private List<ReactorClient> spareClients = new ArrayList<>();
 
     public Reactor() throws IOException {
+        this(-1);
+    }
+
+    /**
+     * Creates and starts the reactor thread.
+     *
+     * @param index - position of the reactor in its {@link ReactorGroup} which is added to the thread name,
+     *            negative for a standalone reactor.
+     * @throws IOException when the selector cannot be opened.
+     */
+    protected Reactor(int index) throws IOException {
         this.selector = SelectorProvider.provider().openSelector();
         this.scheduler = new ReactorScheduler();
-        this.isRunning = false;
-        setName(getReactorName());
+        this.timer = new ReactorTimer();
+        this.clients = new AtomicInteger();
+        this.wakeupPending = new AtomicBoolean();
+        this.isRunning = true;
+        setName(index < 0 ? getReactorName() : getReactorName() + " " + index);
         setDaemon(true);
         start();
     }
 
-    private void select() {
+    private int select() {
         try {
-            this.selector.select(TIMEOUT);
+            final long timeout = this.tasksPending || !this.carriedClients.isEmpty() ? 0
+                    : this.timer.nextDelay(TIMEOUT);
+            if (timeout > 0) {
+                return this.selector.select(this.onSelected, timeout);
+            } else {
+                return this.selector.selectNow(this.onSelected);
+            }
         } catch (IOException e) {
             logException(LOG, "IOException occurred", e);
+            return 0;
         }
     }
 
@@ -53,69 +92,146 @@ public abstract class Reactor extends Thread {
      * Main loop for message processing.
      */
     public void run() {
-        this.isRunning = true;
         while (this.isRunning) {
-            select();
+            final ReactorMetrics metrics = this.metrics;
+            final long start = System.nanoTime();
+            final int keys = select();
+            final long selected = System.nanoTime();
+            // cleared before running tasks so a task queued from now on triggers a new wakeup
+            this.wakeupPending.set(false);
+            final long executed = this.scheduler.getExecutedTasks();
+            final long latency = this.scheduler.getTotalLatency();
             try {
-                this.scheduler.performPendingOperations();
+                this.tasksPending = this.scheduler.performPendingOperations();
             } catch (Exception e) {
                 logException(LOG, "Exception occurred during running scheduled task", e);
+                this.tasksPending = this.scheduler.getQueueDepth() > 0;
             }
-            processChannels();
+            final int tasks = (int) (this.scheduler.getExecutedTasks() - executed);
+            if (tasks > 0) {
+                metrics.onTasks(tasks, this.scheduler.getTotalLatency() - latency);
+            }
+            processChannels(metrics);
+            this.timer.expire();
+            metrics.onIteration(selected - start, System.nanoTime() - selected, keys);
         }
     }
 
     /**
-     * Processing channels.
+     * Processing channels. Only the keys selected by the last select are processed, together with clients which
+     * were left with input buffered by the previous iteration.
      */
-    private void processChannels() {
-        this.selector.selectedKeys().stream()
-                .filter(SelectionKey::isValid)
-                .filter(key -> !(key.isAcceptable() && ((ReactorListener) key.attachment()).accept() == null))
-                .forEach(key -> {
-                    if (key.isReadable() || key.isWritable()) {
-                        final ReactorClient client = (ReactorClient) key.attachment();
-                        try {
-                            client.process();
-                        } catch (IOException | ClientConnectionException ex) {
-                            handleException(ex, client, key, "Unable to process messages ");
-                        } catch (Throwable e) {
-                            handleException(e, client, key, "Internal server error ");
-                        }
-                    }
-
-                    if (!key.channel().isOpen()) {
-                        key.cancel();
-                    }
-                });
+    private void processChannels(ReactorMetrics metrics) {
+        final boolean timed = metrics != ReactorMetrics.NOOP;
+        // clients carried again while the carried ones are processed go to the spare list
+        final List<ReactorClient> carried = this.carriedClients;
+        this.carriedClients = this.spareClients;
+        for (int i = 0; i < carried.size(); i++) {
+            final ReactorClient client = carried.get(i);
+            client.carried = false;
+            final SelectionKey key = client.getSelectionKey();
+            if (key != null && key.isValid()) {
+                processClient(client, key, metrics, timed);
+            }
+        }
+        carried.clear();
+        this.spareClients = carried;
 
-        checkActions(this.selector.keys());
+        for (int i = 0; i < this.selectedKeys.size(); i++) {
+            final SelectionKey key = this.selectedKeys.get(i);
+            if (!key.isValid()) {
+                continue;
+            }
+            if (key.isAcceptable()) {
+                ((ReactorListener) key.attachment()).accept();
+            } else if (key.isConnectable()) {
+                ((ReactorClient) key.attachment()).processConnect();
+            } else if (key.isReadable() || key.isWritable()) {
+                processClient((ReactorClient) key.attachment(), key, metrics, timed);
+            }
+        }
+        this.selectedKeys.clear();
     }
 
-    private void checkActions(Set<SelectionKey> keys) {
-        keys.stream().filter(key -> ReactorClient.class.isInstance(key.attachment())).forEach(key -> {
-            final ReactorClient client = (ReactorClient) key.attachment();
+    private void processClient(ReactorClient client, SelectionKey key, ReactorMetrics metrics, boolean timed) {
+        final long start = timed ? System.nanoTime() : 0;
+        long end = 0;
+        try {
+            client.process();
+            end = timed ? System.nanoTime() : 0;
+        } catch (IOException | ClientConnectionException ex) {
+            handleException(ex, client, key, "Unable to process messages ");
+        } catch (Throwable e) {
+            handleException(e, client, key, "Internal server error ");
+        }
+        if (end != 0) {
+            // failing metrics must not disconnect the client
             try {
-                client.performAction();
-            } catch (IOException e) {
-                handleException(e, client, key, "Unable to process messages ");
+                metrics.onProcess(client, end - start);
+            } catch (RuntimeException e) {
+                logException(LOG, "Unable to record process time", e);
             }
-        });
+        }
+
+        if (!key.channel().isOpen()) {
+            key.cancel();
+        } else if (client.hasPendingInput()) {
+            carry(client);
+        }
+    }
+
+    /**
+     * Processes the client on the next iteration even when its channel is not selected. Used for input which was
+     * read from the channel but not processed yet. Has to be called by the reactor thread.
+     */
+    void carry(ReactorClient client) {
+        if (!client.carried) {
+            client.carried = true;
+            this.carriedClients.add(client);
+        }
     }
 
     private void handleException(Throwable t, ReactorClient client, SelectionKey key, String message) {
         logException(LOG, message + t.getMessage(), t);
-        client.disconnect(t.getMessage() != null ? t.getMessage() : message);
+        client.disconnect(t.getMessage() != null ? t.getMessage() : message, t);
         key.cancel();
     }
 
+    /**
+     * Queues task to be run by the reactor thread.
+     *
+     * @param f - task to run.
+     * @throws java.util.concurrent.RejectedExecutionException when the task queue is full.
+     */
     public void queueFuture(Future<?> f) {
         this.scheduler.queueFuture(f);
         wakeup();
     }
 
+    /**
+     * Schedules task to be run by the reactor thread after provided delay. Used for connection deadlines
+     * like heartbeats so that idle connections are not visited on every loop iteration.
+     *
+     * @param task - task to run.
+     * @param delay - delay in milliseconds.
+     * @return Handle which can be used to cancel the task.
+     */
+    public ReactorTimer.Timeout schedule(Runnable task, long delay) {
+        final ReactorTimer.Timeout timeout = this.timer.schedule(task, delay);
+        if (Thread.currentThread() != this) {
+            wakeup();
+        }
+        return timeout;
+    }
+
+    /**
+     * Wakes up the selector unless a wakeup is already pending, so a burst of queued tasks results
+     * in a single wakeup.
+     */
     public void wakeup() {
-        this.selector.wakeup();
+        if (this.wakeupPending.compareAndSet(false, true)) {
+            this.selector.wakeup();
+        }
     }
 
     public Future<ReactorListener> createListener(final String hostname,
@@ -134,11 +250,109 @@ public abstract class Reactor extends Thread {
         return task;
     }
 
+    /**
+     * Creates client for provided host. When the reactor is a member of a {@link ReactorGroup} the client is
+     * assigned to the member selected by the group.
+     *
+     * @param hostname - Name of the host to connect to.
+     * @param port - Port to connect to.
+     * @return Client which is not connected yet.
+     * @throws ClientConnectionException when client creation fails.
+     */
     public ReactorClient createClient(String hostname, int port) throws ClientConnectionException {
-        return createClient(this, this.selector, hostname, port);
+        final Reactor reactor = selectReactor(hostname);
+        final ReactorClient client = createClient(reactor, reactor.selector, hostname, port);
+        reactor.attachClient();
+        return client;
     }
 
+    ReactorClient acceptClient(String hostname, int port, SocketChannel channel) throws ClientConnectionException {
+        final Reactor reactor = selectReactor(hostname);
+        final ReactorClient client = createConnectedClient(reactor, reactor.selector, hostname, port, channel);
+        client.setAccepted();
+        reactor.attachClient();
+        if (reactor != this) {
+            reactor.wakeup();
+        }
+        return client;
+    }
+
+    Reactor selectReactor(String hostname) {
+        final ReactorGroup current = this.group;
+        return current == null ? this : current.next(hostname);
+    }
+
+    void setGroup(ReactorGroup group) {
+        this.group = group;
+    }
+
+    /**
+     * Sets where measurements of the reactor loop are published.
+     *
+     * @param metrics - metrics implementation, <code>null</code> disables the measurements.
+     */
+    public void setMetrics(ReactorMetrics metrics) {
+        this.metrics = metrics != null ? metrics : ReactorMetrics.NOOP;
+    }
+
+    public ReactorMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Sets the pool used by clients of this reactor for their buffers. Clients created before the call
+     * keep using the previous pool.
+     *
+     * @param bufferPool - pool to be used.
+     */
+    public void setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = Objects.requireNonNull(bufferPool);
+    }
+
+    public BufferPool getBufferPool() {
+        return this.bufferPool;
+    }
+
+    Selector getSelector() {
+        return this.selector;
+    }
+
+    public ReactorScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    public ReactorGroup getGroup() {
+        return this.group;
+    }
+
+    /**
+     * @return Number of clients currently served by this reactor.
+     */
+    public int getLoad() {
+        return this.clients.get();
+    }
+
+    void attachClient() {
+        this.clients.incrementAndGet();
+    }
+
+    void detachClient() {
+        this.clients.decrementAndGet();
+    }
+
+    /**
+     * Closes the reactor or all the reactors of the group it belongs to.
+     */
     public void close() {
+        final ReactorGroup current = this.group;
+        if (current != null) {
+            current.close();
+        } else {
+            shutdown();
+        }
+    }
+
+    void shutdown() {
         this.isRunning = false;
         wakeup();
     }
@@ -1,27 +1,34 @@
 package org.ovirt.vdsm.jsonrpc.client.reactors;
 
-import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.getTimeout;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.logException;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.rmi.ConnectException;
 import java.security.cert.Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
@@ -32,8 +39,10 @@ import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
 import org.ovirt.vdsm.jsonrpc.client.internal.ClientPolicy;
 import org.ovirt.vdsm.jsonrpc.client.utils.LockWrapper;
 import org.ovirt.vdsm.jsonrpc.client.utils.OneTimeCallback;
+import org.ovirt.vdsm.jsonrpc.client.utils.PayloadFormat;
+import org.ovirt.vdsm.jsonrpc.client.utils.ReactorTimer;
 import org.ovirt.vdsm.jsonrpc.client.utils.retry.DefaultConnectionRetryPolicy;
-import org.ovirt.vdsm.jsonrpc.client.utils.retry.Retryable;
+import org.ovirt.vdsm.jsonrpc.client.utils.retry.RetryContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,26 +54,88 @@ public abstract class ReactorClient {
 
     public static final List<Certificate> PEER_CERTIFICATE_EMPTY_LIST = Collections.unmodifiableList(new ArrayList<>());
 
+    /**
+     * Receives message payloads in the format agreed with the peer, see {@link PayloadFormat#detect(byte[])}.
+     */
     public interface MessageListener {
         void onMessageReceived(byte[] message);
     }
+
+    /**
+     * Listener which is able to process content of big messages while it is being received.
+     */
+    public interface MessageStreamListener extends MessageListener {
+
+        /**
+         * Called by the reactor thread when content longer than the streaming threshold of the policy
+         * starts to arrive.
+         *
+         * @param length - content length in bytes.
+         * @return Consumer of the content or <code>null</code> to receive the whole message by
+         *         <code>onMessageReceived</code>.
+         */
+        ContentConsumer onMessageStarted(int length);
+    }
+
+    /**
+     * Receives content of a single message in chunks. Methods are called by the reactor thread.
+     */
+    public interface ContentConsumer {
+
+        /**
+         * Provided bytes are valid only during the call.
+         */
+        void accept(byte[] array, int offset, int length);
+
+        void complete();
+    }
     public static final String CLIENT_CLOSED = "Client close";
     public static final int BUFFER_SIZE = 1024;
+    public static final int DEFAULT_WRITE_BUDGET = 256 * 1024;
+    private static final int MAX_GATHERED_BUFFERS = 64;
     private static final int LIMIT = 20000;
     private static final Logger log = LoggerFactory.getLogger(ReactorClient.class);
+    private static final Executor RESOLVER = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "Address resolver");
+        thread.setDaemon(true);
+        return thread;
+    });
     private final String hostname;
     private final int port;
     private final Lock lock;
     private final AtomicLong lastIncomingHeartbeat = new AtomicLong(0);
     private final AtomicLong lastOutgoingHeartbeat = new AtomicLong(0);
-    private final AtomicBoolean closing = new AtomicBoolean();
+    private volatile boolean closing;
+    private final AtomicBoolean attached = new AtomicBoolean(true);
+    private volatile boolean accepted;
+    private volatile boolean readingSuspended;
+    // accessed only by the reactor thread
+    boolean carried;
     protected final AtomicBoolean half = new AtomicBoolean(true);
+    private ReactorTimer.Timeout outgoingCheck;
+    private ReactorTimer.Timeout incomingCheck;
+    private ReactorTimer.Timeout halfCheck;
+    private ReactorTimer.Timeout connectDeadline;
+    private volatile CompletableFuture<Void> connectFuture;
+    private ConnectionAdmission.Ticket admissionTicket;
+    private final ByteBuffer[] gathered = new ByteBuffer[MAX_GATHERED_BUFFERS];
+    private final ByteBuffer[][] gatheredFrames = new ByteBuffer[MAX_GATHERED_BUFFERS][];
+    private volatile int writeBudget = DEFAULT_WRITE_BUDGET;
+    private volatile int lastFlushedFrames;
+    private volatile long lastFlushedBytes;
+    private volatile long flushedFrames;
+    private volatile long flushedBytes;
+    private volatile long receivedFrames;
+    private volatile long receivedBytes;
     protected volatile ClientPolicy policy = new DefaultConnectionRetryPolicy();
     protected final List<MessageListener> eventListeners;
+    private final List<Runnable> closeListeners;
     protected final Reactor reactor;
-    protected final Deque<ByteBuffer> outbox;
+    /**
+     * Frames waiting to be written, each frame consists of buffers which are written in order.
+     */
+    protected final Deque<ByteBuffer[]> outbox;
     protected SelectionKey key;
-    protected ByteBuffer ibuff = null;
     protected SocketChannel channel;
 
     public ReactorClient(Reactor reactor, String hostname, int port) {
@@ -72,15 +143,24 @@ public abstract class ReactorClient {
         this.hostname = hostname;
         this.port = port;
         this.eventListeners = new CopyOnWriteArrayList<>();
+        this.closeListeners = new CopyOnWriteArrayList<>();
         this.lock = new ReentrantLock();
         this.outbox = new ConcurrentLinkedDeque<>();
-        this.closing.set(false);
+        this.closing = false;
     }
 
     public String getHostname() {
         return this.hostname;
     }
 
+    public int getPort() {
+        return this.port;
+    }
+
+    Reactor getReactor() {
+        return this.reactor;
+    }
+
     public String getClientId() {
         String connectionHash = this.channel == null ? "" : Integer.toString(this.channel.hashCode());
         return this.hostname + ":" + connectionHash;
@@ -89,66 +169,278 @@ public abstract class ReactorClient {
     public void setClientPolicy(ClientPolicy policy) {
         this.validate(policy);
         this.policy = policy;
+        if (isOpen()) {
+            scheduleHeartbeatChecks();
+        }
     }
 
     public ClientPolicy getRetryPolicy() {
         return this.policy;
     }
 
+    /**
+     * Connects to the host and waits until the connection is ready to be used.
+     *
+     * @throws ClientConnectionException when connection fails.
+     */
     public void connect() throws ClientConnectionException {
-        if (isOpen()) {
+        connect(false);
+    }
+
+    /**
+     * Connects to the host and waits until the connection is ready to be used.
+     *
+     * @param pendingCalls - <code>true</code> when there are calls waiting for the connection, such attempts
+     *            are admitted first.
+     * @throws ClientConnectionException when connection fails or it is not ready within the retry timeout of
+     *             each attempt allowed by the policy.
+     */
+    public void connect(boolean pendingCalls) throws ClientConnectionException {
+        if (isOpen() && !isConnecting()) {
+            return;
+        }
+        final CompletableFuture<Void> future = connectAsync(pendingCalls);
+        try {
+            final ClientPolicy policy = this.policy;
+            future.get((long) policy.getRetryTimeOut() * Math.max(policy.getRetryNumber(), 1), policy.getTimeUnit());
+        } catch (TimeoutException e) {
+            abortConnect(future);
+            throw new ClientConnectionException("Connection timeout", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new ClientConnectionException("Connection failed", cause);
+            }
+            throw new ClientConnectionException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientConnectionException(e);
+        }
+    }
+
+    /**
+     * Fails connection attempt which the caller stopped waiting for so its admission ticket is released.
+     * Channel of the attempt which did not finish is closed by the reactor.
+     */
+    private void abortConnect(CompletableFuture<Void> future) {
+        if (!future.completeExceptionally(new ConnectException("Connection timeout"))) {
             return;
         }
+        scheduleTaskOrDefer(() -> {
+            final ReactorTimer.Timeout deadline = this.connectDeadline;
+            if (this.connectFuture == future && this.channel != null && deadline != null
+                    && !deadline.isCancelled()) {
+                cancel(deadline);
+                closeChannel();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Starts connecting to the host without blocking the caller.
+     *
+     * @see #connectAsync(boolean)
+     */
+    public CompletableFuture<Void> connectAsync() {
+        return connectAsync(false);
+    }
+
+    /**
+     * Starts connecting to the host without blocking the caller. The connection is driven by the reactor
+     * using <code>OP_CONNECT</code> and has to be established within the policy's retry timeout. Failures
+     * which occur before connecting is initiated are retried according to the policy. When the policy
+     * provides {@link ConnectionAdmission} the attempt waits until it is admitted.
+     *
+     * @param pendingCalls - <code>true</code> when there are calls waiting for the connection.
+     * @return Future which completes when the connection is ready to be used. When a connection attempt is
+     *         already in progress its future is returned.
+     */
+    public CompletableFuture<Void> connectAsync(boolean pendingCalls) {
         try (LockWrapper ignored = new LockWrapper(this.lock)) {
-            if (isOpen() && isInInit()) {
-                getPostConnectCallback().await(policy.getRetryTimeOut(), policy.getTimeUnit());
+            if (isConnecting()) {
+                if (pendingCalls && this.admissionTicket != null) {
+                    this.admissionTicket.prioritize();
+                }
+                return this.connectFuture;
             }
             if (isOpen()) {
-                return;
+                return CompletableFuture.completedFuture(null);
+            }
+            if (this.attached.compareAndSet(false, true)) {
+                this.reactor.attachClient();
             }
-            final FutureTask<SocketChannel> task = scheduleTask(new Retryable<>(() -> {
-                InetAddress address = InetAddress.getByName(hostname);
-                log.info("Connecting to {}", address);
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            final RetryContext context = new RetryContext(this.policy);
+            this.connectFuture = future;
+            final Runnable start = () -> resolve(future, context);
+            final ConnectionAdmission admission = this.policy.getConnectionAdmission();
+            if (admission == null) {
+                this.admissionTicket = null;
+                start.run();
+            } else {
+                final ConnectionAdmission.Ticket ticket = admission.acquire(this, pendingCalls, start);
+                this.admissionTicket = ticket;
+                future.whenComplete((result, error) -> ticket.release(error == null));
+            }
+            return future;
+        }
+    }
 
-                final InetSocketAddress addr = new InetSocketAddress(address, port);
-                final SocketChannel socketChannel = SocketChannel.open();
+    /**
+     * @return <code>true</code> when a connection attempt is in progress.
+     */
+    public boolean isConnecting() {
+        final CompletableFuture<Void> future = this.connectFuture;
+        return future != null && !future.isDone();
+    }
 
-                socketChannel.configureBlocking(false);
-                socketChannel.connect(addr);
-                log.info("Connected to {}:{}", address, port);
+    /**
+     * @return <code>true</code> when socket connection was initiated but not finished yet.
+     */
+    protected boolean isConnectPending() {
+        final SocketChannel socketChannel = this.channel;
+        return socketChannel != null && socketChannel.isConnectionPending();
+    }
 
-                return socketChannel;
-            }, this.policy));
-            this.channel = task.get();
+    /**
+     * Resolves the host name on a resolver thread so a slow lookup does not stall the reactor and the other
+     * connections it serves. The connection is then initiated by the reactor using the resolved address.
+     */
+    private void resolve(CompletableFuture<Void> future, RetryContext context) {
+        RESOLVER.execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            Callable<Void> next;
+            try {
+                final InetAddress address = InetAddress.getByName(this.hostname);
+                next = () -> {
+                    startConnect(future, context, address);
+                    return null;
+                };
+            } catch (UnknownHostException e) {
+                next = () -> {
+                    retryConnect(future, context, e);
+                    return null;
+                };
+            }
+            try {
+                scheduleTask(next);
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+        });
+    }
 
-            final long timeout = getTimeout(policy.getRetryTimeOut(), policy.getTimeUnit());
-            while (!this.channel.finishConnect()) {
+    private void startConnect(CompletableFuture<Void> future, RetryContext context, InetAddress address) {
+        if (future.isDone()) {
+            return;
+        }
+        boolean connected;
+        try {
+            log.info("Connecting to {}", address);
 
-                final FutureTask<SocketChannel> connectTask = scheduleTask(new Retryable<>(() -> {
-                    if (this.now() >= timeout) {
-                        throw new ConnectException("Connection timeout");
-                    }
-                    return null;
-                }, this.policy));
-                connectTask.get();
+            final SocketChannel socketChannel = SocketChannel.open();
+            this.channel = socketChannel;
+            socketChannel.configureBlocking(false);
+            connected = socketChannel.connect(new InetSocketAddress(address, this.port));
+            this.key = socketChannel.register(this.reactor.getSelector(),
+                    connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT,
+                    this);
+        } catch (IOException e) {
+            retryConnect(future, context, e);
+            return;
+        }
+        armConnectDeadline();
+        if (connected) {
+            channelConnected();
+        }
+    }
+
+    private void retryConnect(CompletableFuture<Void> future, RetryContext context, IOException e) {
+        if (future.isDone()) {
+            return;
+        }
+        closeChannel();
+        if (context.isExceptionRetryable(e)) {
+            context.decreaseAttempts();
+            if (context.getNumberOfAttempts() > 0) {
+                log.warn("Retry failed");
+                this.reactor.schedule(() -> resolve(future, context),
+                        context.getTimeUnit().toMillis(context.getTimeout()));
+                return;
             }
+        }
+        failConnect(e);
+    }
 
-            updateLastIncomingHeartbeat();
-            updateLastOutgoingHeartbeat();
-            if (!isOpen()) {
-                throw new ClientConnectionException("Connection failed");
+    /**
+     * Finishes socket connection when the selection key reports <code>OP_CONNECT</code>.
+     */
+    void processConnect() {
+        try {
+            if (this.channel.finishConnect()) {
+                channelConnected();
             }
-            this.closing.set(false);
-            clean();
-            postConnect(getPostConnectCallback());
-        } catch (ClientConnectionException | InterruptedException | ExecutionException e) {
-            logException(log, "Exception during connection", e);
-            final String message = "Connection issue " + ExceptionUtils.getRootCause(e).getMessage();
-            scheduleClose(message);
-            throw new ClientConnectionException(e);
         } catch (IOException e) {
+            failConnect(e);
+        }
+    }
+
+    private void channelConnected() {
+        log.info("Connected to {}:{}", this.hostname, this.port);
+        updateLastIncomingHeartbeat();
+        updateLastOutgoingHeartbeat();
+        this.closing = false;
+        clean();
+        // protocol level handshake gets its own deadline
+        armConnectDeadline();
+        try {
+            onChannelConnected();
+        } catch (ClientConnectionException e) {
+            failConnect(e);
+            return;
+        }
+        scheduleHeartbeatChecks();
+    }
+
+    private void armConnectDeadline() {
+        cancel(this.connectDeadline);
+        this.connectDeadline = this.reactor.schedule(() -> failConnect(new ConnectException("Connection timeout")),
+                this.policy.getTimeUnit().toMillis(this.policy.getRetryTimeOut()));
+    }
+
+    /**
+     * Marks pending connection attempt as successful. Called when the peer confirmed the connection.
+     */
+    protected void connectionEstablished() {
+        cancel(this.connectDeadline);
+        final CompletableFuture<Void> future = this.connectFuture;
+        if (future != null) {
+            future.complete(null);
+        }
+    }
+
+    private void failConnect(Throwable t) {
+        if (!isConnecting()) {
+            return;
+        }
+        logException(log, "Exception during connection", t);
+        if (t instanceof IOException) {
             closeChannel();
-            throw new ClientConnectionException("Connection failed", e);
+            failPendingConnect(t);
+        } else {
+            final Throwable root = ExceptionUtils.getRootCause(t);
+            disconnect("Connection issue " + (root != null ? root : t).getMessage(), t);
+        }
+    }
+
+    private void failPendingConnect(Throwable t) {
+        cancel(this.connectDeadline);
+        final CompletableFuture<Void> future = this.connectFuture;
+        if (future != null) {
+            future.completeExceptionally(t);
         }
     }
 
@@ -164,55 +456,137 @@ public abstract class ReactorClient {
         eventListeners.remove(el);
     }
 
+    /**
+     * @param listener - called when the client is closed by {@link #close()}, but not when its connection is
+     *            lost.
+     */
+    public void addCloseListener(Runnable listener) {
+        closeListeners.add(listener);
+    }
+
     protected void emitOnMessageReceived(byte[] message) {
         for (MessageListener el : eventListeners) {
             el.onMessageReceived(message);
         }
     }
 
+    /**
+     * Opens streaming of a message content when it is long enough and the only registered listener
+     * supports it.
+     *
+     * @param length - content length in bytes.
+     * @return Consumer of the content or <code>null</code> when the whole message has to be emitted.
+     */
+    protected ContentConsumer openContentConsumer(int length) {
+        final int threshold = this.policy.getStreamingThreshold();
+        if (threshold <= 0 || length < threshold || eventListeners.size() != 1) {
+            return null;
+        }
+        for (MessageListener el : eventListeners) {
+            if (el instanceof MessageStreamListener) {
+                return ((MessageStreamListener) el).onMessageStarted(length);
+            }
+        }
+        return null;
+    }
+
     public final void disconnect(String message) {
-        this.closing.set(true);
+        disconnect(message, null);
+    }
+
+    final void disconnect(String message, Throwable cause) {
+        this.closing = true;
         clean();
         byte[] response = buildNetworkResponse(message);
+        cancelHeartbeatChecks();
         postDisconnect();
         closeChannel();
+        if (this.accepted) {
+            detach();
+        }
+        failPendingConnect(cause != null ? cause : new ClientConnectionException(message));
         emitOnMessageReceived(response);
     }
 
     public Future<Void> close() {
-        return scheduleClose(CLIENT_CLOSED);
+        detach();
+        final Future<Void> closed = scheduleClose(CLIENT_CLOSED);
+        for (Runnable listener : closeListeners) {
+            listener.run();
+        }
+        return closed;
+    }
+
+    void setAccepted() {
+        this.accepted = true;
+    }
+
+    private void detach() {
+        if (this.attached.compareAndSet(true, false)) {
+            this.reactor.detachClient();
+        }
     }
 
     private Future<Void> scheduleClose(final String message) {
-        this.closing.set(true);
+        this.closing = true;
         clean();
-        return scheduleTask(() -> {
+        return scheduleTaskOrDefer(() -> {
             disconnect(message);
             return null;
         });
     }
 
+    /**
+     * Queues task to be run by the reactor thread.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException when the task queue is full.
+     */
     protected <T> FutureTask<T> scheduleTask(Callable<T> callable) {
         final FutureTask<T> task = new FutureTask<>(callable);
         reactor.queueFuture(task);
         return task;
     }
 
+    /**
+     * Queues task to be run by the reactor thread. When the task queue is full the task is run by the
+     * reactor timer instead so tasks which must not be lost do not fail callers.
+     */
+    protected <T> FutureTask<T> scheduleTaskOrDefer(Callable<T> callable) {
+        final FutureTask<T> task = new FutureTask<>(callable);
+        try {
+            reactor.queueFuture(task);
+        } catch (RejectedExecutionException e) {
+            reactor.schedule(task, 0);
+        }
+        return task;
+    }
+
     public void process() throws IOException, ClientConnectionException {
-        if (this.closing.get()) {
+        if (this.closing) {
             return;
         }
-        processIncoming();
-        if (this.closing.get()) {
-            return;
+        // a key selected for writing is processed as well
+        if (!this.readingSuspended) {
+            processIncoming();
         }
-        processHeartbeat();
-        if (this.closing.get()) {
+        if (this.closing) {
             return;
         }
         processOutgoing();
     }
 
+    /**
+     * @return <code>true</code> when input was read from the channel but it was not processed yet, so the
+     *         client has to be processed even when its channel is not ready.
+     */
+    protected boolean hasBufferedInput() {
+        return false;
+    }
+
+    boolean hasPendingInput() {
+        return !this.closing && !this.readingSuspended && hasBufferedInput();
+    }
+
     /**
      * Process incoming channel.
      *
@@ -221,24 +595,152 @@ public abstract class ReactorClient {
      */
     protected abstract void processIncoming() throws IOException, ClientConnectionException;
 
-    private void processHeartbeat() {
-        int incoming = this.policy.getIncomingHeartbeat() / 2;
-        if (incoming < LIMIT) {
-            incoming = LIMIT;
+    /**
+     * Arms heartbeat deadlines in the reactor timer. Each check re-arms itself based on the last heartbeat time
+     * when it fires so traffic does not need to touch the timer. Has to be called whenever heartbeat intervals
+     * change.
+     */
+    protected void scheduleHeartbeatChecks() {
+        scheduleTask(() -> {
+            cancelHeartbeatChecks();
+            if (this.policy.getOutgoingHeartbeat() > 0) {
+                this.outgoingCheck = this.reactor.schedule(this::checkOutgoingHeartbeat,
+                        this.policy.getOutgoingHeartbeat());
+            }
+            if (this.policy.getIncomingHeartbeat() > 0) {
+                this.incomingCheck = this.reactor.schedule(this::checkIncomingHeartbeat,
+                        this.policy.getIncomingHeartbeat());
+            }
+            this.halfCheck = this.reactor.schedule(this::checkHalfHeartbeat, getHalfHeartbeat());
+            return null;
+        });
+    }
+
+    /**
+     * Stops reading from the connection so TCP flow control slows down the peer. Data already read is
+     * still processed.
+     */
+    public void suspendReading() {
+        if (!this.readingSuspended) {
+            this.readingSuspended = true;
+            scheduleTaskOrDefer(() -> {
+                updateInterestedOps();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Resumes reading stopped by {@link #suspendReading()}.
+     */
+    public void resumeReading() {
+        if (this.readingSuspended) {
+            this.readingSuspended = false;
+            scheduleTaskOrDefer(() -> {
+                // the peer could not be heard while reading was suspended
+                updateLastIncomingHeartbeat();
+                updateInterestedOps();
+                if (hasPendingInput()) {
+                    this.reactor.carry(this);
+                }
+                return null;
+            });
+        }
+    }
+
+    public boolean isReadingSuspended() {
+        return this.readingSuspended;
+    }
+
+    /**
+     * @return <code>OP_READ</code> unless reading is suspended.
+     */
+    protected int readInterest() {
+        return this.readingSuspended ? 0 : SelectionKey.OP_READ;
+    }
+
+    private void cancelHeartbeatChecks() {
+        cancel(this.outgoingCheck);
+        cancel(this.incomingCheck);
+        cancel(this.halfCheck);
+    }
+
+    private static void cancel(ReactorTimer.Timeout timeout) {
+        if (timeout != null) {
+            timeout.cancel();
         }
+    }
 
-        if (!this.isInInit() && getHeartbeatTime() > incoming && this.half.compareAndSet(true, false)) {
+    private boolean isActive() {
+        return !this.closing && isOpen();
+    }
+
+    private int getHalfHeartbeat() {
+        return Math.max(this.policy.getIncomingHeartbeat() / 2, LIMIT);
+    }
+
+    protected void checkHalfHeartbeat() {
+        if (!isActive()) {
+            return;
+        }
+        int incoming = getHalfHeartbeat();
+        if (!this.isInInit() && !this.readingSuspended && getHeartbeatTime() > incoming
+                && this.half.compareAndSet(true, false)) {
             log.info("No interaction with host '{}' for {} ms.", getHostname(), incoming);
         }
-        if (!this.isInInit() && this.policy.isIncomingHeartbeat() && this.isIncomingHeartbeatExceeded()) {
+        this.halfCheck = this.reactor.schedule(this::checkHalfHeartbeat,
+                remaining(this.lastIncomingHeartbeat, incoming));
+    }
+
+    protected void checkIncomingHeartbeat() {
+        if (!isActive()) {
+            return;
+        }
+        if (!this.isInInit() && !this.readingSuspended && this.policy.isIncomingHeartbeat()
+                && this.isIncomingHeartbeatExceeded()) {
             String msg = String.format("Connection timeout for host '%s', last response arrived %s ms ago.",
                     getHostname(),
                     getHeartbeatTime());
             log.error(msg);
             this.disconnect(msg);
+            return;
+        }
+        int incoming = this.policy.getIncomingHeartbeat();
+        if (incoming > 0) {
+            this.incomingCheck = this.reactor.schedule(this::checkIncomingHeartbeat,
+                    remaining(this.lastIncomingHeartbeat, incoming));
         }
     }
 
+    protected void checkOutgoingHeartbeat() {
+        if (!isActive()) {
+            return;
+        }
+        if (!this.isInInit() && this.policy.isOutgoingHeartbeat() && this.isOutgoingHeartbeatExceeded()) {
+            try {
+                this.sendHeartbeat();
+                this.processOutgoing();
+            } catch (IOException e) {
+                logException(log, "Unable to process messages " + e.getMessage(), e);
+                disconnect(e.getMessage() != null ? e.getMessage() : "Unable to send heartbeat");
+                return;
+            }
+        }
+        int outgoing = this.policy.getOutgoingHeartbeat();
+        if (outgoing > 0) {
+            this.outgoingCheck = this.reactor.schedule(this::checkOutgoingHeartbeat,
+                    remaining(this.lastOutgoingHeartbeat, outgoing));
+        }
+    }
+
+    /**
+     * Computes delay to the next check, the interval is used as a whole when the deadline already passed.
+     */
+    private long remaining(AtomicLong last, int interval) {
+        long remaining = last.get() + interval - this.now() + 1;
+        return remaining > 0 ? remaining : interval;
+    }
+
     private long getHeartbeatTime() {
         return this.now() - this.lastIncomingHeartbeat.get();
     }
@@ -256,24 +758,162 @@ public abstract class ReactorClient {
         this.lastOutgoingHeartbeat.set(this.now());
     }
 
+    /**
+     * Writes as many queued frames as the socket accepts using a single gathering write. The amount of data
+     * gathered per call is limited by the write budget so a client with a large backlog does not starve
+     * the other clients served by the same reactor. A frame with more buffers than a single write gathers is
+     * written alone in slices.
+     *
+     * @throws IOException when networking issue occurs.
+     */
     protected void processOutgoing() throws IOException {
-        final ByteBuffer buff = outbox.peekLast();
-
-        if (buff == null) {
+        if (outbox.isEmpty()) {
+            if (hasPendingWrites()) {
+                write(this.gathered, 0, 0);
+                updateInterestedOps();
+            }
             return;
         }
+        int count = 0;
+        int gatheredFrames = 0;
+        long gatheredBytes = 0;
+        boolean sliced = false;
+        final Iterator<ByteBuffer[]> iterator = outbox.descendingIterator();
+        while (iterator.hasNext() && gatheredBytes < this.writeBudget) {
+            final ByteBuffer[] frame = iterator.next();
+            if (count + frame.length > MAX_GATHERED_BUFFERS) {
+                if (count == 0) {
+                    // buffers are written in order so the slice starts with the first one not written yet
+                    int first = 0;
+                    while (first < frame.length - 1 && !frame[first].hasRemaining()) {
+                        first++;
+                    }
+                    count = Math.min(MAX_GATHERED_BUFFERS, frame.length - first);
+                    System.arraycopy(frame, first, this.gathered, 0, count);
+                    sliced = first + count < frame.length;
+                    this.gatheredFrames[gatheredFrames++] = frame;
+                }
+                break;
+            }
+            for (ByteBuffer buff : frame) {
+                this.gathered[count++] = buff;
+                gatheredBytes += buff.remaining();
+            }
+            this.gatheredFrames[gatheredFrames++] = frame;
+        }
 
-        write(buff);
+        long written;
+        int frames = 0;
+        try {
+            written = write(this.gathered, 0, count);
+            for (int i = 0; i < gatheredFrames && !sliced; i++) {
+                final ByteBuffer[] frame = this.gatheredFrames[i];
+                if (frame[frame.length - 1].hasRemaining() || outbox.peekLast() != frame) {
+                    break;
+                }
+                outbox.removeLast();
+                frames++;
+                onFrameWritten(frame);
+            }
+        } finally {
+            Arrays.fill(this.gathered, 0, count, null);
+            Arrays.fill(this.gatheredFrames, 0, gatheredFrames, null);
+        }
 
-        if (!buff.hasRemaining()) {
-            outbox.removeLast();
+        this.lastFlushedFrames = frames;
+        this.lastFlushedBytes = written;
+        this.flushedFrames += frames;
+        this.flushedBytes += written;
+        this.reactor.getMetrics().onWrite(this, written, frames);
+        if (log.isTraceEnabled()) {
+            log.trace("Flushed {} frames and {} bytes to '{}'", frames, written, getHostname());
         }
         updateLastOutgoingHeartbeat();
         updateInterestedOps();
     }
 
+    /**
+     * @return <code>true</code> when the transport holds data taken from the outbox which was not written yet.
+     */
+    protected boolean hasPendingWrites() {
+        return false;
+    }
+
+    /**
+     * Called by the reactor thread when all buffers of a frame were written.
+     *
+     * @param frame - buffers of the written frame.
+     */
+    protected void onFrameWritten(ByteBuffer[] frame) {
+    }
+
+    /**
+     * Limits the number of bytes gathered for a single write.
+     *
+     * @param writeBudget - number of bytes, at least one frame is always written.
+     */
+    public void setWriteBudget(int writeBudget) {
+        if (writeBudget <= 0) {
+            throw new IllegalArgumentException("Write budget has to be positive");
+        }
+        this.writeBudget = writeBudget;
+    }
+
+    public int getWriteBudget() {
+        return this.writeBudget;
+    }
+
+    /**
+     * @return Number of frames fully written during the last write.
+     */
+    public int getLastFlushedFrames() {
+        return this.lastFlushedFrames;
+    }
+
+    /**
+     * @return Number of bytes written during the last write.
+     */
+    public long getLastFlushedBytes() {
+        return this.lastFlushedBytes;
+    }
+
+    public long getFlushedFrames() {
+        return this.flushedFrames;
+    }
+
+    public long getFlushedBytes() {
+        return this.flushedBytes;
+    }
+
+    /**
+     * Counts data received from the peer.
+     *
+     * @param bytes - number of bytes read.
+     * @param frames - number of complete frames received.
+     */
+    protected void countIncoming(long bytes, int frames) {
+        this.receivedBytes += bytes;
+        this.receivedFrames += frames;
+        this.reactor.getMetrics().onRead(this, bytes, frames);
+    }
+
+    public long getReceivedBytes() {
+        return this.receivedBytes;
+    }
+
+    public long getReceivedFrames() {
+        return this.receivedFrames;
+    }
+
+    /**
+     * @return Pool shared by clients of the reactor.
+     */
+    protected BufferPool getBufferPool() {
+        return this.reactor.getBufferPool();
+    }
+
     protected void closeChannel() {
-        this.closing.set(true);
+        this.closing = true;
         clean();
         final Callable<Void> callable = new Callable<>() {
 
@@ -311,13 +951,6 @@ public abstract class ReactorClient {
         return Objects.hashCode(this.channel);
     }
 
-    public void performAction() throws IOException {
-        if (!this.isInInit() && this.policy.isOutgoingHeartbeat() && this.isOutgoingHeartbeatExceeded()) {
-            this.sendHeartbeat();
-            this.processOutgoing();
-        }
-    }
-
     private boolean isOutgoingHeartbeatExceeded() {
         return this.lastOutgoingHeartbeat.get() + this.policy.getOutgoingHeartbeat() < this.now();
     }
@@ -333,6 +966,13 @@ public abstract class ReactorClient {
      */
     public abstract void sendMessage(byte[] message);
 
+    /**
+     * @return Format of payloads agreed with the peer.
+     */
+    public PayloadFormat getPayloadFormat() {
+        return PayloadFormat.JSON;
+    }
+
     /**
      * Reads provided buffer.
      *
@@ -354,6 +994,33 @@ public abstract class ReactorClient {
      */
     protected abstract void write(ByteBuffer buff) throws IOException;
 
+    /**
+     * Writes provided buffers in order. The default implementation writes them one by one and stops at the
+     * first buffer which was not fully written, transports should override it with a gathering write.
+     *
+     * @param buffs
+     *            buffers to be written.
+     * @param offset
+     *            index of the first buffer to be written.
+     * @param length
+     *            number of buffers to be written.
+     * @return Number of bytes written.
+     * @throws IOException
+     *             when networking issue occurs.
+     */
+    protected long write(ByteBuffer[] buffs, int offset, int length) throws IOException {
+        long written = 0;
+        for (int i = offset; i < offset + length; i++) {
+            final int remaining = buffs[i].remaining();
+            write(buffs[i]);
+            written += remaining - buffs[i].remaining();
+            if (buffs[i].hasRemaining()) {
+                break;
+            }
+        }
+        return written;
+    }
+
     /**
      * Transport specific post connection functionality.
      *
@@ -363,6 +1030,19 @@ public abstract class ReactorClient {
      */
     protected abstract void postConnect(OneTimeCallback callback) throws ClientConnectionException;
 
+    /**
+     * Transport specific functionality run by the reactor once socket connection initiated by
+     * {@link #connectAsync()} is established. It must not block, the connection attempt is completed by
+     * {@link #connectionEstablished()} once the peer is ready.
+     *
+     * @throws ClientConnectionException
+     *             when issues with connection.
+     */
+    protected void onChannelConnected() throws ClientConnectionException {
+        this.key.interestOps(SelectionKey.OP_READ);
+        connectionEstablished();
+    }
+
     /**
      * Updates selection key's operation set.
      */
@@ -2,9 +2,14 @@ package org.ovirt.vdsm.jsonrpc.client.reactors;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.net.ssl.SSLContext;
 
 import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
 import org.ovirt.vdsm.jsonrpc.client.internal.ResponseWorker;
+import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorGroup.Assignment;
 import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.SSLStompReactor;
 import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompReactor;
 
@@ -20,8 +25,8 @@ public class ReactorFactory {
      */
     private static final int EVENT_TIMEOUT_IN_HOURS = 3;
 
-    private static volatile StompReactor stompReactor;
-    private static volatile SSLStompReactor sslStompReactor;
+    private static volatile ReactorGroup stompGroup;
+    private static volatile ReactorGroup sslStompGroup;
     private static volatile ResponseWorker worker;
 
     /**
@@ -34,8 +39,43 @@ public class ReactorFactory {
      * @throws ClientConnectionException when unexpected type value is provided or issue with constucting selector.
      */
     public static Reactor getReactor(ManagerProvider provider, ReactorType type) throws ClientConnectionException {
+        return getReactor(provider, type, 1);
+    }
+
+    /**
+     * Provides instance of <code>Reactor</code> which shards connections across <code>reactorCount</code>
+     * reactor threads assigning new clients to the least loaded one. The size of the group is defined by the
+     * first call within single loading scope.
+     *
+     * @param provider Provides ability to get SSL context.
+     * @param type <code>ReactorType</code> which will be created.
+     * @param reactorCount Number of reactor threads.
+     * @return Primary reactor of the <code>ReactorGroup</code>.
+     * @throws ClientConnectionException when unexpected type value is provided or issue with constucting selector.
+     */
+    public static Reactor getReactor(ManagerProvider provider, ReactorType type, int reactorCount)
+            throws ClientConnectionException {
+        return getReactor(provider, type, reactorCount, Assignment.LEAST_LOADED);
+    }
+
+    /**
+     * Provides instance of <code>Reactor</code> which shards connections across <code>reactorCount</code>
+     * reactor threads. The size of the group is defined by the first call within single loading scope.
+     *
+     * @param provider Provides ability to get SSL context.
+     * @param type <code>ReactorType</code> which will be created.
+     * @param reactorCount Number of reactor threads.
+     * @param assignment Strategy used to assign clients to reactor threads.
+     * @return Primary reactor of the <code>ReactorGroup</code>.
+     * @throws ClientConnectionException when unexpected type value is provided or issue with constucting selector.
+     */
+    public static Reactor getReactor(ManagerProvider provider, ReactorType type, int reactorCount,
+            Assignment assignment) throws ClientConnectionException {
+        if (reactorCount < 1) {
+            throw new IllegalArgumentException("Number of reactors has to be positive");
+        }
         if (ReactorType.STOMP.equals(type)) {
-            return getStompReactor(provider);
+            return getStompReactor(provider, reactorCount, assignment);
         } else {
             throw new ClientConnectionException("Unrecognized reactor type");
         }
@@ -55,6 +95,16 @@ public class ReactorFactory {
      * @return Single instance of <code>ResponseWorker</code>.
      */
     public static ResponseWorker getWorker(int parallelism, int eventTimeoutInHours) {
+        return getWorker(parallelism, eventTimeoutInHours, ResponseWorker.DEFAULT_PARTITIONS);
+    }
+
+    /**
+     * @param parallelism the parallelism level using for event processing.
+     * @param eventTimeoutInHours the timeout after which the events are purged from the queue.
+     * @param partitions the number of threads processing incoming messages, connections are spread across them.
+     * @return Single instance of <code>ResponseWorker</code>.
+     */
+    public static ResponseWorker getWorker(int parallelism, int eventTimeoutInHours, int partitions) {
         if (worker != null) {
             return worker;
         }
@@ -62,45 +112,63 @@ public class ReactorFactory {
             if (worker != null) {
                 return worker;
             }
-            worker = new ResponseWorker(parallelism, eventTimeoutInHours);
+            worker = new ResponseWorker(parallelism, eventTimeoutInHours, partitions);
         }
         return worker;
     }
 
-    private static Reactor getStompReactor(ManagerProvider provider) throws ClientConnectionException {
+    private static Reactor getStompReactor(ManagerProvider provider, int reactorCount, Assignment assignment)
+            throws ClientConnectionException {
         if (provider != null) {
-            return getSslStompReactor(provider);
+            return getSslStompReactor(provider, reactorCount, assignment);
         }
-        if (stompReactor != null) {
-            return stompReactor;
+        if (stompGroup != null) {
+            return stompGroup.getPrimary();
         }
         synchronized (ReactorFactory.class) {
-            if (stompReactor != null) {
-                return stompReactor;
+            if (stompGroup != null) {
+                return stompGroup.getPrimary();
             }
+            List<StompReactor> reactors = new ArrayList<>(reactorCount);
             try {
-                stompReactor = new StompReactor();
+                for (int i = 0; i < reactorCount; i++) {
+                    reactors.add(new StompReactor(index(i, reactorCount)));
+                }
             } catch (IOException e) {
+                reactors.forEach(Reactor::close);
                 throw new ClientConnectionException(e);
             }
+            stompGroup = ReactorGroup.create(reactors, assignment);
         }
-        return stompReactor;
+        return stompGroup.getPrimary();
     }
 
-    private static Reactor getSslStompReactor(ManagerProvider provider) throws ClientConnectionException {
-        if (sslStompReactor != null) {
-            return sslStompReactor;
+    private static Reactor getSslStompReactor(ManagerProvider provider, int reactorCount, Assignment assignment)
+            throws ClientConnectionException {
+        if (sslStompGroup != null) {
+            return sslStompGroup.getPrimary();
         }
         synchronized (ReactorFactory.class) {
-            if (sslStompReactor != null) {
-                return sslStompReactor;
+            if (sslStompGroup != null) {
+                return sslStompGroup.getPrimary();
             }
+            List<SSLStompReactor> reactors = new ArrayList<>(reactorCount);
             try {
-                sslStompReactor = new SSLStompReactor(provider.getSSLContext());
+                SSLContext context = provider.getSSLContext();
+                for (int i = 0; i < reactorCount; i++) {
+                    reactors.add(new SSLStompReactor(context, index(i, reactorCount)));
+                }
             } catch (IOException | GeneralSecurityException e) {
+                reactors.forEach(Reactor::close);
                 throw new ClientConnectionException(e);
             }
+            sslStompGroup = ReactorGroup.create(reactors, assignment);
         }
-        return sslStompReactor;
+        return sslStompGroup.getPrimary();
+    }
+
+    private static int index(int i, int reactorCount) {
+        // a single reactor keeps the plain thread name
+        return reactorCount > 1 ? i : -1;
     }
 }
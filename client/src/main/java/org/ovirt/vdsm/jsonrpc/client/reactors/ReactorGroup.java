@@ -0,0 +1,119 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <code>ReactorGroup</code> shards connections across a number of {@link Reactor} threads so that selects, TLS work
+ * and frame handling for many hosts are not bound to a single thread.
+ *
+ * Each member reactor keeps a reference to its group and delegates client placement to it, so
+ * {@link Reactor#createClient(String, int)} and {@link ReactorListener#accept()} work against the group
+ * transparently.
+ *
+ */
+public final class ReactorGroup {
+
+    /**
+     * Strategy used to pick a member reactor for a new client.
+     */
+    public enum Assignment {
+        /**
+         * Client is assigned to the reactor which serves the lowest number of clients.
+         */
+        LEAST_LOADED,
+        /**
+         * Client is assigned by consistent hash of the host name so the same host always lands on the same reactor.
+         */
+        HOSTNAME_HASH
+    }
+
+    private final List<Reactor> reactors;
+    private final Assignment assignment;
+
+    private ReactorGroup(List<? extends Reactor> reactors, Assignment assignment) {
+        this.reactors = Collections.unmodifiableList(new ArrayList<>(reactors));
+        this.assignment = assignment;
+    }
+
+    /**
+     * Creates a group from already started reactors and makes it the group of each member. Members are expected
+     * to be created with their index, see {@link Reactor#Reactor(int)}, so their threads are told apart.
+     *
+     * @param reactors - members of the group, the first one is used as the group's entry point.
+     * @param assignment - strategy used to assign clients to the members.
+     * @return The group the reactors delegate client placement to.
+     */
+    public static ReactorGroup create(List<? extends Reactor> reactors, Assignment assignment) {
+        if (reactors == null || reactors.isEmpty()) {
+            throw new IllegalArgumentException("Reactor group requires at least one reactor");
+        }
+        final ReactorGroup group = new ReactorGroup(reactors, assignment);
+        for (Reactor reactor : group.reactors) {
+            reactor.setGroup(group);
+        }
+        return group;
+    }
+
+    /**
+     * @return The reactor which represents the group, used by callers which expect a single <code>Reactor</code>.
+     */
+    public Reactor getPrimary() {
+        return this.reactors.get(0);
+    }
+
+    public List<Reactor> getReactors() {
+        return this.reactors;
+    }
+
+    public Assignment getAssignment() {
+        return this.assignment;
+    }
+
+    /**
+     * Selects reactor which should serve connection to provided host.
+     *
+     * @param hostname - Name of the host the connection belongs to.
+     * @return Member reactor.
+     */
+    public Reactor next(String hostname) {
+        if (this.reactors.size() == 1) {
+            return this.reactors.get(0);
+        }
+        if (Assignment.HOSTNAME_HASH.equals(this.assignment) && hostname != null) {
+            return this.reactors.get(consistentHash(hostname.hashCode(), this.reactors.size()));
+        }
+        Reactor selected = this.reactors.get(0);
+        for (int i = 1; i < this.reactors.size(); i++) {
+            Reactor reactor = this.reactors.get(i);
+            if (reactor.getLoad() < selected.getLoad()) {
+                selected = reactor;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Closes all the member reactors.
+     */
+    public void close() {
+        for (Reactor reactor : this.reactors) {
+            reactor.shutdown();
+        }
+    }
+
+    /**
+     * Jump consistent hash which moves only <code>1/buckets</code> of the keys when the number of buckets grows.
+     */
+    static int consistentHash(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+}
@@ -79,9 +79,7 @@ public final class ReactorListener {
             conn.configureBlocking(false);
             InetSocketAddress address = (InetSocketAddress) conn.getRemoteAddress();
 
-            client = this.reactor.createConnectedClient(this.reactor,
-                    this.selector, address.getHostName(),
-                    address.getPort(), conn);
+            client = this.reactor.acceptClient(address.getHostName(), address.getPort(), conn);
             this.eventListener.onAccept(client);
         } catch (IOException | ClientConnectionException e) {
             log.error("Not able to accept connection", e);
@@ -0,0 +1,50 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors;
+
+/**
+ * Receives measurements of the <code>Reactor</code> loop. Methods are called by the reactor thread so
+ * implementations have to be cheap and must not block.
+ *
+ * @see ReactorStatistics
+ */
+public interface ReactorMetrics {
+
+    /**
+     * Implementation which ignores all measurements.
+     */
+    ReactorMetrics NOOP = new ReactorMetrics() {
+    };
+
+    /**
+     * Called after every loop iteration.
+     *
+     * @param selectTime - nanoseconds spent waiting in select.
+     * @param workTime - nanoseconds spent running tasks, processing channels and timers.
+     * @param selectedKeys - number of keys reported by select.
+     */
+    default void onIteration(long selectTime, long workTime, int selectedKeys) {
+    }
+
+    /**
+     * Called when scheduled tasks were run.
+     *
+     * @param tasks - number of tasks run in the iteration.
+     * @param queueDelay - total nanoseconds the tasks waited in the queue.
+     */
+    default void onTasks(int tasks, long queueDelay) {
+    }
+
+    /**
+     * Called after a client processed its channel.
+     *
+     * @param client - client which was processed.
+     * @param time - nanoseconds spent in {@link ReactorClient#process()}.
+     */
+    default void onProcess(ReactorClient client, long time) {
+    }
+
+    default void onRead(ReactorClient client, long bytes, int frames) {
+    }
+
+    default void onWrite(ReactorClient client, long bytes, int frames) {
+    }
+}
@@ -0,0 +1,209 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.ovirt.vdsm.jsonrpc.client.utils.Histogram;
+
+/**
+ * {@link ReactorMetrics} implementation which aggregates measurements using lock free counters and
+ * histograms. Values can be read by any thread while the reactor is running.
+ */
+public class ReactorStatistics implements ReactorMetrics {
+    public static final int DEFAULT_SLOW_CALLS = 10;
+
+    private final LongAdder iterations = new LongAdder();
+    private final LongAdder selectTime = new LongAdder();
+    private final LongAdder workTime = new LongAdder();
+    private final Histogram selectedKeys = new Histogram();
+    private final Histogram tasks = new Histogram();
+    private final Histogram taskDelay = new Histogram();
+    private final Histogram processTime = new Histogram();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder framesIn = new LongAdder();
+    private final LongAdder framesOut = new LongAdder();
+    private final int slowCallsLimit;
+    private final AtomicReference<SlowCall[]> slowCalls = new AtomicReference<>(new SlowCall[0]);
+    private volatile long slowThreshold;
+
+    public ReactorStatistics() {
+        this(DEFAULT_SLOW_CALLS);
+    }
+
+    /**
+     * @param slowCallsLimit - number of the slowest <code>process()</code> calls which are kept, at least 1.
+     */
+    public ReactorStatistics(int slowCallsLimit) {
+        if (slowCallsLimit < 1) {
+            throw new IllegalArgumentException("Number of slow calls has to be positive");
+        }
+        this.slowCallsLimit = slowCallsLimit;
+    }
+
+    @Override
+    public void onIteration(long selectTime, long workTime, int selectedKeys) {
+        this.iterations.increment();
+        this.selectTime.add(selectTime);
+        this.workTime.add(workTime);
+        this.selectedKeys.record(selectedKeys);
+    }
+
+    @Override
+    public void onTasks(int tasks, long queueDelay) {
+        this.tasks.record(tasks);
+        this.taskDelay.record(queueDelay / tasks);
+    }
+
+    @Override
+    public void onProcess(ReactorClient client, long time) {
+        this.processTime.record(time);
+        if (time > this.slowThreshold) {
+            recordSlowCall(new SlowCall(client.getClientId(), time, System.currentTimeMillis()));
+        }
+    }
+
+    @Override
+    public void onRead(ReactorClient client, long bytes, int frames) {
+        this.bytesRead.add(bytes);
+        this.framesIn.add(frames);
+    }
+
+    @Override
+    public void onWrite(ReactorClient client, long bytes, int frames) {
+        this.bytesWritten.add(bytes);
+        this.framesOut.add(frames);
+    }
+
+    private void recordSlowCall(SlowCall call) {
+        SlowCall[] current;
+        SlowCall[] updated;
+        do {
+            current = this.slowCalls.get();
+            final List<SlowCall> calls = new ArrayList<>(Arrays.asList(current));
+            calls.add(call);
+            calls.sort(Comparator.comparingLong(SlowCall::getTime).reversed());
+            if (calls.size() > this.slowCallsLimit) {
+                calls.remove(calls.size() - 1);
+            }
+            updated = calls.toArray(new SlowCall[0]);
+        } while (!this.slowCalls.compareAndSet(current, updated));
+        if (updated.length == this.slowCallsLimit) {
+            this.slowThreshold = updated[updated.length - 1].getTime();
+        }
+    }
+
+    public long getIterations() {
+        return this.iterations.sum();
+    }
+
+    public long getSelectTime(TimeUnit unit) {
+        return unit.convert(this.selectTime.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getWorkTime(TimeUnit unit) {
+        return unit.convert(this.workTime.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return Fraction of time the reactor thread was busy, values close to 1 mean that the reactor is
+     *         saturated.
+     */
+    public double getUtilization() {
+        final long work = this.workTime.sum();
+        final long total = work + this.selectTime.sum();
+        return total == 0 ? 0 : (double) work / total;
+    }
+
+    public Histogram getSelectedKeys() {
+        return this.selectedKeys;
+    }
+
+    /**
+     * @return Number of tasks run per iteration in which any task was run.
+     */
+    public Histogram getTasks() {
+        return this.tasks;
+    }
+
+    /**
+     * @return Average nanoseconds tasks waited in the queue per iteration.
+     */
+    public Histogram getTaskDelay() {
+        return this.taskDelay;
+    }
+
+    /**
+     * @return Nanoseconds spent in <code>process()</code> calls.
+     */
+    public Histogram getProcessTime() {
+        return this.processTime;
+    }
+
+    public long getBytesRead() {
+        return this.bytesRead.sum();
+    }
+
+    public long getBytesWritten() {
+        return this.bytesWritten.sum();
+    }
+
+    public long getFramesIn() {
+        return this.framesIn.sum();
+    }
+
+    public long getFramesOut() {
+        return this.framesOut.sum();
+    }
+
+    /**
+     * @return The slowest <code>process()</code> calls, the slowest first.
+     */
+    public List<SlowCall> getSlowCalls() {
+        return Collections.unmodifiableList(Arrays.asList(this.slowCalls.get()));
+    }
+
+    /**
+     * Single slow <code>process()</code> call.
+     */
+    public static final class SlowCall {
+        private final String clientId;
+        private final long time;
+        private final long timestamp;
+
+        SlowCall(String clientId, long time, long timestamp) {
+            this.clientId = clientId;
+            this.time = time;
+            this.timestamp = timestamp;
+        }
+
+        public String getClientId() {
+            return this.clientId;
+        }
+
+        /**
+         * @return Nanoseconds the call took.
+         */
+        public long getTime() {
+            return this.time;
+        }
+
+        /**
+         * @return Milliseconds since epoch when the call finished.
+         */
+        public long getTimestamp() {
+            return this.timestamp;
+        }
+
+        @Override
+        public String toString() {
+            return this.clientId + " " + TimeUnit.NANOSECONDS.toMicros(this.time) + "us";
+        }
+    }
+}
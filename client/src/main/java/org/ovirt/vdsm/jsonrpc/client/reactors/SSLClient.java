@@ -70,10 +70,15 @@ public abstract class SSLClient extends StompCommonClient {
 
     @Override
     public void updateInterestedOps() {
-        if (outbox.isEmpty() && (this.nioEngine == null || !this.nioEngine.handshakeInProgress())) {
-            getSelectionKey().interestOps(SelectionKey.OP_READ);
-        } else {
+        if (getSelectionKey() == null || isConnectPending()) {
+            return;
+        }
+        if (this.nioEngine != null && this.nioEngine.handshakeInProgress()) {
             getSelectionKey().interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else if (outbox.isEmpty() && !hasPendingWrites()) {
+            getSelectionKey().interestOps(readInterest());
+        } else {
+            getSelectionKey().interestOps(readInterest() | SelectionKey.OP_WRITE);
         }
     }
 
@@ -103,6 +108,26 @@ public abstract class SSLClient extends StompCommonClient {
         }
     }
 
+    @Override
+    protected long write(ByteBuffer[] buffs, int offset, int length) throws IOException {
+        if (this.nioEngine != null) {
+            return this.nioEngine.write(buffs, offset, length);
+        } else {
+            return channel.write(buffs, offset, length);
+        }
+    }
+
+    @Override
+    protected boolean hasBufferedInput() {
+        final SSLEngineNioHelper engine = this.nioEngine;
+        return engine != null && !engine.handshakeInProgress() && engine.hasBufferedInput();
+    }
+
+    @Override
+    protected boolean hasPendingWrites() {
+        return this.nioEngine != null && this.nioEngine.hasPendingWrites();
+    }
+
     @Override
     public void process() throws IOException, ClientConnectionException {
         final Runnable op = pendingOperations();
@@ -111,7 +136,7 @@ public abstract class SSLClient extends StompCommonClient {
             scheduleTask(() -> {
                 op.run();
                 updateInterestedOps();
-                selector.wakeup();
+                reactor.wakeup();
                 return null;
             });
         }
@@ -152,11 +177,26 @@ public abstract class SSLClient extends StompCommonClient {
     }
 
     @Override
-    public void postDisconnect() {
-        if (this.nioEngine != null) {
-            this.nioEngine.clearBuff();
+    protected void onChannelConnected() throws ClientConnectionException {
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        try {
+            this.nioEngine = new SSLEngineNioHelper(channel, createSSLEngine(this.client), getPostConnectCallback(), this);
+            this.nioEngine.beginHandshake();
+        } catch (SSLException e) {
+            logException(log, "Connection issues during ssl client creation", e);
+            throw new ClientConnectionException(e);
         }
+    }
+
+    @Override
+    public void postDisconnect() {
+        final SSLEngineNioHelper engine = this.nioEngine;
         this.nioEngine = null;
+        if (engine != null) {
+            engine.clearBuff();
+            // disconnect may be called by other threads while the reactor still uses the buffers
+            this.reactor.schedule(engine::release, 0);
+        }
     }
 
     public List<Certificate> getPeerCertificates() {
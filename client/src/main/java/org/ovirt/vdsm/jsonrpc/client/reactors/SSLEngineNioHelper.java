@@ -32,10 +32,17 @@ public class SSLEngineNioHelper {
     private static final long PEER_CERTS_FETCH_DELAY_MS = 50;
     private final SocketChannel channel;
     private final SSLEngine engine;
-    private final ByteBuffer appBuffer;
-    private final ByteBuffer packetBuffer;
-    private final ByteBuffer appPeerBuffer;
-    private final ByteBuffer packatPeerBuffer;
+    // handshake wraps do not carry application data
+    private final ByteBuffer appBuffer = ByteBuffer.allocate(0);
+    private final BufferPool pool;
+    private final int applicationBufferSize;
+    private final int packetBufferSize;
+    // buffers are leased only while they hold data
+    private ByteBuffer packetBuffer;
+    private ByteBuffer appPeerBuffer;
+    private ByteBuffer packatPeerBuffer;
+    // whether received records may be unwrapped without reading from the channel
+    private boolean recordsPending;
     private final SSLClient client;
     private OneTimeCallback callback;
 
@@ -45,11 +52,10 @@ public class SSLEngineNioHelper {
         this.engine = engine;
         this.callback = callback;
         this.client = client;
+        this.pool = client.getBufferPool();
         SSLSession session = engine.getSession();
-        this.appBuffer = ByteBuffer.allocate(session.getApplicationBufferSize());
-        this.packetBuffer = ByteBuffer.allocate(session.getPacketBufferSize());
-        this.appPeerBuffer = ByteBuffer.allocate(session.getApplicationBufferSize());
-        this.packatPeerBuffer = ByteBuffer.allocate(session.getPacketBufferSize());
+        this.applicationBufferSize = session.getApplicationBufferSize();
+        this.packetBufferSize = session.getPacketBufferSize();
     }
 
     public void beginHandshake() throws SSLException {
@@ -58,16 +64,27 @@ public class SSLEngineNioHelper {
 
     public int read(ByteBuffer buff) throws IOException {
         int read = 0;
-        if (this.appPeerBuffer.position() == 0) {
+        if (this.appPeerBuffer == null || this.appPeerBuffer.position() == 0) {
+            if (this.packatPeerBuffer == null) {
+                this.packatPeerBuffer = this.pool.lease(this.packetBufferSize);
+            }
             this.channel.read(this.packatPeerBuffer);
             if (this.packatPeerBuffer.position() == 0) {
+                releasePacketPeerBuffer();
                 return read;
             }
+            if (this.appPeerBuffer == null) {
+                this.appPeerBuffer = this.pool.lease(this.applicationBufferSize);
+            }
             this.packatPeerBuffer.flip();
             boolean retry = true;
 
             while (retry) {
                 SSLEngineResult result = this.engine.unwrap(this.packatPeerBuffer, this.appPeerBuffer);
+                // a single record is unwrapped, the following ones do not need more data from the channel
+                this.recordsPending = this.packatPeerBuffer.hasRemaining()
+                        && result.getStatus() != SSLEngineResult.Status.BUFFER_UNDERFLOW
+                        && result.getStatus() != SSLEngineResult.Status.CLOSED;
                 switch (result.getStatus()) {
                 case CLOSED:
                     read = 0;
@@ -82,6 +99,7 @@ public class SSLEngineNioHelper {
                 }
             }
             this.packatPeerBuffer.compact();
+            releasePacketPeerBuffer();
         }
         putBuffer(buff);
         return read;
@@ -97,39 +115,108 @@ public class SSLEngineNioHelper {
         buff.put(slice);
         this.appPeerBuffer.position(this.appPeerBuffer.position() + slice.limit());
         this.appPeerBuffer.compact();
+        if (this.appPeerBuffer.position() == 0 && this.appPeerBuffer != buff) {
+            this.pool.release(this.appPeerBuffer);
+            this.appPeerBuffer = null;
+        }
+    }
+
+    private void releasePacketPeerBuffer() {
+        if (this.packatPeerBuffer.position() == 0) {
+            this.pool.release(this.packatPeerBuffer);
+            this.packatPeerBuffer = null;
+        }
+    }
+
+    private ByteBuffer packetBuffer() {
+        if (this.packetBuffer == null) {
+            this.packetBuffer = this.pool.lease(this.packetBufferSize);
+        }
+        return this.packetBuffer;
+    }
+
+    private void releasePacketBuffer() {
+        if (this.packetBuffer != null && this.packetBuffer.position() == 0) {
+            this.pool.release(this.packetBuffer);
+            this.packetBuffer = null;
+        }
     }
 
     public void write(ByteBuffer buff) throws IOException {
         if (buff != this.appBuffer) {
-            int attempts = 0;
-            while (buff.hasRemaining()) {
-                SSLEngineResult result = this.engine.wrap(buff, this.packetBuffer);
-                if (SSLEngineResult.Status.CLOSED == result.getStatus()) {
-                    return;
-                }
-                this.packetBuffer.flip();
-                while (this.packetBuffer.hasRemaining()) {
-                    int written = this.channel.write(this.packetBuffer);
-                    if (result.bytesConsumed() == 0 && written == 0) {
-                        attempts++;
-                        if (attempts > MAX_ATTEMPTS) {
-                            // looks like network issue we let higher logic handle timeout
-                            this.packetBuffer.clear();
-                        }
-                    }
-                }
-                this.packetBuffer.compact();
-            }
+            write(new ByteBuffer[] { buff }, 0, 1);
             return;
         }
-        this.appBuffer.flip();
-        this.engine.wrap(this.appBuffer, this.packetBuffer);
-        this.appBuffer.compact();
+        if (!flush()) {
+            return;
+        }
+        final ByteBuffer packetBuffer = packetBuffer();
+        this.engine.wrap(this.appBuffer, packetBuffer);
+        flush();
+    }
 
+    /**
+     * Wraps provided buffers into as few TLS records as possible and writes them. Records which the socket
+     * does not accept are kept and written first by the next call.
+     *
+     * @return Number of application bytes consumed.
+     */
+    public long write(ByteBuffer[] buffs, int offset, int length) throws IOException {
+        long consumed = 0;
+        while (flush() && hasRemaining(buffs, offset, length)) {
+            SSLEngineResult result = this.engine.wrap(buffs, offset, length, packetBuffer());
+            if (SSLEngineResult.Status.CLOSED == result.getStatus()
+                    || result.bytesConsumed() == 0 && result.bytesProduced() == 0) {
+                // the engine needs to unwrap first
+                break;
+            }
+            consumed += result.bytesConsumed();
+        }
+        flush();
+        return consumed;
+    }
+
+    /**
+     * Writes wrapped records which were not written yet.
+     *
+     * @return <code>true</code> when all records were written.
+     */
+    private boolean flush() throws IOException {
+        if (this.packetBuffer == null) {
+            return true;
+        }
         this.packetBuffer.flip();
-        this.channel.write(this.packetBuffer);
-        this.packetBuffer.compact();
+        try {
+            this.channel.write(this.packetBuffer);
+        } finally {
+            this.packetBuffer.compact();
+        }
+        releasePacketBuffer();
+        return this.packetBuffer == null;
+    }
+
+    /**
+     * @return <code>true</code> when data was received but it was not returned by {@link #read(ByteBuffer)} yet.
+     */
+    public boolean hasBufferedInput() {
+        return this.appPeerBuffer != null && this.appPeerBuffer.position() > 0
+                || this.recordsPending && this.packatPeerBuffer != null;
+    }
 
+    /**
+     * @return <code>true</code> when wrapped records wait for the socket to become writable.
+     */
+    public boolean hasPendingWrites() {
+        return this.packetBuffer != null && this.packetBuffer.position() > 0;
+    }
+
+    private static boolean hasRemaining(ByteBuffer[] buffs, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (buffs[i].hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @SuppressWarnings("incomplete-switch")
@@ -138,21 +225,16 @@ public class SSLEngineNioHelper {
             if (this.callback != null) {
                 this.callback.checkAndExecute();
             }
-
-            if (this.getSSLEngine().getUseClientMode()) {
-                try {
-                    client.getPeerCertificates();
-                } catch (Exception e) {
-                    // ignore exception if the session is invalid
-                }
-            }
             return null;
         }
 
         final SSLEngineResult.HandshakeStatus hs = this.engine.getHandshakeStatus();
         switch (hs) {
         case NEED_UNWRAP:
-            this.read(appPeerBuffer);
+            if (this.appPeerBuffer == null) {
+                this.appPeerBuffer = this.pool.lease(this.applicationBufferSize);
+            }
+            this.read(this.appPeerBuffer);
             this.client.updateLastIncomingHeartbeat();
             return null;
         case NEED_WRAP:
@@ -170,7 +252,28 @@ public class SSLEngineNioHelper {
     }
 
     public void clearBuff() {
-        this.packetBuffer.clear();
+        if (this.packetBuffer != null) {
+            this.packetBuffer.clear();
+        }
+    }
+
+    /**
+     * Returns leased buffers to the pool. Has to be called by the reactor thread once the connection
+     * is closed.
+     */
+    public void release() {
+        release(this.packetBuffer);
+        release(this.appPeerBuffer);
+        release(this.packatPeerBuffer);
+        this.packetBuffer = null;
+        this.appPeerBuffer = null;
+        this.packatPeerBuffer = null;
+    }
+
+    private void release(ByteBuffer buffer) {
+        if (buffer != null) {
+            this.pool.release(buffer);
+        }
     }
 
     public SSLEngine getSSLEngine() {
@@ -193,13 +296,7 @@ public class SSLEngineNioHelper {
                     Thread.sleep(PEER_CERTS_FETCH_DELAY_MS);
                 } else {
                     // once we have peer certificates then lets check the validity
-                    for (Certificate cert : sslSession.getPeerCertificates()) {
-                        if (!(cert instanceof X509Certificate)) {
-                            throw new IllegalStateException("Not a x509 certificate");
-                        }
-                        final X509Certificate x509Cert = (X509Certificate) cert;
-                        x509Cert.checkValidity();
-                    }
+                    checkValidity(sslSession.getPeerCertificates());
                     return;
                 }
             } catch (SSLPeerUnverifiedException | InterruptedException e) {
@@ -210,4 +307,32 @@ public class SSLEngineNioHelper {
         throw new ClientConnectionException("Could not fetch peer certificates");
     }
 
+    /**
+     * Checks peer certificates of the established session without waiting for the session to become valid.
+     * Used once the handshake completed.
+     *
+     * @throws ClientConnectionException when the session is invalid or peer certificates are not valid.
+     */
+    public void checkPeerCertificates() throws ClientConnectionException {
+        SSLSession sslSession = engine.getSession();
+        if (sslSession == null || !sslSession.isValid()) {
+            throw new ClientConnectionException("SSL session is invalid");
+        }
+        try {
+            checkValidity(sslSession.getPeerCertificates());
+        } catch (SSLPeerUnverifiedException | CertificateException e) {
+            logException(log, "Certificate validation error", e);
+            throw new ClientConnectionException(e);
+        }
+    }
+
+    private static void checkValidity(Certificate[] certificates) throws CertificateException {
+        for (Certificate cert : certificates) {
+            if (!(cert instanceof X509Certificate)) {
+                throw new IllegalStateException("Not a x509 certificate");
+            }
+            final X509Certificate x509Cert = (X509Certificate) cert;
+            x509Cert.checkValidity();
+        }
+    }
 }
@@ -6,7 +6,6 @@ import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_D
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_HEART_BEAT;
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_HOST;
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_ID;
-import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_REPLY_TO;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.isEmpty;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.reduceGracePeriod;
 
@@ -28,7 +27,10 @@ public class SSLStompClient extends SSLClient {
     private OneTimeCallback callback = new OneTimeCallback() {
 
         @Override
-        public void execute() {
+        public void execute() throws ClientConnectionException {
+            if (nioEngine != null) {
+                nioEngine.checkPeerCertificates();
+            }
             if (connected.getCount() == 0) {
                 connected = new CountDownLatch(1);
             }
@@ -56,7 +58,7 @@ public class SSLStompClient extends SSLClient {
             if (incoming != 0 || outgoing != 0) {
                 message.withHeader(HEADER_HEART_BEAT, outgoing + "," + reduceGracePeriod(incoming));
             }
-            sendNow(message.build());
+            sendNow(withOffers(message).build());
         }
 
         private void subscribe(String queueName) {
@@ -78,12 +80,7 @@ public class SSLStompClient extends SSLClient {
         try {
             waitForConnect();
         } finally {
-            send(new Message().send()
-                    .withHeader(HEADER_DESTINATION, this.getRequestQueue())
-                    .withHeader(HEADER_REPLY_TO, getResponseQueue())
-                    .withCorrelationId()
-                    .withContent(message)
-                    .build());
+            sendRequest(message);
         }
     }
 
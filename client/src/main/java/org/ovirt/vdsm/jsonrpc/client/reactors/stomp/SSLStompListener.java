@@ -39,14 +39,14 @@ public class SSLStompListener extends SSLStompClient implements Sender {
         this.commandFactory = new CommandFactory(this, eventListeners);
 
         postConnect(null);
+        scheduleHeartbeatChecks();
     }
 
     @Override
     public void sendMessage(byte[] message) {
-        send(new Message().message()
+        send(encodeContent(new Message().message()
                 .withHeader(HEADER_DESTINATION, DEFAULT_RESPONSE_QUEUE)
-                .withContent(message)
-                .build());
+                .withContent(message)));
     }
 
     @Override
@@ -60,12 +60,13 @@ public class SSLStompListener extends SSLStompClient implements Sender {
         Message response = executor.execute(message);
         if (Command.CONNECT.toString().equals(command)) {
             updatePolicyWithHeartbeat(response.getHeaders().get(HEADER_HEART_BEAT), false);
+            negotiate(message, response);
             if (message.getHeaders().get(HEADER_HOST) != null) {
                 policy.setIdentifier(message.getHeaders().get(HEADER_HOST));
             }
         }
         if (response != null) {
-            this.send(response.build());
+            this.send(response);
         }
         if (Command.DISCONNECT.toString().equals(command)) {
             try {
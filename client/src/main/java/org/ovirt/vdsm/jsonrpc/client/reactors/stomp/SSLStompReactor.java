@@ -19,6 +19,11 @@ public class SSLStompReactor extends Reactor {
         this.sslContext = sslContext;
     }
 
+    public SSLStompReactor(SSLContext sslContext, int index) throws IOException {
+        super(index);
+        this.sslContext = sslContext;
+    }
+
     @Override
     public String getReactorName() {
         return "SSL Stomp Reactor";
@@ -6,13 +6,11 @@ import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_D
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_HEART_BEAT;
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_HOST;
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_ID;
-import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_REPLY_TO;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.isEmpty;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.reduceGracePeriod;
 
 import java.nio.channels.Selector;
 import java.util.UUID;
-import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 
 import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
@@ -20,7 +18,6 @@ import org.ovirt.vdsm.jsonrpc.client.reactors.PlainClient;
 import org.ovirt.vdsm.jsonrpc.client.reactors.Reactor;
 import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message;
 import org.ovirt.vdsm.jsonrpc.client.utils.OneTimeCallback;
-import org.ovirt.vdsm.jsonrpc.client.utils.retry.AwaitRetry;
 
 public class StompClient extends PlainClient {
 
@@ -51,17 +48,7 @@ public class StompClient extends PlainClient {
             if (incoming != 0 || outgoing != 0) {
                 message.withHeader(HEADER_HEART_BEAT, outgoing + "," + reduceGracePeriod(incoming));
             }
-            sendNow(message.build());
-
-            try {
-                AwaitRetry.retry((Callable<Void>) () -> {
-                    connected.await(policy.getRetryTimeOut(), policy.getTimeUnit());
-                    return null;
-                });
-            } catch (Exception e) {
-                disconnect("Waiting for connect interrupted");
-                throw new ClientConnectionException("Timeout during connection", e);
-            }
+            sendNow(withOffers(message).build());
         }
 
         private void subscribe(String queueName) {
@@ -78,12 +65,7 @@ public class StompClient extends PlainClient {
 
     @Override
     public void sendMessage(byte[] message) {
-        send(new Message().send()
-                .withHeader(HEADER_DESTINATION, this.getRequestQueue())
-                .withHeader(HEADER_REPLY_TO, getResponseQueue())
-                .withCorrelationId()
-                .withContent(message)
-                .build());
+        sendRequest(message);
     }
 
     @Override
@@ -66,6 +66,12 @@ public class StompClientPolicy extends ClientPolicy {
                 this.requestQueue,
                 this.responseQueue);
         policy.setEventQueue(this.eventQueue);
+        policy.setConnectionAdmission(this.getConnectionAdmission());
+        policy.setStreamingThreshold(this.getStreamingThreshold());
+        policy.setCompressionThreshold(this.getCompressionThreshold());
+        policy.setPayloadFormat(this.getPayloadFormat());
+        policy.setCoalescing(this.getCoalescingWindow(), this.getCoalescingLimit());
+        policy.setMaxFrameLength(this.getMaxFrameLength());
         return policy;
     }
 }
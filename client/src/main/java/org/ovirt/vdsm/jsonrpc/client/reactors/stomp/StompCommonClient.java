@@ -1,12 +1,17 @@
 package org.ovirt.vdsm.jsonrpc.client.reactors.stomp;
 
-import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.END_OF_MESSAGE;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_ACCEPT_CONTENT_TYPE;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_ACCEPT_ENCODING;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_CONTENT_ENCODING;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_CONTENT_TYPE;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_CORRELATION_ID;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_DESTINATION;
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_HEART_BEAT;
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_ID;
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_MESSAGE;
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_RECEIPT;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_REPLY_TO;
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEARTBEAT_FRAME;
-import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.UTF8;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.addGracePeriod;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.buildErrorResponse;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.isEmpty;
@@ -16,67 +21,286 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.commons.lang3.StringUtils;
 import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
 import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
 import org.ovirt.vdsm.jsonrpc.client.internal.ClientPolicy;
 import org.ovirt.vdsm.jsonrpc.client.reactors.Reactor;
 import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient;
+import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient.ContentConsumer;
+import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.ContentCompressor;
+import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.FrameDecoder;
+import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.FrameEncoder;
 import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message;
 import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.Command;
+import org.ovirt.vdsm.jsonrpc.client.utils.PayloadFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 public abstract class StompCommonClient extends ReactorClient {
     public static final String DEFAULT_REQUEST_QUEUE = "jms.queue.requests";
     public static final String DEFAULT_RESPONSE_QUEUE = "jms.queue.reponses";
-    protected ByteBuffer headerBuffer = ByteBuffer.allocate(BUFFER_SIZE);
-    protected Message message;
+    private final FrameDecoder decoder = new FrameDecoder(getBufferPool(), FrameDecoder.DEFAULT_BUFFER_SIZE);
+    private final FrameEncoder encoder = new FrameEncoder(getBufferPool());
+    private final ContentCompressor compressor = new ContentCompressor();
+    private volatile boolean compressing;
+    private volatile PayloadFormat payloadFormat = PayloadFormat.JSON;
+    private volatile RequestPrefix requestPrefix;
     protected CountDownLatch connected;
     protected CountDownLatch subscribed;
     protected List<String> subscriptionIds = new ArrayList<>();
+    private final AtomicBoolean interestDirty = new AtomicBoolean();
     private static final Logger LOG = LoggerFactory.getLogger(StompCommonClient.class);
 
     public StompCommonClient(Reactor reactor, String hostname, int port) {
         super(reactor, hostname, port);
+        this.decoder.setContentConsumers(this::openContentConsumer);
+    }
+
+    private ContentConsumer openContentConsumer(Message message) {
+        if (!Command.MESSAGE.toString().equals(message.getCommand())
+                || message.getHeaders().containsKey(HEADER_CONTENT_ENCODING)
+                || message.getPayloadFormat() != PayloadFormat.JSON) {
+            return null;
+        }
+        final ContentConsumer consumer = openContentConsumer(message.getContentLength());
+        if (consumer == null) {
+            return null;
+        }
+        return new ContentConsumer() {
+
+            @Override
+            public void accept(byte[] array, int offset, int length) {
+                consumer.accept(array, offset, length);
+            }
+
+            @Override
+            public void complete() {
+                countIncoming(0, 1);
+                consumer.complete();
+            }
+        };
     }
 
     public void send(byte[] message) {
-        logMessageInTrace(message);
-        outbox.addFirst(ByteBuffer.wrap(message));
-        updateOps();
+        send(new ByteBuffer[] { ByteBuffer.wrap(message) });
+    }
+
+    /**
+     * Encodes the message without building an intermediate array and queues it.
+     */
+    public void send(Message message) {
+        send(this.encoder.encode(message));
+    }
+
+    /**
+     * Queues a request for the request queue with responses sent to the response queue. Command and
+     * these headers are encoded only when the queues change.
+     */
+    protected void sendRequest(byte[] content) {
+        final PayloadFormat format = PayloadFormat.detect(content);
+        final boolean compress = shouldCompress(content);
+        if (format == PayloadFormat.JSON && !compress) {
+            send(this.encoder.encode(requestPrefix(), correlationHeaders(), content));
+            return;
+        }
+        final Map<String, String> headers = new HashMap<>(correlationHeaders());
+        if (format != PayloadFormat.JSON) {
+            headers.put(HEADER_CONTENT_TYPE, format.getContentType());
+        }
+        if (compress) {
+            headers.put(HEADER_CONTENT_ENCODING, ContentCompressor.DEFLATE);
+            content = this.compressor.deflate(content);
+        }
+        send(this.encoder.encode(requestPrefix(), headers, content));
+    }
+
+    /**
+     * Describes the format of the message content and compresses it when compression was negotiated and
+     * the content is long enough.
+     */
+    protected Message encodeContent(Message message) {
+        final byte[] content = message.getContent();
+        final PayloadFormat format = PayloadFormat.detect(content);
+        if (format != PayloadFormat.JSON) {
+            message.withHeader(HEADER_CONTENT_TYPE, format.getContentType());
+        }
+        if (shouldCompress(content)) {
+            message.withHeader(HEADER_CONTENT_ENCODING, ContentCompressor.DEFLATE)
+                    .withContent(this.compressor.deflate(content));
+        }
+        return message;
+    }
+
+    private boolean shouldCompress(byte[] content) {
+        final int threshold = this.policy.getCompressionThreshold();
+        return this.compressing && threshold > 0 && content.length >= threshold;
+    }
+
+    /**
+     * Replaces compressed content of the message by the original one.
+     */
+    private Message decompress(Message message) throws ClientConnectionException {
+        final String encoding = message.getHeaders().remove(HEADER_CONTENT_ENCODING);
+        if (encoding == null) {
+            return message;
+        }
+        if (!ContentCompressor.DEFLATE.equals(encoding)) {
+            throw new ClientConnectionException("Unsupported content encoding " + encoding);
+        }
+        return message.withContent(this.compressor.inflate(message.getBody(), this.policy.getMaxFrameLength()));
+    }
+
+    /**
+     * Offers compression and payload format enabled by the policy in <code>CONNECT</code> frame. Both
+     * are used only after the peer accepts them.
+     */
+    protected Message withOffers(Message connect) {
+        this.compressing = false;
+        this.payloadFormat = PayloadFormat.JSON;
+        if (this.policy.getCompressionThreshold() > 0) {
+            connect.withHeader(HEADER_ACCEPT_ENCODING, ContentCompressor.DEFLATE);
+        }
+        if (this.policy.getPayloadFormat() != PayloadFormat.JSON) {
+            connect.withHeader(HEADER_ACCEPT_CONTENT_TYPE, this.policy.getPayloadFormat().getContentType());
+        }
+        return connect;
     }
 
-    private void logMessageInTrace(byte[] message) {
+    /**
+     * Accepts offers of the peer in <code>CONNECT</code> frame which are enabled by the policy and
+     * confirms them in <code>CONNECTED</code> frame.
+     */
+    protected void negotiate(Message connect, Message connected) {
+        this.compressing = this.policy.getCompressionThreshold() > 0
+                && ContentCompressor.DEFLATE.equals(connect.getHeaders().get(HEADER_ACCEPT_ENCODING));
+        if (this.compressing) {
+            connected.withHeader(HEADER_ACCEPT_ENCODING, ContentCompressor.DEFLATE);
+        }
+        final PayloadFormat format =
+                PayloadFormat.fromContentType(connect.getHeaders().get(HEADER_ACCEPT_CONTENT_TYPE));
+        this.payloadFormat = format == this.policy.getPayloadFormat() ? format : PayloadFormat.JSON;
+        if (this.payloadFormat != PayloadFormat.JSON) {
+            connected.withHeader(HEADER_ACCEPT_CONTENT_TYPE, this.payloadFormat.getContentType());
+        }
+    }
+
+    private void accept(Message connected) {
+        this.compressing = ContentCompressor.DEFLATE.equals(connected.getHeaders().get(HEADER_ACCEPT_ENCODING));
+        final PayloadFormat format =
+                PayloadFormat.fromContentType(connected.getHeaders().get(HEADER_ACCEPT_CONTENT_TYPE));
+        this.payloadFormat = format != null ? format : PayloadFormat.JSON;
+    }
+
+    public boolean isCompressing() {
+        return this.compressing;
+    }
+
+    @Override
+    public PayloadFormat getPayloadFormat() {
+        return this.payloadFormat;
+    }
+
+    private void send(ByteBuffer[] frame) {
+        logMessageInTrace(frame);
+        outbox.addFirst(frame);
+        try {
+            updateOps();
+        } catch (RejectedExecutionException e) {
+            outbox.removeFirstOccurrence(frame);
+            throw e;
+        }
+    }
+
+    private byte[] requestPrefix() {
+        final String destination = getRequestQueue();
+        final String replyTo = getResponseQueue();
+        RequestPrefix prefix = this.requestPrefix;
+        if (prefix == null || !prefix.matches(destination, replyTo)) {
+            prefix = new RequestPrefix(destination, replyTo);
+            this.requestPrefix = prefix;
+        }
+        return prefix.bytes;
+    }
+
+    private static Map<String, String> correlationHeaders() {
+        final String correlationId = MDC.get(HEADER_CORRELATION_ID);
+        if (StringUtils.isNotBlank(correlationId)) {
+            return Collections.singletonMap(HEADER_CORRELATION_ID, correlationId);
+        }
+        return Collections.emptyMap();
+    }
+
+    private void logMessageInTrace(ByteBuffer[] frame) {
         if (LOG.isTraceEnabled()) {
-            LOG.trace("Message received: {}", new String(message, StandardCharsets.UTF_8));
+            StringBuilder message = new StringBuilder();
+            for (ByteBuffer buff : frame) {
+                message.append(StandardCharsets.UTF_8.decode(buff.duplicate()));
+            }
+            LOG.trace("Message received: {}", message);
         }
     }
 
+    @Override
+    protected void onFrameWritten(ByteBuffer[] frame) {
+        this.encoder.release(frame);
+    }
+
+    /**
+     * Schedules update of the interested operations unless one is already pending. The flag is cleared
+     * before the outbox is inspected so a message queued after that schedules a new update. When the task
+     * queue is full the update is deferred to the reactor timer because frames queued by other threads
+     * meanwhile rely on it.
+     */
     private void updateOps() {
-        final ReactorClient client = this;
-        scheduleTask(() -> {
-            client.updateInterestedOps();
-            return null;
-        });
+        if (!this.interestDirty.compareAndSet(false, true)) {
+            return;
+        }
+        final Runnable update = () -> {
+            this.interestDirty.set(false);
+            updateInterestedOps();
+        };
+        try {
+            scheduleTask(() -> {
+                update.run();
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            this.reactor.schedule(update, 0);
+            throw e;
+        }
     }
 
     public void sendNow(byte[] message) {
-        logMessageInTrace(message);
-        outbox.addLast(ByteBuffer.wrap(message));
-        updateOps();
+        final ByteBuffer[] frame = new ByteBuffer[] { ByteBuffer.wrap(message) };
+        logMessageInTrace(frame);
+        outbox.addLast(frame);
+        try {
+            updateOps();
+        } catch (RejectedExecutionException e) {
+            outbox.removeLastOccurrence(frame);
+            throw e;
+        }
     }
 
     void processMessage(Message message) {
         if (Command.CONNECTED.toString().equals(message.getCommand())) {
             updatePolicyWithHeartbeat(message.getHeaders().get(HEADER_HEART_BEAT), true);
+            accept(message);
             this.connected.countDown();
+            connectionEstablished();
         } else if (Command.ACK.toString().equals(message.getCommand())) {
             String headerId = message.getHeaders().get(HEADER_ID);
             if (!isEmpty(headerId)) {
@@ -100,90 +324,46 @@ public abstract class StompCommonClient extends ReactorClient {
     @Override
     public Future<Void> close() {
         clean();
-        subscriptionIds.forEach(
-                subscriptionId -> send(new Message().unsubscribe().withHeader(HEADER_ID, subscriptionId).build()));
-        send(new Message().disconnect().withHeader(HEADER_RECEIPT, UUID.randomUUID().toString()).build());
+        try {
+            subscriptionIds.forEach(
+                    subscriptionId -> send(new Message().unsubscribe().withHeader(HEADER_ID, subscriptionId).build()));
+            send(new Message().disconnect().withHeader(HEADER_RECEIPT, UUID.randomUUID().toString()).build());
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Closing {} without notifying the peer: {}", getHostname(), e.getMessage());
+        }
         return super.close();
     }
 
     @Override
     protected void processIncoming() throws IOException, ClientConnectionException {
-        if (this.ibuff == null) {
-            int read = read(headerBuffer);
-            if (read <= 0) {
+        this.decoder.setMaxFrameLength(this.policy.getMaxFrameLength());
+        final ByteBuffer buffer = this.decoder.buffer();
+        final int position = buffer.position();
+        try {
+            read(buffer);
+            final int read = buffer.position() - position;
+            if (read == 0) {
                 return;
             }
+            countIncoming(read, 0);
             updateLastIncomingHeartbeat();
 
-            this.message = getMessage(headerBuffer, headerBuffer.position());
-            if (this.message == null) {
-                return;
+            Message message;
+            while ((message = this.decoder.next()) != null) {
+                emitOnMessageReceived(message);
             }
-            int contentLength = this.message.getContentLength();
-            if (contentLength == -1) {
-                // only for control messages, all other have the header
-                // according to stomp spec: The commands and headers are encoded in UTF-8
-                String[] messages = new String(headerBuffer.array(), UTF8).split(END_OF_MESSAGE);
-                for (String msg : messages) {
-                    Message mesg = Message.parse((msg + END_OF_MESSAGE).getBytes(UTF8));
-                    int contLen = Objects.requireNonNull(mesg).getContentLength();
-                    if (contLen != -1 && contLen != mesg.getContent().length - 1) {
-                        this.message = mesg;
-                        break;
-                    }
-                    emitOnMessageReceived(mesg);
-                }
-                return;
-            }
-            int length = this.message.getContent().length;
-            if (contentLength == length - 1) {
-                emitOnMessageReceived(this.message);
-                return;
-            } else if (contentLength > length) {
-                this.ibuff = ByteBuffer.allocate(contentLength - length + 1);
-            } else {
-                byte[] content = this.message.getContent();
-                this.message.withContent(Arrays.copyOfRange(content, 0, contentLength + 1));
-                emitOnMessageReceived(this.message);
-                int from = contentLength + 1;
-                if (from > content.length) {
-                    from = content.length;
-                }
-                headerBuffer.put(Arrays.copyOfRange(content, from, content.length));
-                return;
-            }
-        }
-
-        read(this.ibuff);
-        updateLastIncomingHeartbeat();
-        int length = this.message.getContent().length + this.ibuff.position();
-        if (this.message.getContentLength() != length - 1) {
-            return;
+        } finally {
+            this.decoder.release();
         }
-        this.message.withAdditionalContent(this.ibuff.array());
-        emitOnMessageReceived(this.message);
-    }
-
-    private Message getMessage(ByteBuffer buffer, int read) throws ClientConnectionException {
-        if (read > BUFFER_SIZE) {
-            read = BUFFER_SIZE;
-        }
-        byte[] array = new byte[read];
-        buffer.rewind();
-        buffer.get(array);
-        return Message.parse(array);
     }
 
     protected void clean() {
-        headerBuffer = ByteBuffer.allocate(BUFFER_SIZE);
-        this.ibuff = null;
-        this.message = null;
+        this.decoder.reset();
     }
 
-    protected void emitOnMessageReceived(Message message) {
-        message.trimEndOfMessage();
-        clean();
-        processMessage(message);
+    protected void emitOnMessageReceived(Message message) throws ClientConnectionException {
+        countIncoming(0, 1);
+        processMessage(decompress(message));
     }
 
     @Override
@@ -204,6 +384,7 @@ public abstract class StompCommonClient extends ReactorClient {
                 if (policy.getIncomingHeartbeat() != incoming) {
                     policy.setIncomingHeartbeat(addGracePeriod(incoming));
                 }
+                scheduleHeartbeatChecks();
             } catch (NumberFormatException ignored) {
             }
         }
@@ -231,4 +412,25 @@ public abstract class StompCommonClient extends ReactorClient {
     public String getEventQueue() {
         return ((StompClientPolicy)this.policy).getEventQueue();
     }
+
+    /**
+     * Command and headers of requests encoded for a pair of queues.
+     */
+    private static final class RequestPrefix {
+        private final String destination;
+        private final String replyTo;
+        private final byte[] bytes;
+
+        RequestPrefix(String destination, String replyTo) {
+            this.destination = destination;
+            this.replyTo = replyTo;
+            this.bytes = FrameEncoder.prefix(Command.SEND.toString(),
+                    HEADER_DESTINATION, destination,
+                    HEADER_REPLY_TO, replyTo);
+        }
+
+        boolean matches(String destination, String replyTo) {
+            return Objects.equals(this.destination, destination) && Objects.equals(this.replyTo, replyTo);
+        }
+    }
 }
@@ -32,6 +32,7 @@ public class StompListener extends StompClient implements Sender {
         updateLastOutgoingHeartbeat();
 
         postConnect(null);
+        scheduleHeartbeatChecks();
     }
 
     @Override
@@ -41,10 +42,9 @@ public class StompListener extends StompClient implements Sender {
 
     @Override
     public void sendMessage(byte[] message) {
-        send(new Message().message()
+        send(encodeContent(new Message().message()
                 .withHeader(HEADER_DESTINATION, DEFAULT_RESPONSE_QUEUE)
-                .withContent(message)
-                .build());
+                .withContent(message)));
     }
 
     void processMessage(Message message) {
@@ -53,12 +53,13 @@ public class StompListener extends StompClient implements Sender {
         Message response = executor.execute(message);
         if (Command.CONNECT.toString().equals(command)) {
             updatePolicyWithHeartbeat(response.getHeaders().get(HEADER_HEART_BEAT), false);
+            negotiate(message, response);
             if (message.getHeaders().get(HEADER_HOST) != null) {
                 policy.setIdentifier(message.getHeaders().get(HEADER_HOST));
             }
         }
         if (response != null) {
-            this.send(response.build());
+            this.send(response);
         }
         if (Command.DISCONNECT.toString().equals(command)) {
             try {
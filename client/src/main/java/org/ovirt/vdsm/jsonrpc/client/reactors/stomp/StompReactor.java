@@ -14,6 +14,10 @@ public class StompReactor extends Reactor {
         super();
     }
 
+    public StompReactor(int index) throws IOException {
+        super(index);
+    }
+
     @Override
     public String getReactorName() {
         return "Stomp Reactor";
@@ -0,0 +1,83 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
+
+/**
+ * Compresses frame content using deflate. Deflater and inflater are reused by all frames of a
+ * connection so their native state is not allocated per frame. Instances are thread safe.
+ */
+public class ContentCompressor {
+    public static final String DEFLATE = "deflate";
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+
+    public byte[] deflate(byte[] content) {
+        synchronized (this.deflater) {
+            try {
+                this.deflater.setInput(content);
+                this.deflater.finish();
+                byte[] result = new byte[Math.max(content.length / 4, CHUNK_SIZE)];
+                int length = 0;
+                while (!this.deflater.finished()) {
+                    if (length == result.length) {
+                        result = Arrays.copyOf(result, result.length * 2);
+                    }
+                    length += this.deflater.deflate(result, length, result.length - length);
+                }
+                return Arrays.copyOf(result, length);
+            } finally {
+                this.deflater.reset();
+            }
+        }
+    }
+
+    /**
+     * @param content - compressed content which is consumed.
+     * @param maxLength - maximal length of decompressed content.
+     * @return Decompressed content.
+     * @throws ClientConnectionException when the content is not valid deflate data or it decompresses to more
+     *             than <code>maxLength</code> bytes.
+     */
+    public byte[] inflate(ByteBuffer content, int maxLength) throws ClientConnectionException {
+        // one byte over the limit tells that the content is too long
+        final int limit = (int) Math.min(maxLength + 1L, MAX_ARRAY_LENGTH);
+        synchronized (this.inflater) {
+            try {
+                this.inflater.setInput(content);
+                byte[] result = new byte[(int) Math.min(Math.max(content.remaining() * 4L, CHUNK_SIZE), limit)];
+                int length = 0;
+                while (!this.inflater.finished()) {
+                    if (length == result.length) {
+                        if (length == limit) {
+                            throw new ClientConnectionException("Decompressed content exceeds maximal length "
+                                    + maxLength);
+                        }
+                        result = Arrays.copyOf(result, (int) Math.min(result.length * 2L, limit));
+                    }
+                    int inflated = this.inflater.inflate(result, length, result.length - length);
+                    if (inflated == 0 && (this.inflater.needsInput() || this.inflater.needsDictionary())) {
+                        throw new ClientConnectionException("Compressed content is truncated");
+                    }
+                    length += inflated;
+                }
+                if (length > maxLength) {
+                    throw new ClientConnectionException("Decompressed content exceeds maximal length " + maxLength);
+                }
+                return Arrays.copyOf(result, length);
+            } catch (DataFormatException e) {
+                throw new ClientConnectionException("Compressed content is not valid", e);
+            } finally {
+                this.inflater.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_CONTENT_ENCODING;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_CONTENT_LENGTH;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_CONTENT_TYPE;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_DESTINATION;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_HEART_BEAT;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_ID;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_MESSAGE;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_RECEIPT_ID;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_REPLY_TO;
+
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
+import org.ovirt.vdsm.jsonrpc.client.reactors.BufferPool;
+import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient.ContentConsumer;
+import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.Command;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Incremental STOMP frame decoder. Bytes read from a channel are accumulated in a buffer obtained by
+ * {@link #buffer()} and {@link #next()} returns complete frames one by one, keeping partial ones for
+ * the following reads. The buffer is leased from a pool and returned by {@link #release()} once all
+ * received data was decoded.
+ *
+ * Frames are parsed directly from bytes. Body of a returned {@link Message} is a slice of the decoder
+ * buffer which stays valid only until the decoder is used again, <code>Message.getContent()</code>
+ * has to be called before that if the content needs to be kept.
+ *
+ * Frames longer than the maximal frame length are rejected before the buffer grows to hold them.
+ *
+ * Instances are not thread safe and are expected to be used by the reactor thread.
+ */
+public class FrameDecoder {
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 256 * 1024 * 1024;
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final byte COLON = ':';
+    private static final byte NUL = 0;
+    private static final Command[] COMMANDS = Command.values();
+    private static final byte[][] COMMAND_BYTES = new byte[COMMANDS.length][];
+    private static final String[] HEADERS = { HEADER_CONTENT_LENGTH, HEADER_CONTENT_TYPE, HEADER_CONTENT_ENCODING,
+            HEADER_DESTINATION, HEADER_ID, HEADER_MESSAGE, HEADER_RECEIPT_ID, HEADER_REPLY_TO, HEADER_HEART_BEAT,
+            "subscription", "message-id", "version", "server" };
+    private static final byte[][] HEADER_BYTES = new byte[HEADERS.length][];
+    private static final Logger LOG = LoggerFactory.getLogger(FrameDecoder.class);
+
+    static {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            COMMAND_BYTES[i] = COMMANDS[i].toString().getBytes(UTF_8);
+        }
+        for (int i = 0; i < HEADERS.length; i++) {
+            HEADER_BYTES[i] = HEADERS[i].getBytes(UTF_8);
+        }
+    }
+
+    private final BufferPool pool;
+    private final int initialSize;
+    private int maxFrameLength = DEFAULT_MAX_FRAME_LENGTH;
+    private ByteBuffer buffer;
+    // first not decoded byte, the buffer position marks the end of received data
+    private int start;
+    // where to continue looking for the end of headers, relative to start
+    private int scanned;
+    // frame with parsed headers waiting for its body
+    private Message pending;
+    private int bodyOffset;
+    // remaining content when the frame is streamed
+    private int contentLength;
+    private Function<Message, ContentConsumer> consumers;
+    private ContentConsumer consumer;
+    private long heartbeats;
+
+    public FrameDecoder() {
+        this(new BufferPool(), DEFAULT_BUFFER_SIZE);
+    }
+
+    public FrameDecoder(BufferPool pool, int initialSize) {
+        this.pool = pool;
+        this.initialSize = initialSize;
+    }
+
+    /**
+     * Enables streaming of frame content. When the provided function returns a consumer for a frame
+     * with known content length the content is passed to the consumer as it arrives, the frame is not
+     * returned by {@link #next()} and the buffer does not grow to hold it.
+     *
+     * @param consumers - called with command and headers of each frame with content.
+     */
+    public void setContentConsumers(Function<Message, ContentConsumer> consumers) {
+        this.consumers = consumers;
+    }
+
+    /**
+     * Limits the length of received frames including command, headers and the terminating byte.
+     *
+     * @param maxFrameLength - length in bytes.
+     */
+    public void setMaxFrameLength(int maxFrameLength) {
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("Maximal frame length has to be positive");
+        }
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    public int getMaxFrameLength() {
+        return this.maxFrameLength;
+    }
+
+    /**
+     * @return Buffer to read data into. It has space for at least the rest of the partially received
+     *         frame when its content length is known.
+     */
+    public ByteBuffer buffer() {
+        if (this.buffer == null) {
+            this.buffer = this.pool.leaseHeap(this.initialSize);
+        }
+        final int received = this.buffer.position() - this.start;
+        long needed = received + 1L;
+        if (this.pending != null && this.contentLength != -1 && this.consumer == null) {
+            // the length was checked against the maximal frame length when headers were parsed
+            needed = Math.max(needed, (long) this.bodyOffset + this.contentLength + 1);
+        }
+        if (this.start != 0 && (received == 0 || this.buffer.capacity() - this.start < needed)) {
+            System.arraycopy(this.buffer.array(), this.start, this.buffer.array(), 0, received);
+            this.buffer.clear().position(received);
+            this.start = 0;
+        }
+        if (this.buffer.capacity() < needed) {
+            final long size = Math.max(needed, Math.min(this.buffer.capacity() * 2L, this.maxFrameLength + 1L));
+            ByteBuffer grown = this.pool.leaseHeap((int) Math.min(size, Integer.MAX_VALUE - 8));
+            grown.put(this.buffer.array(), 0, received);
+            this.pool.release(this.buffer);
+            this.buffer = grown;
+        }
+        return this.buffer;
+    }
+
+    /**
+     * @return Next complete frame or <code>null</code> when more data is needed.
+     * @throws ClientConnectionException when a malformed frame is received.
+     */
+    public Message next() throws ClientConnectionException {
+        if (this.buffer == null) {
+            return null;
+        }
+        final byte[] array = this.buffer.array();
+        final int end = this.buffer.position();
+        do {
+            if (this.pending == null && !parseHeaders(array, end)) {
+                checkLength(end - this.start);
+                return null;
+            }
+        } while (this.consumer != null && stream(array, end));
+        if (this.consumer != null) {
+            return null;
+        }
+
+        final int bodyStart = this.start + this.bodyOffset;
+        final int bodyEnd;
+        if (this.contentLength != -1) {
+            final long contentEnd = (long) bodyStart + this.contentLength;
+            if (contentEnd >= end) {
+                return null;
+            }
+            bodyEnd = (int) contentEnd;
+            if (array[bodyEnd] != NUL) {
+                throw new ClientConnectionException("Frame is not terminated after content");
+            }
+        } else {
+            bodyEnd = indexOf(array, NUL, bodyStart, end);
+            if (bodyEnd == -1) {
+                checkLength(end - this.start);
+                return null;
+            }
+        }
+        final Message message = this.pending.withBody(ByteBuffer.wrap(array, bodyStart, bodyEnd - bodyStart)
+                .slice());
+        this.pending = null;
+        this.start = bodyEnd + 1;
+        this.scanned = 0;
+        return message;
+    }
+
+    /**
+     * @return <code>true</code> when the whole content of the streamed frame was consumed.
+     */
+    private boolean stream(byte[] array, int end) throws ClientConnectionException {
+        final int bodyStart = this.start + this.bodyOffset;
+        final int available = Math.min(end - bodyStart, this.contentLength);
+        if (available > 0) {
+            this.consumer.accept(array, bodyStart, available);
+            this.contentLength -= available;
+        }
+        this.start = bodyStart + available;
+        this.bodyOffset = 0;
+        if (this.contentLength > 0 || this.start == end) {
+            return false;
+        }
+        if (array[this.start] != NUL) {
+            throw new ClientConnectionException("Frame is not terminated after content");
+        }
+        final ContentConsumer completed = this.consumer;
+        this.consumer = null;
+        this.pending = null;
+        this.start++;
+        this.scanned = 0;
+        completed.complete();
+        return true;
+    }
+
+    private boolean parseHeaders(byte[] array, int end) throws ClientConnectionException {
+        int pos = this.start;
+        // heart-beats and end of lines trailing previous frame
+        while (pos < end && (array[pos] == LF || array[pos] == CR)) {
+            if (array[pos] == LF) {
+                this.heartbeats++;
+            }
+            pos++;
+        }
+        if (pos != this.start) {
+            this.start = pos;
+            this.scanned = 0;
+        }
+        if (pos == end) {
+            return false;
+        }
+
+        final int headersEnd = findHeadersEnd(array, end);
+        if (headersEnd == -1) {
+            return false;
+        }
+
+        int lineEnd = lineEnd(array, pos, headersEnd);
+        final Message message = new Message().setCommand(parseCommand(array, pos, trimCr(array, pos, lineEnd)));
+        this.contentLength = -1;
+        pos = lineEnd + 1;
+        while (pos < headersEnd) {
+            lineEnd = lineEnd(array, pos, headersEnd);
+            int valueEnd = trimCr(array, pos, lineEnd);
+            int colon = indexOf(array, COLON, pos, valueEnd);
+            if (colon != -1) {
+                String key = headerName(array, pos, colon);
+                // according to stomp spec only the first occurrence of a repeated header is used
+                if (!message.getHeaders().containsKey(key)) {
+                    if (HEADER_CONTENT_LENGTH.equals(key)) {
+                        this.contentLength = parseLength(array, colon + 1, valueEnd);
+                    }
+                    message.withHeader(key, new String(array, colon + 1, valueEnd - colon - 1, UTF_8));
+                }
+            }
+            pos = lineEnd + 1;
+        }
+        this.pending = message;
+        this.bodyOffset = skipLine(array, headersEnd, end) - this.start;
+        if (this.contentLength != -1) {
+            checkLength((long) this.bodyOffset + this.contentLength + 1);
+        }
+        if (this.contentLength > 0 && this.consumers != null) {
+            this.consumer = this.consumers.apply(message);
+        }
+        return true;
+    }
+
+    /**
+     * @return Number of heart-beats received.
+     */
+    public long getHeartbeats() {
+        return this.heartbeats;
+    }
+
+    /**
+     * Returns the buffer to the pool when there is no partially received frame. Bodies of returned
+     * messages are not valid afterwards.
+     */
+    public void release() {
+        if (this.buffer != null && (this.pending == null || this.consumer != null)
+                && this.start == this.buffer.position()) {
+            this.pool.release(this.buffer);
+            this.buffer = null;
+            this.start = 0;
+            this.scanned = 0;
+        }
+    }
+
+    /**
+     * Drops all buffered data.
+     */
+    public void reset() {
+        if (this.buffer != null) {
+            this.buffer.clear();
+        }
+        this.start = 0;
+        this.scanned = 0;
+        this.pending = null;
+        this.consumer = null;
+    }
+
+    /**
+     * @param length - length of the received or announced part of a frame.
+     * @throws ClientConnectionException when the length exceeds the maximal frame length.
+     */
+    private void checkLength(long length) throws ClientConnectionException {
+        if (length > this.maxFrameLength) {
+            throw new ClientConnectionException("Frame length " + length + " exceeds maximal frame length "
+                    + this.maxFrameLength);
+        }
+    }
+
+    private int findHeadersEnd(byte[] array, int end) {
+        // headers are terminated by an empty line
+        for (int i = this.start + this.scanned; i < end; i++) {
+            if (array[i] == LF) {
+                int next = i + 1;
+                if (next < end && array[next] == CR) {
+                    next++;
+                }
+                if (next >= end) {
+                    this.scanned = i - this.start;
+                    return -1;
+                }
+                if (array[next] == LF) {
+                    return i + 1;
+                }
+            } else if (array[i] == NUL) {
+                // frame without the empty line and body
+                return i;
+            }
+        }
+        this.scanned = end - this.start;
+        return -1;
+    }
+
+    private static int lineEnd(byte[] array, int from, int end) {
+        int lineEnd = indexOf(array, LF, from, end);
+        return lineEnd == -1 ? end : lineEnd;
+    }
+
+    private static int skipLine(byte[] array, int pos, int end) {
+        if (pos < end && array[pos] == CR) {
+            pos++;
+        }
+        if (pos < end && array[pos] == LF) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int indexOf(byte[] array, byte value, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int trimCr(byte[] array, int from, int lineEnd) {
+        return lineEnd > from && array[lineEnd - 1] == CR ? lineEnd - 1 : lineEnd;
+    }
+
+    private static String parseCommand(byte[] array, int from, int to) throws ClientConnectionException {
+        for (int i = 0; i < COMMAND_BYTES.length; i++) {
+            if (matches(COMMAND_BYTES[i], array, from, to)) {
+                return COMMANDS[i].toString();
+            }
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Message received: " + new String(array, from, to - from, UTF_8));
+        }
+        throw new ClientConnectionException("Unrecognized message received ");
+    }
+
+    private static String headerName(byte[] array, int from, int to) {
+        for (int i = 0; i < HEADER_BYTES.length; i++) {
+            if (matches(HEADER_BYTES[i], array, from, to)) {
+                return HEADERS[i];
+            }
+        }
+        return new String(array, from, to - from, UTF_8);
+    }
+
+    private static boolean matches(byte[] expected, byte[] array, int from, int to) {
+        if (expected.length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != array[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseLength(byte[] array, int from, int to) {
+        if (from == to) {
+            return -1;
+        }
+        long length = 0;
+        for (int i = from; i < to; i++) {
+            int digit = array[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            length = length * 10 + digit;
+            if (length > Integer.MAX_VALUE - 1) {
+                return -1;
+            }
+        }
+        return (int) length;
+    }
+}
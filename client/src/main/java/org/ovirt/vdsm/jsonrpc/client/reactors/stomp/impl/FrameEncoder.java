@@ -0,0 +1,170 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_CONTENT_LENGTH;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.ovirt.vdsm.jsonrpc.client.reactors.BufferPool;
+import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.Command;
+
+/**
+ * Encodes STOMP frames directly to bytes. Command and headers are written to a pooled buffer and the
+ * content is attached as a separate buffer so a frame is sent by a gathering write without copying
+ * or transcoding the content.
+ *
+ * Encoded frames always consist of more than one buffer, the first one being leased from the pool,
+ * which distinguishes them from frames wrapping a single array. Instances are thread safe.
+ */
+public class FrameEncoder {
+    private static final byte LF = '\n';
+    private static final byte COLON = ':';
+    private static final byte[] END_OF_FRAME = { 0 };
+    private static final byte[] CONTENT_LENGTH = (HEADER_CONTENT_LENGTH + ":").getBytes(UTF_8);
+    private static final Map<String, byte[]> COMMANDS = new HashMap<>();
+
+    static {
+        for (Command command : Command.values()) {
+            COMMANDS.put(command.toString(), prefix(command.toString()));
+        }
+    }
+
+    private final BufferPool pool;
+
+    public FrameEncoder() {
+        this(new BufferPool());
+    }
+
+    public FrameEncoder(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Pre-encodes the command and headers shared by many frames.
+     *
+     * @param command - frame command.
+     * @param headers - header names followed by their values.
+     * @return Bytes to be passed to {@link #encode(byte[], Map, byte[])}.
+     */
+    public static byte[] prefix(String command, String... headers) {
+        if (headers.length % 2 != 0) {
+            throw new IllegalArgumentException("Header without value");
+        }
+        int length = length(command) + 1;
+        for (String header : headers) {
+            length += length(header) + 1;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        put(buffer, command);
+        buffer.put(LF);
+        for (int i = 0; i < headers.length; i += 2) {
+            putHeader(buffer, headers[i], headers[i + 1]);
+        }
+        return buffer.array();
+    }
+
+    public ByteBuffer[] encode(Message message) {
+        byte[] prefix = COMMANDS.get(message.getCommand());
+        if (prefix == null) {
+            if (message.getCommand() == null || message.getCommand().isEmpty()) {
+                throw new IllegalArgumentException("Command can't be empty");
+            }
+            prefix = prefix(message.getCommand());
+        }
+        return encode(prefix, message.getHeaders(), message.getContent());
+    }
+
+    /**
+     * @param prefix - command and headers created by {@link #prefix(String, String...)}.
+     * @param headers - additional headers.
+     * @param content - frame content which is not copied.
+     * @return Buffers holding the frame.
+     */
+    public ByteBuffer[] encode(byte[] prefix, Map<String, String> headers, byte[] content) {
+        int length = prefix.length + 1;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (!HEADER_CONTENT_LENGTH.equals(header.getKey())) {
+                length += length(header.getKey()) + length(header.getValue()) + 2;
+            }
+        }
+        if (content.length != 0) {
+            length += CONTENT_LENGTH.length + digits(content.length) + 1;
+        }
+
+        ByteBuffer buffer = this.pool.lease(length);
+        buffer.put(prefix);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            // content length is always computed from the content
+            if (!HEADER_CONTENT_LENGTH.equals(header.getKey())) {
+                putHeader(buffer, header.getKey(), header.getValue());
+            }
+        }
+        if (content.length != 0) {
+            buffer.put(CONTENT_LENGTH);
+            putInt(buffer, content.length);
+            buffer.put(LF);
+        }
+        buffer.put(LF);
+        buffer.flip();
+        if (content.length == 0) {
+            return new ByteBuffer[] { buffer, ByteBuffer.wrap(END_OF_FRAME) };
+        }
+        return new ByteBuffer[] { buffer, ByteBuffer.wrap(content), ByteBuffer.wrap(END_OF_FRAME) };
+    }
+
+    /**
+     * Returns the header buffer of a written frame to the pool. Frames which were not created by the
+     * encoder are ignored.
+     */
+    public void release(ByteBuffer[] frame) {
+        if (frame.length > 1) {
+            this.pool.release(frame[0]);
+        }
+    }
+
+    private static void putHeader(ByteBuffer buffer, String key, String value) {
+        put(buffer, key);
+        buffer.put(COLON);
+        put(buffer, value);
+        buffer.put(LF);
+    }
+
+    private static int length(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return value.getBytes(UTF_8).length;
+            }
+        }
+        return value.length();
+    }
+
+    private static void put(ByteBuffer buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                buffer.put(value.substring(i).getBytes(UTF_8));
+                return;
+            }
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    private static int digits(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private static void putInt(ByteBuffer buffer, int value) {
+        int position = buffer.position() + digits(value);
+        buffer.position(position);
+        do {
+            buffer.put(--position, (byte) ('0' + value % 10));
+            value /= 10;
+        } while (value != 0);
+    }
+}
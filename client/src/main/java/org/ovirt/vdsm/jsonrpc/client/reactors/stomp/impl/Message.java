@@ -3,6 +3,7 @@ package org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.UTF8;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.isEmpty;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -12,6 +13,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
 import org.ovirt.vdsm.jsonrpc.client.JsonRpcRequest;
 import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
+import org.ovirt.vdsm.jsonrpc.client.utils.PayloadFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -44,6 +46,9 @@ public class Message {
     public static final String HEADER_RECEIPT_ID = "receipt-id";
     public static final String HEADER_CONTENT_LENGTH = "content-length";
     public static final String HEADER_CONTENT_TYPE = "content-type";
+    public static final String HEADER_CONTENT_ENCODING = "content-encoding";
+    public static final String HEADER_ACCEPT_ENCODING = "accept-encoding";
+    public static final String HEADER_ACCEPT_CONTENT_TYPE = "accept-content-type";
     public static final String HEADER_HEART_BEAT = "heart-beat";
     public static final String HEADER_HOST = "host";
     public static final String HEADER_CORRELATION_ID = "ovirtCorrelationId";
@@ -54,6 +59,7 @@ public class Message {
     private String command;
     private Map<String, String> headers = new HashMap<>();
     private byte[] content = new byte[0];
+    private ByteBuffer body;
 
     public Message withHeader(String key, String value) {
         this.headers.put(key, value);
@@ -67,6 +73,17 @@ public class Message {
 
     public Message withContent(byte[] content) {
         this.content = content;
+        this.body = null;
+        return this;
+    }
+
+    /**
+     * Sets content without copying it. The buffer is copied to an array only when
+     * {@link #getContent()} is called.
+     */
+    public Message withBody(ByteBuffer body) {
+        this.body = body;
+        this.content = null;
         return this;
     }
 
@@ -79,9 +96,10 @@ public class Message {
     }
 
     public Message withAdditionalContent(byte[] additional) {
-        byte[] result = new byte[this.content.length + additional.length];
-        System.arraycopy(this.content, 0, result, 0, this.content.length);
-        System.arraycopy(additional, 0, result, this.content.length, additional.length);
+        byte[] content = getContent();
+        byte[] result = new byte[content.length + additional.length];
+        System.arraycopy(content, 0, result, 0, content.length);
+        System.arraycopy(additional, 0, result, content.length, additional.length);
 
         this.content = result;
         return this;
@@ -152,7 +170,7 @@ public class Message {
         return this;
     }
 
-    private Message setCommand(String command) {
+    Message setCommand(String command) {
         this.command = command;
         return this;
     }
@@ -170,18 +188,17 @@ public class Message {
             builder.append(this.headers.get(key));
             builder.append("\n");
         }
-        if (this.content.length != 0) {
-            builder.append(HEADER_CONTENT_LENGTH).append(":").append(this.content.length).append("\n");
+        byte[] content = getContent();
+        if (content.length != 0) {
+            builder.append(HEADER_CONTENT_LENGTH).append(":").append(content.length).append("\n");
         }
         builder.append("\n");
 
-        if (this.content.length != 0) {
-            builder.append(new String(this.content, getEncoding()));
-        }
-
-        builder.append(END_OF_MESSAGE);
-
-        return builder.toString().getBytes(UTF8);
+        // content is copied as is since it does not have to be text
+        byte[] header = builder.toString().getBytes(UTF8);
+        byte[] frame = Arrays.copyOf(header, header.length + content.length + 1);
+        System.arraycopy(content, 0, frame, header.length, content.length);
+        return frame;
     }
 
     public String getCommand() {
@@ -193,7 +210,22 @@ public class Message {
     }
 
     public byte[] getContent() {
-        return content;
+        if (this.content == null) {
+            this.content = new byte[this.body.remaining()];
+            this.body.duplicate().get(this.content);
+            this.body = null;
+        }
+        return this.content;
+    }
+
+    /**
+     * @return Read only view of the content.
+     */
+    public ByteBuffer getBody() {
+        if (this.body != null) {
+            return this.body.asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(this.content).asReadOnlyBuffer();
     }
 
     public static Message parse(byte[] array) throws ClientConnectionException {
@@ -270,6 +302,14 @@ public class Message {
         return result;
     }
 
+    /**
+     * @return Format of the content selected by <code>content-type</code> header, JSON by default.
+     */
+    public PayloadFormat getPayloadFormat() {
+        PayloadFormat format = PayloadFormat.fromContentType(getHeaders().get(HEADER_CONTENT_TYPE));
+        return format != null ? format : PayloadFormat.JSON;
+    }
+
     public int getContentLength() {
         String length = getHeaders().get(HEADER_CONTENT_LENGTH);
         int contentLength = -1;
@@ -283,7 +323,8 @@ public class Message {
     }
 
     public void trimEndOfMessage() {
-        this.content = Arrays.copyOfRange(this.content, 0, this.content.length - 1);
+        byte[] content = getContent();
+        this.content = Arrays.copyOfRange(content, 0, content.length - 1);
     }
 
     @Override
@@ -295,10 +336,10 @@ public class Message {
         }
         builder.append("\n");
         if (Command.SEND.toString().equals(this.command)) {
-            JsonRpcRequest request = JsonRpcRequest.fromByteArray(this.content);
+            JsonRpcRequest request = JsonRpcRequest.fromByteArray(getContent());
             builder.append(request.toString());
         } else if (Command.MESSAGE.toString().equals(this.command)) {
-            JsonRpcResponse response = JsonRpcResponse.fromByteArray(this.content);
+            JsonRpcResponse response = JsonRpcResponse.fromByteArray(getContent());
             builder.append(response.toString());
         }
         return builder.toString();
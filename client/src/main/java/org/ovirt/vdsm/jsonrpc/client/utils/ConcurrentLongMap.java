@@ -0,0 +1,191 @@
+package org.ovirt.vdsm.jsonrpc.client.utils;
+
+import java.util.Objects;
+
+/**
+ * Thread safe map with primitive <code>long</code> keys. Keys are not boxed and entries are kept in open
+ * addressing tables so lookups do not allocate. The map is split into independently locked stripes so threads
+ * working with different keys rarely contend.
+ *
+ * @param <V> - type of the values, <code>null</code> values are not permitted.
+ */
+public final class ConcurrentLongMap<V> {
+    private static final int STRIPES = 16;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Stripe<V>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongMap() {
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new Stripe<>();
+        }
+    }
+
+    private static long mix(long key) {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 32);
+    }
+
+    private Stripe<V> stripe(long hash) {
+        // top bits select the stripe, low bits the slot within it
+        return this.stripes[(int) (hash >>> 60)];
+    }
+
+    public V get(long key) {
+        final long hash = mix(key);
+        final Stripe<V> stripe = stripe(hash);
+        synchronized (stripe) {
+            return stripe.get(key, hash);
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return Previous value mapped to the key or <code>null</code> if there was none.
+     */
+    public V put(long key, V value) {
+        Objects.requireNonNull(value);
+        final long hash = mix(key);
+        final Stripe<V> stripe = stripe(hash);
+        synchronized (stripe) {
+            return stripe.put(key, hash, value, false);
+        }
+    }
+
+    /**
+     * @return Value already mapped to the key or <code>null</code> if the provided value was added.
+     */
+    public V putIfAbsent(long key, V value) {
+        Objects.requireNonNull(value);
+        final long hash = mix(key);
+        final Stripe<V> stripe = stripe(hash);
+        synchronized (stripe) {
+            return stripe.put(key, hash, value, true);
+        }
+    }
+
+    /**
+     * @return Removed value or <code>null</code> if the key was not mapped.
+     */
+    public V remove(long key) {
+        final long hash = mix(key);
+        final Stripe<V> stripe = stripe(hash);
+        synchronized (stripe) {
+            return stripe.remove(key, hash);
+        }
+    }
+
+    /**
+     * @return Number of entries. The count is not atomic with respect to concurrent updates.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe<V> stripe : this.stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Open addressing table with linear probing. Slot is free when its value is <code>null</code>.
+     */
+    private static final class Stripe<V> {
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private Object[] values = new Object[INITIAL_CAPACITY];
+        private int size;
+
+        /**
+         * @return Slot of the key or <code>-(slot + 1)</code> of the free slot where it would be added.
+         */
+        private int find(long key, long hash) {
+            final int mask = this.keys.length - 1;
+            int slot = (int) hash & mask;
+            while (this.values[slot] != null) {
+                if (this.keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -(slot + 1);
+        }
+
+        @SuppressWarnings("unchecked")
+        private V get(long key, long hash) {
+            final int slot = find(key, hash);
+            return slot >= 0 ? (V) this.values[slot] : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V put(long key, long hash, V value, boolean onlyIfAbsent) {
+            int slot = find(key, hash);
+            if (slot >= 0) {
+                final V previous = (V) this.values[slot];
+                if (!onlyIfAbsent) {
+                    this.values[slot] = value;
+                }
+                return previous;
+            }
+            slot = -(slot + 1);
+            this.keys[slot] = key;
+            this.values[slot] = value;
+            if (++this.size * 2 > this.keys.length) {
+                resize();
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V remove(long key, long hash) {
+            final int slot = find(key, hash);
+            if (slot < 0) {
+                return null;
+            }
+            final V previous = (V) this.values[slot];
+            // entries following the removed one are shifted back so probing does not need tombstones
+            final int mask = this.keys.length - 1;
+            int free = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                if (this.values[next] == null) {
+                    break;
+                }
+                final int home = (int) mix(this.keys[next]) & mask;
+                // the entry can move only if its home slot is not between the free slot and its current one
+                if (((next - home) & mask) >= ((next - free) & mask)) {
+                    this.keys[free] = this.keys[next];
+                    this.values[free] = this.values[next];
+                    free = next;
+                }
+            }
+            this.values[free] = null;
+            this.size--;
+            return previous;
+        }
+
+        private void resize() {
+            final long[] oldKeys = this.keys;
+            final Object[] oldValues = this.values;
+            this.keys = new long[oldKeys.length * 2];
+            this.values = new Object[oldValues.length * 2];
+            final int mask = this.keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = (int) mix(oldKeys[i]) & mask;
+                    while (this.values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    this.keys[slot] = oldKeys[i];
+                    this.values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.ovirt.vdsm.jsonrpc.client.utils;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Json value which is kept as a range of the received content and parsed only when it is read for the first
+ * time. The range has to contain a single, already validated json value.
+ */
+public final class JsonSlice {
+    private final byte[] content;
+    private final int offset;
+    private final int length;
+    private volatile JsonNode node;
+
+    public JsonSlice(byte[] content, int offset, int length) {
+        this.content = content;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return Parsed value, the tree is built by the first call and shared by the following ones.
+     */
+    public JsonNode getNode() {
+        JsonNode result = this.node;
+        if (result == null) {
+            synchronized (this) {
+                result = this.node;
+                if (result == null) {
+                    try {
+                        result = PayloadFormat.JSON.getMapper().readTree(this.content, this.offset, this.length);
+                    } catch (IOException e) {
+                        throw new IllegalArgumentException("Json value is not valid", e);
+                    }
+                    this.node = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return <code>true</code> when the tree was already built.
+     */
+    public boolean isParsed() {
+        return this.node != null;
+    }
+
+    /**
+     * Reads the value directly from the content without building the tree.
+     *
+     * @param reader - Reader of the requested type.
+     * @param <T> - Type of the value.
+     * @return Value read from the content.
+     * @throws IOException when the value can not be converted to the requested type.
+     */
+    public <T> T readValue(ObjectReader reader) throws IOException {
+        return reader.readValue(this.content, this.offset, this.length);
+    }
+
+    public int getLength() {
+        return this.length;
+    }
+
+    @Override
+    public String toString() {
+        return new String(this.content, this.offset, this.length, JsonUtils.UTF8);
+    }
+}
@@ -7,6 +7,8 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -14,7 +16,6 @@ import java.util.concurrent.TimeUnit;
 import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -41,17 +42,94 @@ public class JsonUtils {
     }
 
     public static Map<String, Object> mapValues(JsonNode node) {
-        Map<String, Object> map = null;
-        try {
-            map = mapper.readValue(mapper.writeValueAsBytes(node),
-                    new TypeReference<HashMap<String, Object>>() {
-                    });
-        } catch (IOException e) {
-            log.debug("Exception thrown during marshalling json", e);
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        if (!node.isObject()) {
+            log.debug("Exception thrown during marshalling json: {} is not an object", node.getNodeType());
+            return null;
+        }
+        return toMap(node, new HashMap<>());
+    }
+
+    /**
+     * Converts json object to a map without serializing it and parsing it again. Values are converted by
+     * {@link #toJavaValue(JsonNode)}.
+     *
+     * @param node - Json object.
+     * @param map - Map which is populated.
+     * @return Provided map.
+     */
+    public static Map<String, Object> toMap(JsonNode node, Map<String, Object> map) {
+        for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext();) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            map.put(field.getKey(), toJavaValue(field.getValue()));
         }
         return map;
     }
 
+    /**
+     * Converts json value to java objects the same way as a mapper with
+     * <code>USE_JAVA_ARRAY_FOR_JSON_ARRAY</code> reads the serialized value. Objects are converted to
+     * <code>LinkedHashMap</code>, arrays to <code>Object[]</code>, integral numbers to the smallest of
+     * <code>Integer</code>, <code>Long</code> and <code>BigInteger</code> and other numbers to <code>Double</code>.
+     *
+     * @param node - Json value.
+     * @return Converted value.
+     */
+    public static Object toJavaValue(JsonNode node) {
+        if (node == null) {
+            return null;
+        }
+        switch (node.getNodeType()) {
+        case OBJECT:
+            return toMap(node, new LinkedHashMap<>());
+        case ARRAY:
+            Object[] array = new Object[node.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = toJavaValue(node.get(i));
+            }
+            return array;
+        case STRING:
+            return node.textValue();
+        case BOOLEAN:
+            return node.booleanValue();
+        case NUMBER:
+            return toNumber(node);
+        case BINARY:
+            // serialized as base64 text
+            return node.asText();
+        case NULL:
+        case MISSING:
+            return null;
+        default:
+            try {
+                return mapper.readValue(mapper.writeValueAsBytes(node), Object.class);
+            } catch (IOException e) {
+                log.debug("Exception thrown during marshalling json", e);
+                return null;
+            }
+        }
+    }
+
+    private static Object toNumber(JsonNode node) {
+        if (node.isIntegralNumber()) {
+            if (node.canConvertToInt()) {
+                return node.intValue();
+            }
+            if (node.canConvertToLong()) {
+                return node.longValue();
+            }
+            return node.bigIntegerValue();
+        }
+        if (node.isDouble()) {
+            double value = node.doubleValue();
+            // non numeric values are serialized as strings
+            return Double.isFinite(value) ? (Object) value : node.asText();
+        }
+        return Double.valueOf(node.asText());
+    }
+
     public static byte[] jsonToByteArray(JsonNode json) {
         final ByteArrayOutputStream os = new ByteArrayOutputStream();
         try {
@@ -70,7 +148,7 @@ public class JsonUtils {
             try (JsonGenerator gen = factory.createGenerator(os, JsonEncoding.UTF8)) {
                 gen.writeStartArray();
                 for (final JsonRpcRequest request : requests) {
-                    gen.writeTree(request.toJson());
+                    request.writeTo(gen);
                 }
                 gen.writeEndArray();
             }
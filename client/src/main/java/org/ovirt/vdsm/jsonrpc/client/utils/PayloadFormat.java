@@ -0,0 +1,144 @@
+package org.ovirt.vdsm.jsonrpc.client.utils;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonFactoryBuilder;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Formats of message payloads. Text JSON is the default, binary Smile is used only when both peers
+ * negotiate it. Smile payloads start with a header so the format of received content can be detected
+ * without additional metadata.
+ */
+public enum PayloadFormat {
+    JSON("application/json", new JsonFactoryBuilder()
+            .configure(JsonFactory.Feature.INTERN_FIELD_NAMES, false)
+            .configure(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES, false)
+            .build()),
+    SMILE("application/x-jackson-smile", SmileFactory.builder()
+            .configure(JsonFactory.Feature.INTERN_FIELD_NAMES, false)
+            .configure(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES, false)
+            .build());
+
+    private static final byte[] SMILE_HEADER = { ':', ')', '\n' };
+    private static final Logger log = LoggerFactory.getLogger(PayloadFormat.class);
+    private static final int MAX_RETAINED = 64 * 1024;
+    // encoding buffers are reused by a thread so only the resulting array is allocated
+    private static final ThreadLocal<ByteArrayBuilder> BUFFERS = ThreadLocal.withInitial(ByteArrayBuilder::new);
+    private final String contentType;
+    private final ObjectMapper mapper;
+
+    PayloadFormat(String contentType, JsonFactory factory) {
+        this.contentType = contentType;
+        this.mapper = new ObjectMapper(factory);
+    }
+
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    public ObjectMapper getMapper() {
+        return this.mapper;
+    }
+
+    private interface Content {
+        void writeTo(JsonGenerator generator) throws IOException;
+    }
+
+    public byte[] toByteArray(JsonNode json) {
+        return encode(gen -> gen.writeTree(json));
+    }
+
+    /**
+     * Writes the request by a generator without building its tree first.
+     */
+    public byte[] toByteArray(JsonRpcRequest request) {
+        return encode(request::writeTo);
+    }
+
+    /**
+     * Writes the requests as a batch by a generator without building its tree first.
+     */
+    public byte[] toByteArray(List<JsonRpcRequest> requests) {
+        return encode(gen -> {
+            gen.writeStartArray(requests, requests.size());
+            for (JsonRpcRequest request : requests) {
+                request.writeTo(gen);
+            }
+            gen.writeEndArray();
+        });
+    }
+
+    private byte[] encode(Content content) {
+        final ByteArrayBuilder buffer = BUFFERS.get();
+        byte[] result = null;
+        try {
+            try (JsonGenerator gen = this.mapper.getFactory().createGenerator(buffer, JsonEncoding.UTF8)) {
+                content.writeTo(gen);
+            } catch (IOException e) {
+                log.debug("Exception thrown during marshalling json", e);
+            }
+            result = buffer.toByteArray();
+            return result;
+        } finally {
+            // buffers grown by big messages are not retained
+            if (result == null || result.length > MAX_RETAINED) {
+                BUFFERS.remove();
+            } else {
+                buffer.reset();
+            }
+        }
+    }
+
+    /**
+     * @param contentType - value of <code>content-type</code> header, parameters are ignored.
+     * @return Format with matching content type or <code>null</code> when it is not known.
+     */
+    public static PayloadFormat fromContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        final int parameters = contentType.indexOf(';');
+        final String mimeType = (parameters == -1 ? contentType : contentType.substring(0, parameters)).trim();
+        for (PayloadFormat format : values()) {
+            if (format.contentType.equalsIgnoreCase(mimeType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Format of provided payload.
+     */
+    public static PayloadFormat detect(byte[] content) {
+        if (content.length < SMILE_HEADER.length) {
+            return JSON;
+        }
+        for (int i = 0; i < SMILE_HEADER.length; i++) {
+            if (content[i] != SMILE_HEADER[i]) {
+                return JSON;
+            }
+        }
+        return SMILE;
+    }
+
+    /**
+     * Parses payload of any supported format.
+     */
+    public static JsonNode readTree(byte[] content) throws IOException {
+        return detect(content).mapper.readTree(content);
+    }
+}
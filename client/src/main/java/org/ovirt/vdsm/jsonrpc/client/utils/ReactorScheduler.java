@@ -1,28 +1,208 @@
 package org.ovirt.vdsm.jsonrpc.client.utils;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayDeque;
 import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Utility class used for processing <code>FutureTask</code>s.
+ *
+ * Tasks are kept in a bounded multi-producer/single-consumer ring buffer. The reactor thread runs at most
+ * <code>budget</code> tasks per call so a flood of tasks does not starve socket processing. When the buffer
+ * is full other threads wait up to the offer timeout and then the task is rejected. The reactor thread never
+ * waits for itself, its tasks are deferred to an overflow queue instead.
  */
 public final class ReactorScheduler {
 
-    private Queue<Future<?>> pendingOperations;
+    public static final int DEFAULT_CAPACITY = 16384;
+    public static final int DEFAULT_BUDGET = 1024;
+    public static final long DEFAULT_OFFER_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private final int mask;
+    private final int budget;
+    private final long offerTimeout;
+    private final AtomicLongArray sequences;
+    private final RunnableFuture<?>[] tasks;
+    private final long[] enqueued;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    // accessed only by the consumer thread
+    private final ArrayDeque<RunnableFuture<?>> overflow = new ArrayDeque<>();
+    private final ArrayDeque<Long> overflowEnqueued = new ArrayDeque<>();
+    private volatile Thread consumer;
+    private volatile int overflowSize;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile long executed;
+    private volatile long totalLatency;
+    private volatile long maxLatency;
 
     public ReactorScheduler() {
-        this.pendingOperations = new ConcurrentLinkedQueue<>();
+        this(DEFAULT_CAPACITY, DEFAULT_BUDGET, DEFAULT_OFFER_TIMEOUT);
+    }
+
+    /**
+     * @param capacity - size of the ring buffer, rounded up to a power of two.
+     * @param budget - maximal number of tasks run by a single {@link #performPendingOperations()} call.
+     * @param offerTimeout - how long in nanoseconds other threads wait for a free slot before rejecting a task.
+     */
+    public ReactorScheduler(int capacity, int budget, long offerTimeout) {
+        if (capacity <= 0 || budget <= 0) {
+            throw new IllegalArgumentException("Capacity and budget have to be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.budget = budget;
+        this.offerTimeout = offerTimeout;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+        this.tasks = new RunnableFuture<?>[size];
+        this.enqueued = new long[size];
     }
 
+    /**
+     * Queues task to be run by the reactor thread.
+     *
+     * @param op - task which has to implement <code>RunnableFuture</code>.
+     * @throws RejectedExecutionException when the queue stays full for longer than the offer timeout.
+     */
     public void queueFuture(Future<?> op) {
-        this.pendingOperations.add(op);
+        final RunnableFuture<?> task = (RunnableFuture<?>) op;
+        if (Thread.currentThread() == this.consumer) {
+            if (this.overflowSize > 0 || !offer(task)) {
+                this.overflow.add(task);
+                this.overflowEnqueued.add(System.nanoTime());
+                this.overflowSize = this.overflow.size();
+            }
+            return;
+        }
+        if (offer(task)) {
+            return;
+        }
+        final long deadline = System.nanoTime() + this.offerTimeout;
+        while (System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(PARK_NANOS);
+            if (offer(task)) {
+                return;
+            }
+        }
+        this.rejected.incrementAndGet();
+        throw new RejectedExecutionException("Reactor task queue is full");
+    }
+
+    /**
+     * Runs queued tasks up to the budget. Has to be called by the reactor thread only.
+     *
+     * @return <code>true</code> when there are tasks left for the next call.
+     */
+    public boolean performPendingOperations() {
+        if (this.consumer == null) {
+            this.consumer = Thread.currentThread();
+        }
+        int count = 0;
+        while (count < this.budget) {
+            final long pos = this.head;
+            final int index = (int) (pos & this.mask);
+            if (this.sequences.get(index) != pos + 1) {
+                break;
+            }
+            final RunnableFuture<?> task = this.tasks[index];
+            final long time = this.enqueued[index];
+            this.tasks[index] = null;
+            this.sequences.set(index, pos + this.mask + 1);
+            this.head = pos + 1;
+            run(task, time);
+            count++;
+        }
+        while (count < this.budget && !this.overflow.isEmpty()) {
+            final RunnableFuture<?> task = this.overflow.poll();
+            final long time = this.overflowEnqueued.poll();
+            this.overflowSize = this.overflow.size();
+            run(task, time);
+            count++;
+        }
+        return getQueueDepth() > 0;
+    }
+
+    /**
+     * @return Number of tasks waiting to be run.
+     */
+    public int getQueueDepth() {
+        return (int) (this.tail.get() - this.head) + this.overflowSize;
+    }
+
+    public long getExecutedTasks() {
+        return this.executed;
+    }
+
+    public long getRejectedTasks() {
+        return this.rejected.get();
+    }
+
+    /**
+     * @return Total time in nanoseconds all executed tasks spent in the queue before they were run.
+     */
+    public long getTotalLatency() {
+        return this.totalLatency;
+    }
+
+    /**
+     * @return Average time in nanoseconds tasks spent in the queue before they were run.
+     */
+    public long getAverageLatency() {
+        final long count = this.executed;
+        return count == 0 ? 0 : this.totalLatency / count;
+    }
+
+    /**
+     * @return Longest time in nanoseconds a task spent in the queue before it was run.
+     */
+    public long getMaxLatency() {
+        return this.maxLatency;
+    }
+
+    private boolean offer(RunnableFuture<?> task) {
+        long pos = this.tail.get();
+        int index;
+        for (;;) {
+            index = (int) (pos & this.mask);
+            final long diff = this.sequences.get(index) - pos;
+            if (diff == 0) {
+                if (this.tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = this.tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = this.tail.get();
+            }
+        }
+        this.tasks[index] = task;
+        this.enqueued[index] = System.nanoTime();
+        this.sequences.set(index, pos + 1);
+        return true;
     }
 
-    public void performPendingOperations() {
-        while (!pendingOperations.isEmpty()) {
-            ((FutureTask)pendingOperations.poll()).run();
+    private void run(RunnableFuture<?> task, long time) {
+        final long latency = System.nanoTime() - time;
+        this.totalLatency += latency;
+        if (latency > this.maxLatency) {
+            this.maxLatency = latency;
         }
+        this.executed++;
+        task.run();
     }
 }
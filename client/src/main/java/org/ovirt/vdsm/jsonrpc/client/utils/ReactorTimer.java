@@ -0,0 +1,204 @@
+package org.ovirt.vdsm.jsonrpc.client.utils;
+
+import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.logException;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timing wheel used by a reactor to track per connection deadlines like heartbeats.
+ *
+ * Timeouts can be scheduled and cancelled from any thread but they are expired and run only by the
+ * owning reactor thread using {@link #expire()}. Scheduling and cancellation are O(1) so the cost of
+ * a reactor loop iteration does not depend on the number of idle connections.
+ */
+public final class ReactorTimer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReactorTimer.class);
+    public static final long DEFAULT_TICK = 100;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * Handle of scheduled task.
+     */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Prevents the task from running. Cancelled timeouts are removed lazily when their bucket is visited.
+         */
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        public long getDeadline() {
+            return this.deadline;
+        }
+    }
+
+    private final LongSupplier clock;
+    private final long tick;
+    private final int mask;
+    private final long start;
+    private final ArrayDeque<Timeout>[] wheel;
+    private final Queue<Timeout> pending;
+    private long currentTick;
+    private int size;
+
+    public ReactorTimer() {
+        this(() -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()), DEFAULT_TICK, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param clock - source of the current time in milliseconds.
+     * @param tick - duration of a single wheel bucket in milliseconds.
+     * @param wheelSize - number of buckets, rounded up to a power of two.
+     */
+    @SuppressWarnings("unchecked")
+    public ReactorTimer(LongSupplier clock, long tick, int wheelSize) {
+        if (tick <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick and wheel size have to be positive");
+        }
+        int buckets = Integer.highestOneBit(wheelSize);
+        if (buckets < wheelSize) {
+            buckets <<= 1;
+        }
+        this.clock = clock;
+        this.tick = tick;
+        this.mask = buckets - 1;
+        this.start = clock.getAsLong();
+        this.wheel = new ArrayDeque[buckets];
+        for (int i = 0; i < buckets; i++) {
+            this.wheel[i] = new ArrayDeque<>();
+        }
+        this.pending = new ConcurrentLinkedQueue<>();
+    }
+
+    public long now() {
+        return this.clock.getAsLong();
+    }
+
+    /**
+     * Schedules task to be run by the reactor thread after provided delay.
+     *
+     * @param task - task to run.
+     * @param delay - delay in milliseconds.
+     * @return Handle which can be used to cancel the task.
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        final Timeout timeout = new Timeout(task, now() + Math.max(0, delay));
+        this.pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Runs all the tasks which deadline passed. Has to be called by the reactor thread only.
+     *
+     * @return Number of tasks run.
+     */
+    public int expire() {
+        final long now = now();
+        transferPending();
+        final long nowTick = tickOf(now);
+        final long buckets = Math.min(nowTick - this.currentTick + 1, this.wheel.length);
+        int expired = 0;
+        for (long t = this.currentTick; t < this.currentTick + buckets; t++) {
+            expired += expireBucket(this.wheel[(int) (t & this.mask)], now);
+        }
+        this.currentTick = nowTick;
+        return expired;
+    }
+
+    /**
+     * Computes how long the reactor may block before the closest deadline. Has to be called by
+     * the reactor thread only.
+     *
+     * @param max - maximal delay returned in milliseconds.
+     * @return Delay in milliseconds to the closest deadline, <code>0</code> if a deadline already passed.
+     */
+    public long nextDelay(long max) {
+        final long now = now();
+        transferPending();
+        if (this.size == 0) {
+            return max;
+        }
+        final long last = Math.min(tickOf(now + max), this.currentTick + this.mask);
+        for (long t = this.currentTick; t <= last; t++) {
+            final ArrayDeque<Timeout> bucket = this.wheel[(int) (t & this.mask)];
+            long deadline = Long.MAX_VALUE;
+            // rotating the bucket keeps its order and unlike an iterator does not allocate
+            for (int i = bucket.size(); i > 0; i--) {
+                final Timeout timeout = bucket.pollFirst();
+                bucket.addLast(timeout);
+                if (!timeout.cancelled && tickOf(timeout.deadline) <= t) {
+                    deadline = Math.min(deadline, timeout.deadline);
+                }
+            }
+            if (deadline != Long.MAX_VALUE) {
+                return Math.min(max, Math.max(0, deadline - now));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return Number of scheduled tasks including the cancelled ones which were not removed yet.
+     */
+    public int size() {
+        return this.size + this.pending.size();
+    }
+
+    private int expireBucket(ArrayDeque<Timeout> bucket, long now) {
+        int expired = 0;
+        for (int i = bucket.size(); i > 0; i--) {
+            final Timeout timeout = bucket.pollFirst();
+            if (timeout.cancelled) {
+                this.size--;
+            } else if (timeout.deadline <= now) {
+                this.size--;
+                expired++;
+                try {
+                    timeout.task.run();
+                } catch (Exception e) {
+                    logException(LOG, "Exception occurred during running timed task", e);
+                }
+            } else {
+                bucket.addLast(timeout);
+            }
+        }
+        return expired;
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = this.pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long ticks = Math.max(tickOf(timeout.deadline), this.currentTick);
+            this.wheel[(int) (ticks & this.mask)].add(timeout);
+            this.size++;
+        }
+    }
+
+    private long tickOf(long time) {
+        return Math.max(0, time - this.start) / this.tick;
+    }
+}
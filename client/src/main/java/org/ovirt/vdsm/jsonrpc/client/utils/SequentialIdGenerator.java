@@ -0,0 +1,86 @@
+package org.ovirt.vdsm.jsonrpc.client.utils;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ovirt.vdsm.jsonrpc.client.IdGenerator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+/**
+ * Generates textual ids made of a random prefix chosen once per instance and a hexadecimal sequence number.
+ * Unlike random UUIDs ids are generated without synchronization and each id maps to its sequence number so
+ * they can be tracked by primitive keys.
+ *
+ */
+public final class SequentialIdGenerator implements IdGenerator {
+    private static final SequentialIdGenerator DEFAULT = new SequentialIdGenerator();
+    private static final int MAX_DIGITS = 16;
+
+    private final String prefix;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public SequentialIdGenerator() {
+        this.prefix = String.format("%016x-", new SecureRandom().nextLong());
+    }
+
+    /**
+     * @return Generator used by {@link org.ovirt.vdsm.jsonrpc.client.RequestBuilder} unless replaced.
+     */
+    public static SequentialIdGenerator getDefault() {
+        return DEFAULT;
+    }
+
+    @Override
+    public JsonNode next() {
+        final long number = this.sequence.incrementAndGet();
+        return new SequentialId(this.prefix + Long.toHexString(number), this, number);
+    }
+
+    /**
+     * Maps id generated by this instance to its sequence number.
+     *
+     * @param id - Id of a request or a response.
+     * @return Positive sequence number of the id or <code>-1</code> when it was not generated by this instance.
+     */
+    public long toKey(JsonNode id) {
+        if (id instanceof SequentialId && ((SequentialId) id).generator == this) {
+            return ((SequentialId) id).number;
+        }
+        if (id == null || !id.isTextual()) {
+            return -1;
+        }
+        final String text = id.textValue();
+        final int start = this.prefix.length();
+        if (text.length() <= start || text.length() > start + MAX_DIGITS || text.charAt(start) == '0'
+                || !text.startsWith(this.prefix)) {
+            return -1;
+        }
+        long number = 0;
+        for (int i = start; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            final int digit = c >= '0' && c <= '9' ? c - '0' : c >= 'a' && c <= 'f' ? c - 'a' + 10 : -1;
+            if (digit == -1) {
+                return -1;
+            }
+            number = number << 4 | digit;
+        }
+        return number;
+    }
+
+    /**
+     * Id which keeps its sequence number. It is equal to any textual node with the same text.
+     */
+    private static final class SequentialId extends TextNode {
+        private static final long serialVersionUID = 1L;
+        private final transient SequentialIdGenerator generator;
+        private final long number;
+
+        private SequentialId(String value, SequentialIdGenerator generator, long number) {
+            super(value);
+            this.generator = generator;
+            this.number = number;
+        }
+    }
+}
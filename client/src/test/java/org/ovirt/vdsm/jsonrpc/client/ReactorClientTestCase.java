@@ -1,11 +1,14 @@
 package org.ovirt.vdsm.jsonrpc.client;
 
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.ovirt.vdsm.jsonrpc.testutils.MockReactors.mockReactor;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
@@ -21,6 +24,8 @@ public class ReactorClientTestCase {
 
         private boolean open;
         private boolean isInInit;
+        private int capacity = Integer.MAX_VALUE;
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
 
         public TestReactorClient(Reactor reactor, String hostname, int port) {
             super(reactor, hostname, port);
@@ -47,6 +52,36 @@ public class ReactorClientTestCase {
         protected void write(ByteBuffer buff) {
         }
 
+        @Override
+        protected long write(ByteBuffer[] buffs, int offset, int length) {
+            long count = 0;
+            for (int i = offset; i < offset + length && this.capacity > 0; i++) {
+                while (buffs[i].hasRemaining() && this.capacity > 0) {
+                    this.written.write(buffs[i].get());
+                    this.capacity--;
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        public void queue(String frame) {
+            queue(new ByteBuffer[] { ByteBuffer.wrap(frame.getBytes()) });
+        }
+
+        public void queue(ByteBuffer[] frame) {
+            this.outbox.addFirst(frame);
+        }
+
+        public void flush(int capacity) throws IOException {
+            this.capacity = capacity;
+            processOutgoing();
+        }
+
+        public byte[] getWritten() {
+            return this.written.toByteArray();
+        }
+
         @Override
         protected void postConnect(OneTimeCallback callback) {
         }
@@ -103,36 +138,43 @@ public class ReactorClientTestCase {
         public boolean isHalf() {
             return this.half.get();
         }
+
+        public void checkHeartbeats() {
+            checkHalfHeartbeat();
+            checkIncomingHeartbeat();
+            checkOutgoingHeartbeat();
+        }
     }
 
     @Test
     public void testHeartbeat() throws IOException, ClientConnectionException {
-        Reactor reactor = mock(Reactor.class);
-        ReactorClient client = new TestReactorClient(reactor, "localhost", 0);
+        Reactor reactor = mockReactor();
+        TestReactorClient client = new TestReactorClient(reactor, "localhost", 0);
         ClientPolicy policy = new ClientPolicy(0, 0, 1000000, 1000000);
         client.setClientPolicy(policy);
 
         client.process();
+        client.checkHeartbeats();
         assertTrue(client.isOpen());
     }
 
     @Test
     public void testFailHeartbeat() throws IOException, ClientConnectionException {
-        Reactor reactor = mock(Reactor.class);
-        ReactorClient client = spy(new TestReactorClient(reactor, "localhost", 0));
+        Reactor reactor = mockReactor();
+        TestReactorClient client = spy(new TestReactorClient(reactor, "localhost", 0));
         ClientPolicy policy = new ClientPolicy(0, 0, 500, 500);
         client.setClientPolicy(policy);
 
         long now = System.currentTimeMillis();
-        when(client.now()).thenReturn(now, now + TimeUnit.SECONDS.toMillis(10));
+        when(client.now()).thenReturn(now + TimeUnit.SECONDS.toMillis(10));
 
-        client.process();
+        client.checkHeartbeats();
         assertFalse(client.isOpen());
     }
 
     @Test
     public void testHalf() throws IOException, ClientConnectionException {
-        Reactor reactor = mock(Reactor.class);
+        Reactor reactor = mockReactor();
         TestReactorClient client = spy(new TestReactorClient(reactor, "localhost", 0));
         ClientPolicy policy = new ClientPolicy(0, 0, 500, 500);
         client.setClientPolicy(policy);
@@ -140,23 +182,96 @@ public class ReactorClientTestCase {
         long now = System.currentTimeMillis();
         when(client.now()).thenReturn(now + TimeUnit.SECONDS.toMillis(30), now);
 
-        client.process();
+        client.checkHeartbeats();
         assertFalse(client.isHalf());
     }
 
     @Test
     public void testConnecting() throws IOException, ClientConnectionException {
-        Reactor reactor = mock(Reactor.class);
+        Reactor reactor = mockReactor();
         TestReactorClient client = spy(new TestReactorClient(reactor, "localhost", 0));
         ClientPolicy policy = new ClientPolicy(0, 0, 500, 500);
         client.setClientPolicy(policy);
         client.setInInit(true);
 
         long now = System.currentTimeMillis();
-        when(client.now()).thenReturn(now, now + TimeUnit.SECONDS.toMillis(10));
+        when(client.now()).thenReturn(now + TimeUnit.SECONDS.toMillis(10));
 
-        client.process();
+        client.checkHeartbeats();
         assertTrue(client.isOpen());
         assertTrue(client.isHalf());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGatheringWrite() throws IOException {
+        Reactor reactor = mockReactor();
+        TestReactorClient client = new TestReactorClient(reactor, "localhost", 0);
+        client.queue("first");
+        client.queue("second");
+        client.queue("third");
+
+        client.flush(Integer.MAX_VALUE);
+
+        assertArrayEquals("firstsecondthird".getBytes(), client.getWritten());
+        assertEquals(3, client.getLastFlushedFrames());
+        assertEquals(16, client.getLastFlushedBytes());
+    }
+
+    @Test
+    public void testPartialGatheringWrite() throws IOException {
+        Reactor reactor = mockReactor();
+        TestReactorClient client = new TestReactorClient(reactor, "localhost", 0);
+        client.queue("first");
+        client.queue("second");
+
+        client.flush(8);
+        assertEquals(1, client.getLastFlushedFrames());
+        assertEquals(8, client.getLastFlushedBytes());
+
+        client.queue("third");
+        client.flush(Integer.MAX_VALUE);
+        assertEquals(2, client.getLastFlushedFrames());
+        assertArrayEquals("firstsecondthird".getBytes(), client.getWritten());
+        assertEquals(3, client.getFlushedFrames());
+        assertEquals(16, client.getFlushedBytes());
+    }
+
+    @Test
+    public void testFrameWithManyBuffers() throws IOException {
+        Reactor reactor = mockReactor();
+        TestReactorClient client = new TestReactorClient(reactor, "localhost", 0);
+        StringBuilder expected = new StringBuilder();
+        ByteBuffer[] frame = new ByteBuffer[150];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = ByteBuffer.wrap(new byte[] { (byte) ('a' + i % 26) });
+            expected.append((char) ('a' + i % 26));
+        }
+        client.queue("first");
+        client.queue(frame);
+        client.queue("last");
+
+        for (int i = 0; i < 5; i++) {
+            client.flush(Integer.MAX_VALUE);
+        }
+
+        assertArrayEquals(("first" + expected + "last").getBytes(), client.getWritten());
+        assertEquals(3, client.getFlushedFrames());
+    }
+
+    @Test
+    public void testWriteBudget() throws IOException {
+        Reactor reactor = mockReactor();
+        TestReactorClient client = new TestReactorClient(reactor, "localhost", 0);
+        client.setWriteBudget(6);
+        client.queue("first");
+        client.queue("second");
+        client.queue("third");
+
+        client.flush(Integer.MAX_VALUE);
+        assertEquals(2, client.getLastFlushedFrames());
+
+        client.flush(Integer.MAX_VALUE);
+        assertEquals(1, client.getLastFlushedFrames());
+        assertArrayEquals("firstsecondthird".getBytes(), client.getWritten());
+    }
+}
@@ -4,12 +4,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.UTF8;
 import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.buildErrorResponse;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
 
@@ -110,6 +116,194 @@ public class ResponseWorkerTestCase {
         processMessage(subscriber, response.toByteArray(), latch);
     }
 
+    @Test
+    public void testReadingSuspendedAboveHighWatermark() throws InterruptedException {
+        final CountDownLatch processing = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        // a single partition keeps all the messages queued while the first one is processed
+        this.worker.close();
+        this.worker = new ResponseWorker(Runtime.getRuntime().availableProcessors(), EVENT_TIMEOUT_IN_HOURS, 1);
+        this.worker.setWatermarks(200, 1000);
+        ReactorClient heavy = blockingClient("heavy", processing, blocked);
+        ReactorClient light = blockingClient("light", processing, blocked);
+        MessageListener heavyListener = register(heavy);
+        MessageListener lightListener = register(light);
+
+        try {
+            heavyListener.onMessageReceived(event(400));
+            assertTrue(processing.await(5, TimeUnit.SECONDS));
+            lightListener.onMessageReceived(event(100));
+            lightListener.onMessageReceived(event(100));
+            heavyListener.onMessageReceived(event(400));
+            heavyListener.onMessageReceived(event(400));
+            verify(heavy, never()).suspendReading();
+
+            heavyListener.onMessageReceived(event(400));
+            lightListener.onMessageReceived(event(100));
+
+            assertEquals(1500, this.worker.getQueuedBytes());
+            verify(heavy).suspendReading();
+            verify(light, never()).suspendReading();
+        } finally {
+            blocked.countDown();
+        }
+        verify(heavy, timeout(5000)).resumeReading();
+        verify(light, never()).resumeReading();
+    }
+
+    @Test
+    public void testReconnectedClientSuspended() throws InterruptedException {
+        final CountDownLatch processing = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        this.worker.close();
+        this.worker = new ResponseWorker(Runtime.getRuntime().availableProcessors(), EVENT_TIMEOUT_IN_HOURS, 1);
+        this.worker.setWatermarks(200, 1000);
+        ReactorClient heavy = blockingClient("heavy", processing, blocked);
+        MessageListener heavyListener = register(heavy);
+        // heavy is reconnecting while another client registers
+        when(heavy.isOpen()).thenReturn(false);
+        ReactorClient light = blockingClient("light", processing, blocked);
+        MessageListener lightListener = register(light);
+        when(heavy.isOpen()).thenReturn(true);
+
+        try {
+            heavyListener.onMessageReceived(event(400));
+            assertTrue(processing.await(5, TimeUnit.SECONDS));
+            lightListener.onMessageReceived(event(100));
+            heavyListener.onMessageReceived(event(400));
+            heavyListener.onMessageReceived(event(400));
+            heavyListener.onMessageReceived(event(400));
+
+            verify(heavy).suspendReading();
+            verify(light, never()).suspendReading();
+        } finally {
+            blocked.countDown();
+        }
+        verify(heavy, timeout(5000)).resumeReading();
+    }
+
+    @Test
+    public void testConnectionsProcessedInParallel() throws InterruptedException {
+        final CountDownLatch processing = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch processed = new CountDownLatch(2);
+        this.worker.close();
+        this.worker = new ResponseWorker(Runtime.getRuntime().availableProcessors(), EVENT_TIMEOUT_IN_HOURS, 2);
+        ReactorClient heavy = blockingClient("heavy", processing, blocked);
+        ReactorClient light = mock(ReactorClient.class);
+        when(light.isOpen()).thenReturn(true);
+        when(light.getHostname()).then(invocation -> {
+            if (Thread.currentThread().getName().startsWith("ResponseWorker")) {
+                processed.countDown();
+            }
+            return "light";
+        });
+        MessageListener heavyListener = register(heavy);
+        MessageListener lightListener = register(light);
+
+        try {
+            heavyListener.onMessageReceived(event(400));
+            assertTrue(processing.await(5, TimeUnit.SECONDS));
+            lightListener.onMessageReceived(event(100));
+            lightListener.onMessageReceived(event(100));
+
+            assertTrue(processed.await(5, TimeUnit.SECONDS));
+        } finally {
+            blocked.countDown();
+        }
+    }
+
+    @Test
+    public void testUnconnectedClientsPartitioned() throws InterruptedException {
+        this.worker.close();
+        this.worker = new ResponseWorker(Runtime.getRuntime().availableProcessors(), EVENT_TIMEOUT_IN_HOURS, 3);
+        final Map<String, String> partitions = new ConcurrentHashMap<>();
+        final CountDownLatch processed = new CountDownLatch(3);
+        MessageListener[] listeners = new MessageListener[3];
+        ReactorClient[] clients = new ReactorClient[3];
+        for (int i = 0; i < 3; i++) {
+            clients[i] = partitionRecordingClient("host" + i, partitions, processed);
+            listeners[i] = register(clients[i]);
+        }
+
+        for (MessageListener listener : listeners) {
+            listener.onMessageReceived(event(100));
+        }
+
+        assertTrue(processed.await(5, TimeUnit.SECONDS));
+        assertEquals(3, new HashSet<>(partitions.values()).size());
+    }
+
+    @Test
+    public void testClosedClientUnregistered() throws InterruptedException {
+        this.worker.close();
+        this.worker = new ResponseWorker(Runtime.getRuntime().availableProcessors(), EVENT_TIMEOUT_IN_HOURS, 2);
+        final Map<String, String> partitions = new ConcurrentHashMap<>();
+        final CountDownLatch processed = new CountDownLatch(2);
+        ReactorClient closed = partitionRecordingClient("closed", partitions, processed);
+        ReactorClient open = partitionRecordingClient("open", partitions, processed);
+        MessageListener closedListener = register(closed);
+        register(open);
+        ArgumentCaptor<Runnable> closeListener = ArgumentCaptor.forClass(Runnable.class);
+        verify(closed).addCloseListener(closeListener.capture());
+        closeListener.getValue().run();
+        ReactorClient next = partitionRecordingClient("next", partitions, processed);
+        MessageListener nextListener = register(next);
+
+        closedListener.onMessageReceived(event(100));
+        nextListener.onMessageReceived(event(100));
+
+        assertTrue(processed.await(5, TimeUnit.SECONDS));
+        assertEquals(partitions.get("closed"), partitions.get("next"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWatermarks() {
+        this.worker.setWatermarks(1000, 100);
+    }
+
+    private static ReactorClient partitionRecordingClient(String hostname, Map<String, String> partitions,
+            CountDownLatch processed) {
+        // registered clients are not connected yet
+        ReactorClient client = mock(ReactorClient.class);
+        when(client.getHostname()).then(invocation -> {
+            String thread = Thread.currentThread().getName();
+            if (thread.startsWith("ResponseWorker") && partitions.putIfAbsent(hostname, thread) == null) {
+                processed.countDown();
+            }
+            return hostname;
+        });
+        return client;
+    }
+
+    private ReactorClient blockingClient(String hostname, CountDownLatch processing, CountDownLatch blocked) {
+        ReactorClient client = mock(ReactorClient.class);
+        when(client.isOpen()).thenReturn(true);
+        when(client.getHostname()).then(invocation -> {
+            // keeps the worker busy with the first message
+            if (Thread.currentThread().getName().startsWith("ResponseWorker")) {
+                processing.countDown();
+                blocked.await();
+            }
+            return hostname;
+        });
+        return client;
+    }
+
+    private MessageListener register(ReactorClient client) {
+        this.worker.register(client);
+        ArgumentCaptor<MessageListener> argument = ArgumentCaptor.forClass(MessageListener.class);
+        verify(client).addEventListener(argument.capture());
+        return argument.getValue();
+    }
+
+    private static byte[] event(int size) {
+        String prefix = "{\"jsonrpc\": \"2.0\", \"method\": \"|virt|VM_status|id\", \"params\": {\"data\": \"";
+        char[] data = new char[size - prefix.length() - 3];
+        Arrays.fill(data, 'a');
+        return (prefix + new String(data) + "\"}}").getBytes(UTF8);
+    }
+
     private void processMessage(EventSubscriber subscriber, byte[] message, CountDownLatch waitingLatch)
             throws InterruptedException {
         ReactorClient client = mock(ReactorClient.class);
@@ -0,0 +1,112 @@
+package org.ovirt.vdsm.jsonrpc.client.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcClient;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcRequest;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
+import org.ovirt.vdsm.jsonrpc.client.RequestBuilder;
+import org.ovirt.vdsm.jsonrpc.client.ResponseBuilder;
+import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient;
+import org.ovirt.vdsm.jsonrpc.client.utils.PayloadFormat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class BatchCallTestCase {
+    private ReactorClient reactorClient;
+    private ResponseTracker tracker;
+    private JsonRpcClient client;
+    private List<JsonRpcRequest> requests;
+
+    @Before
+    public void setUp() {
+        this.reactorClient = mock(ReactorClient.class);
+        when(this.reactorClient.isOpen()).thenReturn(true);
+        when(this.reactorClient.getClientId()).thenReturn("localhost:1");
+        when(this.reactorClient.getPayloadFormat()).thenReturn(PayloadFormat.JSON);
+        this.tracker = new ResponseTracker();
+        this.client = new JsonRpcClient(this.reactorClient, this.tracker);
+        this.requests = Arrays.asList(new RequestBuilder("Host.getStats").build(),
+                new RequestBuilder("Host.getAllVmStats").build(),
+                new RequestBuilder("Host.getCapabilities").build());
+    }
+
+    private static JsonRpcResponse response(JsonRpcRequest request) {
+        return new ResponseBuilder(request.getId()).withResult(request.getMethod()).build();
+    }
+
+    @Test
+    public void testSentInSingleMessage() throws Exception {
+        this.client.setRetryPolicy(new ClientPolicy(180000, 3, 0));
+        BatchCall batch = this.client.batchCall(this.requests);
+
+        ArgumentCaptor<byte[]> message = ArgumentCaptor.forClass(byte[].class);
+        verify(this.reactorClient).sendMessage(message.capture());
+        JsonNode sent = PayloadFormat.readTree(message.getValue());
+        assertEquals(3, sent.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(this.requests.get(i).getId(), sent.get(i).get("id"));
+        }
+
+        this.client.processResponse(response(this.requests.get(2)));
+        this.client.processResponse(response(this.requests.get(0)));
+        assertTrue(batch.getCall(this.requests.get(2).getId()).isDone());
+        assertFalse(batch.getCalls().get(1).isDone());
+        assertFalse(batch.isDone());
+
+        this.client.processResponse(response(this.requests.get(1)));
+        List<JsonRpcResponse> responses = batch.get(1, TimeUnit.SECONDS);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(this.requests.get(i).getMethod(), responses.get(i).getResult().asText());
+        }
+    }
+
+    @Test
+    public void testRetriedAndTimedOutPerId() throws Exception {
+        this.client.setRetryPolicy(new ClientPolicy(0, 2, 0));
+        BatchCall batch = this.client.batchCall(this.requests);
+        JsonRpcResponse response = response(this.requests.get(0));
+        this.client.processResponse(response);
+
+        this.tracker.loop();
+
+        ArgumentCaptor<byte[]> message = ArgumentCaptor.forClass(byte[].class);
+        verify(this.reactorClient, times(3)).sendMessage(message.capture());
+        assertEquals(this.requests.get(1).getId(), PayloadFormat.readTree(message.getAllValues().get(1)).get("id"));
+        assertEquals(this.requests.get(2).getId(), PayloadFormat.readTree(message.getAllValues().get(2)).get("id"));
+
+        this.tracker.loop();
+
+        List<JsonRpcResponse> responses = batch.get(1, TimeUnit.SECONDS);
+        assertSame(response, responses.get(0));
+        assertEquals(5022, responses.get(1).getError().get("code").asInt());
+        assertEquals(5022, responses.get(2).getError().get("code").asInt());
+    }
+
+    @Test(expected = ClientConnectionException.class)
+    public void testRejectedSendFailsCaller() throws Exception {
+        this.client.setRetryPolicy(new ClientPolicy(180000, 3, 0));
+        doThrow(new RejectedExecutionException("Reactor task queue is full")).when(this.reactorClient)
+                .sendMessage(any());
+
+        this.client.batchCall(this.requests);
+    }
+}
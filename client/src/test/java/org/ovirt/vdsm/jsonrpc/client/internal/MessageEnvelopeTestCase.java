@@ -0,0 +1,62 @@
+package org.ovirt.vdsm.jsonrpc.client.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.UTF8;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcEvent;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MessageEnvelopeTestCase {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static MessageEnvelope read(String json) {
+        return MessageEnvelope.read(json.getBytes(UTF8));
+    }
+
+    @Test
+    public void testResponse() throws IOException {
+        String json = "{\"result\": {\"vmName\": \"żółw\", \"disks\": [{\"size\": 1}], \"note\": \"}\"}, "
+                + "\"jsonrpc\": \"2.0\", \"id\": \"e2b5d4a4\"}";
+        MessageEnvelope envelope = read(json);
+
+        assertFalse(envelope.isEvent());
+        JsonRpcResponse response = envelope.toResponse();
+        assertEquals(JsonRpcResponse.fromJsonNode(MAPPER.readTree(json)), response);
+        assertEquals("żółw", response.getResult().get("vmName").asText());
+        assertNull(response.getError());
+        assertFalse(read("{\"jsonrpc\": \"2.0\", \"id\": 1, \"error\": null, \"result\": []}").isEvent());
+    }
+
+    @Test
+    public void testEvent() throws IOException {
+        String json = "{\"jsonrpc\": \"2.0\", \"method\": \"|virt|VM_status|id\", \"params\": [1, {\"a\": null}]}";
+        MessageEnvelope envelope = read(json);
+
+        assertTrue(envelope.isEvent());
+        JsonRpcEvent event = envelope.toEvent();
+        assertEquals("|virt|VM_status|id", event.getMethod());
+        assertEquals(MAPPER.readTree(json).get("params"), event.getParams());
+    }
+
+    @Test
+    public void testProcessedAsTree() {
+        // error responses, batches and anything unusual are left to the tree based processing
+        assertNull(read("{\"jsonrpc\": \"2.0\", \"id\": \"1\", \"error\": {\"code\": 1, \"message\": \"m\"}}"));
+        assertNull(read("[{\"jsonrpc\": \"2.0\", \"id\": \"1\", \"result\": {}}]"));
+        assertNull(read("{\"jsonrpc\": \"1.0\", \"id\": \"1\", \"result\": {}}"));
+        assertNull(read("{\"id\": \"1\", \"result\": {}}"));
+        assertNull(read("{\"jsonrpc\": \"2.0\", \"id\": \"1\", \"result\": true}"));
+        assertNull(read("{\"jsonrpc\": \"2.0\", \"id\": \"1\", \"result\": {}} {}"));
+        assertNull(read("{\"jsonrpc\": \"2.0\", \"id\": \"1\", \"result\": {]}"));
+        assertNull(read("{\"jsonrpc\": \"2.0\", \"method\": \"\", \"params\": {}}"));
+        assertNull(read("{\"jsonrpc\": \"2.0\", \"id\": \"1\", \"method\": \"m\", \"params\": {}}"));
+    }
+}
@@ -0,0 +1,174 @@
+package org.ovirt.vdsm.jsonrpc.client.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcClient;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcRequest;
+import org.ovirt.vdsm.jsonrpc.client.RequestBuilder;
+import org.ovirt.vdsm.jsonrpc.client.ResponseBuilder;
+import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient;
+import org.ovirt.vdsm.jsonrpc.client.utils.PayloadFormat;
+import org.ovirt.vdsm.jsonrpc.testutils.Performance;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class RequestCoalescerTestCase {
+    private static final int THREADS = 16;
+    private static final int CALLS = 2000;
+    private static final long FRAME_COST = TimeUnit.MICROSECONDS.toNanos(20);
+
+    private final List<List<JsonRpcRequest>> sent = Collections.synchronizedList(new ArrayList<>());
+    private final List<Thread> senders = Collections.synchronizedList(new ArrayList<>());
+    private final RequestCoalescer coalescer = new RequestCoalescer(requests -> {
+        this.sent.add(requests);
+        this.senders.add(Thread.currentThread());
+    });
+
+    private static JsonRpcRequest request() {
+        return new RequestBuilder("Host.ping").build();
+    }
+
+    private Thread sendInBackground(JsonRpcRequest request, long window) {
+        Thread thread = new Thread(() -> {
+            try {
+                this.coalescer.send(request, window, TimeUnit.SECONDS, 3);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void testFilledBatchSentByLastCaller() throws Exception {
+        JsonRpcRequest first = request();
+        JsonRpcRequest second = request();
+        JsonRpcRequest third = request();
+
+        Thread leader = sendInBackground(first, 10);
+        while (leader.getState() != Thread.State.TIMED_WAITING) {
+            Thread.yield();
+        }
+        Thread follower = sendInBackground(second, 10);
+        follower.join(TimeUnit.SECONDS.toMillis(5));
+        assertTrue(this.sent.isEmpty());
+
+        this.coalescer.send(third, 10, TimeUnit.SECONDS, 3);
+        leader.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertEquals(1, this.sent.size());
+        assertEquals(Arrays.asList(first, second, third), this.sent.get(0));
+        assertSame(Thread.currentThread(), this.senders.get(0));
+        assertEquals(Thread.State.TERMINATED, leader.getState());
+    }
+
+    @Test
+    public void testSentWhenWindowElapses() throws Exception {
+        JsonRpcRequest request = request();
+
+        this.coalescer.send(request, 1, TimeUnit.MILLISECONDS, 10);
+
+        assertEquals(Collections.singletonList(Collections.singletonList(request)), this.sent);
+        this.coalescer.send(request, 0, TimeUnit.MILLISECONDS, 10);
+        assertEquals(2, this.sent.size());
+    }
+
+    private static JsonRpcClient createClient(ResponseTracker tracker, ExecutorService peer, AtomicInteger frames)
+            throws Exception {
+        ReactorClient reactorClient = mock(ReactorClient.class);
+        when(reactorClient.isOpen()).thenReturn(true);
+        when(reactorClient.getClientId()).thenReturn("localhost:1");
+        when(reactorClient.getPayloadFormat()).thenReturn(PayloadFormat.JSON);
+        JsonRpcClient client = new JsonRpcClient(reactorClient, tracker);
+        // single connection writes frames one after another and the peer answers them in order
+        doAnswer(invocation -> {
+            JsonNode message = PayloadFormat.readTree(invocation.getArgument(0));
+            synchronized (frames) {
+                frames.incrementAndGet();
+                long end = System.nanoTime() + FRAME_COST;
+                while (System.nanoTime() < end) {
+                    Thread.onSpinWait();
+                }
+            }
+            peer.execute(() -> {
+                for (JsonNode request : message.isArray() ? message : Collections.singletonList(message)) {
+                    client.processResponse(new ResponseBuilder(request.get("id")).withResult("true").build());
+                }
+            });
+            return null;
+        }).when(reactorClient).sendMessage(any());
+        return client;
+    }
+
+    private static void measure(String name, ClientPolicy policy) throws Exception {
+        AtomicInteger frames = new AtomicInteger();
+        ResponseTracker tracker = new ResponseTracker();
+        new Thread(tracker).start();
+        ExecutorService peer = Executors.newSingleThreadExecutor();
+        JsonRpcClient client = createClient(tracker, peer, frames);
+        client.setRetryPolicy(policy);
+        long[] latencies = new long[THREADS * CALLS];
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int offset = t * CALLS;
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < CALLS; i++) {
+                    long begin = System.nanoTime();
+                    client.call(request()).get();
+                    latencies[offset + i] = System.nanoTime() - begin;
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        peer.shutdown();
+        tracker.close();
+
+        Arrays.sort(latencies);
+        System.out.println(name + ": " + frames.get() * TimeUnit.SECONDS.toNanos(1) / elapsed + " frames/s, "
+                + latencies.length * TimeUnit.SECONDS.toNanos(1) / elapsed + " calls/s, p99 "
+                + latencies[latencies.length * 99 / 100] / 1000 + " us");
+    }
+
+    @Test
+    @Category(Performance.class)
+    public void testCoalescingCost() throws Exception {
+        ClientPolicy policy = new ClientPolicy(180000, 0, 0);
+        ClientPolicy coalescing = new ClientPolicy(180000, 0, 0);
+        coalescing.setCoalescing(100, THREADS);
+
+        for (int i = 0; i < 2; i++) {
+            measure("Coalescing off", policy);
+            measure("Coalescing on", coalescing);
+        }
+    }
+}
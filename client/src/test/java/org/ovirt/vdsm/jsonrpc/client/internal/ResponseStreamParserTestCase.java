@@ -0,0 +1,166 @@
+package org.ovirt.vdsm.jsonrpc.client.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.UTF8;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.ovirt.vdsm.jsonrpc.testutils.Performance;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+public class ResponseStreamParserTestCase {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int VMS = 20000;
+
+    private static JsonNode tree(AtomicReference<TokenBuffer> result) throws IOException {
+        return MAPPER.readTree(result.get().asParser());
+    }
+
+    @Test
+    public void testContentInChunks() throws IOException {
+        String json = "[{\"jsonrpc\": \"2.0\", \"result\": {\"vmName\": \"żółw\", \"memSize\": 1024, "
+                + "\"ratio\": 0.25, \"flags\": [true, false, null]}, \"id\": \"1\"}, "
+                + "{\"jsonrpc\": \"2.0\", \"method\": \"event\", \"params\": {}}]";
+        byte[] content = json.getBytes(UTF8);
+        AtomicReference<TokenBuffer> result = new AtomicReference<>();
+        ResponseStreamParser parser = new ResponseStreamParser(MAPPER, result::set);
+
+        for (int i = 0; i < content.length; i++) {
+            // chunk is valid only during the call
+            byte[] chunk = new byte[] { 0, content[i], 0 };
+            parser.accept(chunk, 1, 1);
+            chunk[1] = 'x';
+        }
+        assertNull(result.get());
+        parser.complete();
+
+        assertEquals(MAPPER.readTree(content), tree(result));
+        assertEquals(1024, tree(result).get(0).get("result").get("memSize").intValue());
+    }
+
+    @Test
+    public void testNumberAtEnd() throws IOException {
+        AtomicReference<TokenBuffer> result = new AtomicReference<>();
+        ResponseStreamParser parser = new ResponseStreamParser(MAPPER, result::set);
+
+        parser.accept("12".getBytes(UTF8), 0, 2);
+        parser.accept("34".getBytes(UTF8), 0, 2);
+        parser.complete();
+
+        assertEquals(1234, tree(result).intValue());
+    }
+
+    @Test
+    public void testMalformedContent() throws IOException {
+        AtomicReference<TokenBuffer> result = new AtomicReference<>();
+        ResponseStreamParser parser = new ResponseStreamParser(MAPPER, result::set);
+
+        parser.accept("{\"id\": ]".getBytes(UTF8), 0, 8);
+        parser.accept("}".getBytes(UTF8), 0, 1);
+        parser.complete();
+
+        assertNull(result.get());
+    }
+
+    @Test
+    public void testEmptyContent() throws IOException {
+        AtomicReference<TokenBuffer> result = new AtomicReference<>();
+        ResponseStreamParser parser = new ResponseStreamParser(MAPPER, result::set);
+
+        parser.accept(" ".getBytes(UTF8), 0, 1);
+        parser.complete();
+
+        assertNull(result.get());
+    }
+
+    private static byte[] statsResponse() throws IOException {
+        ArrayNode vms = MAPPER.createArrayNode();
+        for (int i = 0; i < VMS; i++) {
+            ObjectNode vm = vms.addObject();
+            vm.put("vmId", "82318566-6bf4-4381-8682-" + String.format("%012d", i));
+            vm.put("status", "Up");
+            vm.put("memUsage", i % 100);
+            vm.put("cpuUser", i * 0.25);
+            vm.putArray("disks").addObject().put("name", "vda").put("readRate", i * 1024L);
+        }
+        ObjectNode response = MAPPER.createObjectNode().put("jsonrpc", "2.0").put("id", "1");
+        response.set("result", vms);
+        return MAPPER.writeValueAsBytes(response);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Compares memory held until the whole content is received and the time from the last chunk to the tree
+     * for content accumulated by the reactor and parsed by the worker against content tokenized while it is
+     * received.
+     */
+    @Test
+    @Category(Performance.class)
+    public void testStreamingCost() throws IOException {
+        byte[] content = statsResponse();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        for (int round = 0; round < 3; round++) {
+            long before = usedHeap();
+            // the decoder buffer grows by doubling until the frame fits
+            byte[] accumulated = new byte[CHUNK_SIZE];
+            int length = 0;
+            long start = System.nanoTime();
+            for (int offset = 0; offset < content.length; offset += CHUNK_SIZE) {
+                int read = Math.min(CHUNK_SIZE, content.length - offset);
+                System.arraycopy(content, offset, chunk, 0, read);
+                if (length + read > accumulated.length) {
+                    accumulated = Arrays.copyOf(accumulated, accumulated.length * 2);
+                }
+                System.arraycopy(chunk, 0, accumulated, length, read);
+                length += read;
+            }
+            long received = System.nanoTime();
+            long held = usedHeap() - before;
+            JsonNode parsed = MAPPER.readTree(accumulated, 0, length);
+            long result = System.nanoTime();
+            System.out.println("Accumulated: reactor " + TimeUnit.NANOSECONDS.toMillis(received - start)
+                    + " ms, held " + held / 1024 + " KB, tree after " + TimeUnit.NANOSECONDS.toMillis(result - received)
+                    + " ms for " + content.length / 1024 + " KB of content");
+            accumulated = null;
+            parsed = null;
+
+            before = usedHeap();
+            AtomicReference<TokenBuffer> tokens = new AtomicReference<>();
+            ResponseStreamParser parser = new ResponseStreamParser(MAPPER, tokens::set);
+            start = System.nanoTime();
+            for (int offset = 0; offset < content.length; offset += CHUNK_SIZE) {
+                int read = Math.min(CHUNK_SIZE, content.length - offset);
+                System.arraycopy(content, offset, chunk, 0, read);
+                parser.accept(chunk, 0, read);
+            }
+            parser.complete();
+            received = System.nanoTime();
+            held = usedHeap() - before;
+            parsed = tree(tokens);
+            result = System.nanoTime();
+            System.out.println("Streamed: reactor " + TimeUnit.NANOSECONDS.toMillis(received - start)
+                    + " ms, held " + held / 1024 + " KB, tree after " + TimeUnit.NANOSECONDS.toMillis(result - received)
+                    + " ms");
+            assertEquals(VMS, parsed.get("result").size());
+        }
+    }
+}
@@ -1,23 +1,36 @@
 package org.ovirt.vdsm.jsonrpc.client.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
+import static org.ovirt.vdsm.jsonrpc.testutils.MockReactors.mockReactor;
 
 import java.nio.channels.Selector;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.TextNode;
 import org.junit.Before;
 import org.junit.Test;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcClient;
 import org.ovirt.vdsm.jsonrpc.client.JsonRpcRequest;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
+import org.ovirt.vdsm.jsonrpc.client.RequestBuilder;
+import org.ovirt.vdsm.jsonrpc.client.ResponseBuilder;
 import org.ovirt.vdsm.jsonrpc.client.reactors.Reactor;
 import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient;
 import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompClient;
+import org.ovirt.vdsm.jsonrpc.client.utils.PayloadFormat;
 import org.ovirt.vdsm.jsonrpc.client.utils.ResponseTracking;
 
 public class ResponseTrackerTestCase {
@@ -34,7 +47,7 @@ public class ResponseTrackerTestCase {
     public void setup() {
         request = mock(JsonRpcRequest.class);
         tracking = mock(ResponseTracking.class);
-        client = spy(new StompClient(mock(Reactor.class), mock(Selector.class), "127.0.0.1", 54321));
+        client = spy(new StompClient(mockReactor(), mock(Selector.class), "127.0.0.1", 54321));
         when(request.getId()).thenReturn(idNode);
     }
 
@@ -77,4 +90,108 @@ public class ResponseTrackerTestCase {
         assertEquals(1, map.keySet().size());
         assertEquals(0, map.get(client.getClientId()).size());
     }
+
+    private static ReactorClient createReactorClient() {
+        ReactorClient reactorClient = mock(ReactorClient.class);
+        when(reactorClient.isOpen()).thenReturn(true);
+        when(reactorClient.getClientId()).thenReturn("localhost:1");
+        when(reactorClient.getPayloadFormat()).thenReturn(PayloadFormat.JSON);
+        return reactorClient;
+    }
+
+    private static JsonRpcClient createClient(ResponseTracker tracker, ClientPolicy policy) {
+        return createClient(tracker, createReactorClient(), policy);
+    }
+
+    private static JsonRpcClient createClient(ResponseTracker tracker, ReactorClient reactorClient,
+            ClientPolicy policy) {
+        JsonRpcClient client = new JsonRpcClient(reactorClient, tracker);
+        client.setRetryPolicy(policy);
+        return client;
+    }
+
+    @Test
+    public void testTimeoutAtDeadline() throws Exception {
+        ResponseTracker tracker = new ResponseTracker();
+        Thread thread = new Thread(tracker);
+        thread.start();
+        try {
+            JsonRpcClient client = createClient(tracker, new ClientPolicy(50, 1, 0));
+            // the tracker waits without any deadline until the call is registered
+            while (thread.getState() != Thread.State.TIMED_WAITING) {
+                Thread.yield();
+            }
+            long start = System.nanoTime();
+            Future<JsonRpcResponse> call = client.call(new RequestBuilder("Host.getStats").build());
+
+            JsonRpcResponse response = call.get(5, TimeUnit.SECONDS);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(5022, response.getError().get("code").asInt());
+            assertTrue("Timed out after " + elapsed + " ms", elapsed >= 49 && elapsed < 450);
+        } finally {
+            tracker.close();
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    @Test
+    public void testRejectedRetry() throws Exception {
+        ResponseTracker tracker = new ResponseTracker();
+        ReactorClient reactorClient = createReactorClient();
+        JsonRpcClient client = createClient(tracker, reactorClient, new ClientPolicy(0, 2, 0));
+        Future<JsonRpcResponse> first = client.call(new RequestBuilder("Host.getStats").build());
+        Future<JsonRpcResponse> second = client.call(new RequestBuilder("Host.getStats").build());
+        doThrow(new RejectedExecutionException()).when(reactorClient).sendMessage(any());
+
+        Thread.sleep(1);
+        tracker.loop();
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+        Thread.sleep(1);
+        tracker.loop();
+
+        assertEquals(5022, first.get(0, TimeUnit.SECONDS).getError().get("code").asInt());
+        assertEquals(5022, second.get(0, TimeUnit.SECONDS).getError().get("code").asInt());
+    }
+
+    @Test
+    public void testForeignAndGeneratedIds() throws Exception {
+        ResponseTracker tracker = new ResponseTracker();
+        JsonRpcClient client = createClient(tracker, new ClientPolicy(180000, 3, 0));
+        JsonRpcRequest generated = new RequestBuilder("Host.getStats").build();
+        JsonRpcRequest foreign = new JsonRpcRequest("Host.ping", generated.getParams(),
+                new TextNode(UUID.randomUUID().toString()));
+        Future<JsonRpcResponse> generatedCall = client.call(generated);
+        Future<JsonRpcResponse> foreignCall = client.call(foreign);
+
+        client.processResponse(new ResponseBuilder(new TextNode(foreign.getId().textValue()))
+                .withResult("true").build());
+
+        assertTrue(foreignCall.get(0, TimeUnit.SECONDS).getResult().asBoolean());
+        assertFalse(generatedCall.isDone());
+        client.processResponse(new ResponseBuilder(new TextNode(generated.getId().textValue()))
+                .withResult("true").build());
+        assertTrue(generatedCall.get(0, TimeUnit.SECONDS).getResult().asBoolean());
+        assertEquals(0, tracker.getHostMap().get("localhost:1").size());
+    }
+
+    @Test
+    public void testAnsweredDeadlinesPurged() throws Exception {
+        ResponseTracker tracker = new ResponseTracker();
+        JsonRpcClient client = createClient(tracker, new ClientPolicy(180000, 3, 0));
+        for (int i = 0; i < 2000; i++) {
+            JsonRpcRequest request = new RequestBuilder("Host.ping").build();
+            client.call(request);
+            client.processResponse(new ResponseBuilder(request.getId()).withResult("true").build());
+        }
+        JsonRpcRequest pending = new RequestBuilder("Host.getStats").build();
+        client.call(pending);
+        assertTrue(tracker.getDeadlineCount() > 2000);
+
+        tracker.loop();
+
+        assertEquals(1, tracker.getDeadlineCount());
+        assertEquals(1, tracker.getHostMap().get("localhost:1").size());
+    }
 }
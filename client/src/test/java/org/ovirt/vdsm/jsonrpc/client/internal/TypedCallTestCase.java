@@ -0,0 +1,103 @@
+package org.ovirt.vdsm.jsonrpc.client.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.UTF8;
+import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.buildErrorResponse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcErrorException;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcRequest;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
+import org.ovirt.vdsm.jsonrpc.client.RequestBuilder;
+import org.ovirt.vdsm.jsonrpc.client.utils.JsonSlice;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+public class TypedCallTestCase {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String RESULT = "[{\"vmId\": \"1\", \"status\": \"Up\", \"memUsage\": 10, \"extra\": {}}, "
+            + "{\"vmId\": \"2\", \"status\": \"Down\", \"memUsage\": 0}]";
+
+    public static class VmStats {
+        public String vmId;
+        public String status;
+        public int memUsage;
+    }
+
+    private static <T> TypedCall<T> typedCall(JsonRpcRequest request, TypeReference<T> type) {
+        return new TypedCall<>(new Call(request), TypeFactory.defaultInstance().constructType(type));
+    }
+
+    @Test
+    public void testRawResult() throws Exception {
+        JsonRpcRequest request = new RequestBuilder("Host.getAllVmStats").build();
+        TypedCall<List<VmStats>> call = typedCall(request, new TypeReference<List<VmStats>>() {
+        });
+        byte[] content = RESULT.getBytes(UTF8);
+        JsonSlice slice = new JsonSlice(content, 0, content.length);
+
+        assertFalse(call.isDone());
+        call.getCall().addResponse(new JsonRpcResponse(slice, request.getId()));
+
+        List<VmStats> stats = call.get(1, TimeUnit.SECONDS);
+        assertEquals(2, stats.size());
+        assertEquals("Up", stats.get(0).status);
+        assertEquals(10, stats.get(0).memUsage);
+        assertEquals("2", stats.get(1).vmId);
+        assertFalse(slice.isParsed());
+        assertSame(stats, call.get());
+    }
+
+    @Test
+    public void testTreeResult() throws Exception {
+        JsonRpcRequest request = new RequestBuilder("Host.getAllVmStats").build();
+        TypedCall<VmStats[]> call = typedCall(request, new TypeReference<VmStats[]>() {
+        });
+
+        call.getCall().addResponse(new JsonRpcResponse(MAPPER.readTree(RESULT), null, request.getId()));
+
+        VmStats[] stats = call.get();
+        assertEquals(2, stats.length);
+        assertEquals("Down", stats[1].status);
+    }
+
+    @Test
+    public void testMissingResult() throws Exception {
+        JsonRpcRequest request = new RequestBuilder("Host.ping").build();
+        TypedCall<VmStats> call = typedCall(request, new TypeReference<VmStats>() {
+        });
+
+        call.getCall().addResponse(new JsonRpcResponse(null, null, request.getId()));
+
+        assertNull(call.get());
+    }
+
+    @Test
+    public void testErrorResponse() throws InterruptedException, IOException {
+        JsonRpcRequest request = new RequestBuilder("Host.getAllVmStats").build();
+        TypedCall<VmStats> call = typedCall(request, new TypeReference<VmStats>() {
+        });
+
+        call.getCall().addResponse(buildErrorResponse(request.getId(), 5022, "Message timeout"));
+
+        try {
+            call.get();
+            fail();
+        } catch (ExecutionException e) {
+            JsonRpcErrorException error = (JsonRpcErrorException) e.getCause();
+            assertEquals(5022, error.getCode());
+            assertEquals("Message timeout", error.getMessage());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class BufferPoolTestCase {
+
+    @Test
+    public void testSizeClasses() {
+        BufferPool pool = new BufferPool();
+
+        assertEquals(512, pool.lease(1).capacity());
+        assertEquals(512, pool.lease(512).capacity());
+        assertEquals(1024, pool.lease(513).capacity());
+        assertEquals(32768, pool.lease(16709).capacity());
+        assertEquals(3 * 1024 * 1024, pool.lease(3 * 1024 * 1024).capacity());
+        assertEquals(5, pool.getMisses());
+    }
+
+    @Test
+    public void testReuse() {
+        BufferPool pool = new BufferPool();
+        ByteBuffer buffer = pool.lease(1000);
+        buffer.put((byte) 1);
+        pool.release(buffer);
+
+        ByteBuffer leased = pool.lease(600);
+
+        assertSame(buffer, leased);
+        assertEquals(0, leased.position());
+        assertEquals(leased.capacity(), leased.limit());
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertNotSame(buffer, pool.lease(600));
+    }
+
+    @Test
+    public void testDropped() {
+        BufferPool pool = new BufferPool(false, 1);
+        pool.release(pool.lease(100));
+        pool.release(ByteBuffer.allocate(100));
+        pool.release(pool.lease(2 * 1024 * 1024));
+        pool.release(ByteBuffer.allocate(512));
+
+        assertEquals(1, pool.getPooled());
+        assertEquals(3, pool.getDropped());
+    }
+
+    @Test
+    public void testDirect() {
+        BufferPool pool = new BufferPool(true, BufferPool.DEFAULT_MAX_POOLED);
+        ByteBuffer direct = pool.lease(100);
+        ByteBuffer heap = pool.leaseHeap(100);
+        assertTrue(direct.isDirect());
+        assertFalse(heap.isDirect());
+        pool.release(direct);
+        pool.release(heap);
+
+        assertSame(heap, pool.leaseHeap(100));
+        assertSame(direct, pool.lease(100));
+    }
+}
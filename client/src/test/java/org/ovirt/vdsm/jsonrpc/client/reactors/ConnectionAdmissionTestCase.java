@@ -0,0 +1,155 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
+import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompClientPolicy;
+import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompCommonClient;
+import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompReactor;
+
+public class ConnectionAdmissionTestCase {
+
+    private AtomicLong clock;
+    private ConnectionAdmission admission;
+    private Reactor reactor;
+    private List<String> started;
+
+    @Before
+    public void setUp() {
+        this.clock = new AtomicLong();
+        this.admission = new ConnectionAdmission(2, 1000, 8000, TimeUnit.MILLISECONDS, this.clock::get);
+        this.reactor = mock(Reactor.class);
+        this.started = new ArrayList<>();
+    }
+
+    private ReactorClient client(Reactor reactor, String hostname) {
+        ReactorClient client = mock(ReactorClient.class);
+        when(client.getReactor()).thenReturn(reactor);
+        when(client.getHostname()).thenReturn(hostname);
+        when(client.getPort()).thenReturn(54321);
+        return client;
+    }
+
+    private ConnectionAdmission.Ticket acquire(Reactor reactor, String hostname, boolean pendingCalls) {
+        return this.admission.acquire(client(reactor, hostname), pendingCalls, () -> this.started.add(hostname));
+    }
+
+    @Test
+    public void testLimitPerReactor() {
+        ConnectionAdmission.Ticket first = acquire(this.reactor, "host1", false);
+        acquire(this.reactor, "host2", false);
+        acquire(this.reactor, "host3", false);
+        acquire(mock(Reactor.class), "host4", false);
+
+        assertEquals(List.of("host1", "host2", "host4"), this.started);
+        assertEquals(2, this.admission.getInProgress(this.reactor));
+        assertEquals(1, this.admission.getQueued());
+
+        first.release(true);
+
+        assertEquals(List.of("host1", "host2", "host4", "host3"), this.started);
+        assertEquals(0, this.admission.getQueued());
+    }
+
+    @Test
+    public void testPendingCallsFirst() {
+        ConnectionAdmission.Ticket first = acquire(this.reactor, "host1", false);
+        acquire(this.reactor, "host2", false);
+        acquire(this.reactor, "idle", false);
+        ConnectionAdmission.Ticket promoted = acquire(this.reactor, "promoted", false);
+        acquire(this.reactor, "calls", true);
+
+        promoted.prioritize();
+        first.release(true);
+
+        assertEquals(List.of("host1", "host2", "promoted"), this.started);
+    }
+
+    @Test
+    public void testBackoffAfterFailure() {
+        acquire(this.reactor, "host", false).release(false);
+        long backoff = this.admission.getBackoff("host", 54321, TimeUnit.MILLISECONDS);
+        assertTrue(backoff >= 500 && backoff <= 1000);
+
+        acquire(this.reactor, "host", true);
+        assertEquals(List.of("host"), this.started);
+        ArgumentCaptor<Runnable> wakeup = ArgumentCaptor.forClass(Runnable.class);
+        verify(this.reactor).schedule(wakeup.capture(), anyLong());
+
+        this.clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(backoff + 1));
+        wakeup.getValue().run();
+
+        assertEquals(List.of("host", "host"), this.started);
+    }
+
+    @Test
+    public void testBackoffGrowsAndResets() {
+        for (int i = 0; i < 10; i++) {
+            this.clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+            acquire(this.reactor, "host", false).release(false);
+        }
+        long backoff = this.admission.getBackoff("host", 54321, TimeUnit.MILLISECONDS);
+        assertTrue(backoff >= 4000 && backoff <= 8000);
+
+        this.clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        acquire(this.reactor, "host", false).release(true);
+        assertEquals(0, this.admission.getBackoff("host", 54321, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testReleaseQueued() {
+        acquire(this.reactor, "host1", false);
+        acquire(this.reactor, "host2", false);
+        ConnectionAdmission.Ticket queued = acquire(this.reactor, "host3", false);
+
+        queued.release(false);
+        queued.release(false);
+
+        assertEquals(0, this.admission.getQueued());
+        assertEquals(2, this.admission.getInProgress(this.reactor));
+        assertEquals(0, this.admission.getBackoff("host3", 54321, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testConnectWaitBounded() throws Exception {
+        Reactor reactor = new StompReactor();
+        try {
+            ReactorClient client = reactor.createClient("localhost", 54321);
+            ConnectionAdmission admission = new ConnectionAdmission();
+            admission.acquire(client, false, () -> {}).release(false);
+            StompClientPolicy policy = new StompClientPolicy(100, 1, 0, IOException.class,
+                    StompCommonClient.DEFAULT_REQUEST_QUEUE, StompCommonClient.DEFAULT_RESPONSE_QUEUE);
+            policy.setConnectionAdmission(admission);
+            client.setClientPolicy(policy);
+
+            long start = System.nanoTime();
+            try {
+                client.connect();
+                fail("Connection attempt waiting for backoff has to time out");
+            } catch (ClientConnectionException expected) {
+            }
+
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+            assertEquals(0, admission.getQueued());
+            assertFalse(client.isConnecting());
+        } finally {
+            reactor.close();
+        }
+    }
+}
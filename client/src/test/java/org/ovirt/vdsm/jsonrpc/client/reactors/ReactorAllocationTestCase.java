@@ -0,0 +1,127 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompCommonClient.DEFAULT_REQUEST_QUEUE;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompCommonClient.DEFAULT_RESPONSE_QUEUE;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompClientPolicy;
+import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompReactor;
+import org.ovirt.vdsm.jsonrpc.testutils.FreePorts;
+import org.ovirt.vdsm.jsonrpc.testutils.Performance;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Guards the amount of memory allocated by the reactor thread.
+ */
+@Category(Performance.class)
+public class ReactorAllocationTestCase {
+    private static final int TIMEOUT_SEC = 6;
+    private static final String HOSTNAME = "127.0.0.1";
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 20000;
+    private static final int FRAMES = 2000;
+    private static final long MAX_BYTES_PER_IDLE_LOOP = 8;
+    private static final long MAX_BYTES_PER_FRAME = 16 * 1024;
+
+    private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private Reactor listenerReactor;
+    private Reactor clientReactor;
+    private ReactorStatistics statistics;
+    private ReactorListener listener;
+    private ReactorClient client;
+    private BlockingQueue<byte[]> queue;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(this.threads.isThreadAllocatedMemorySupported());
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+
+        this.listenerReactor = new StompReactor();
+        this.clientReactor = new StompReactor();
+        this.statistics = new ReactorStatistics();
+        this.clientReactor.setMetrics(this.statistics);
+
+        int port = FreePorts.findFreePort();
+        this.listener = this.listenerReactor.createListener(HOSTNAME,
+                port,
+                client -> client.addEventListener(client::sendMessage)).get(TIMEOUT_SEC, TimeUnit.SECONDS);
+        this.client = this.clientReactor.createClient(HOSTNAME, port);
+        this.client.setClientPolicy(new StompClientPolicy(180000,
+                0,
+                100000,
+                IOException.class,
+                DEFAULT_REQUEST_QUEUE,
+                DEFAULT_RESPONSE_QUEUE));
+        this.queue = new LinkedBlockingQueue<>();
+        this.client.addEventListener(this.queue::add);
+        this.client.connect();
+    }
+
+    @After
+    public void tearDown() {
+        if (this.clientReactor != null) {
+            this.clientReactor.close();
+            this.listenerReactor.close();
+        }
+    }
+
+    @Test
+    public void testIdleLoop() throws InterruptedException {
+        spin(WARMUP);
+
+        long iterations = this.statistics.getIterations();
+        long allocated = allocated();
+        spin(ITERATIONS);
+        long bytes = allocated() - allocated;
+        iterations = this.statistics.getIterations() - iterations;
+
+        assertTrue(iterations > 0);
+        assertTrue("Allocated " + bytes + " bytes in " + iterations + " iterations",
+                bytes / iterations <= MAX_BYTES_PER_IDLE_LOOP);
+    }
+
+    @Test
+    public void testEchoedFrame() throws InterruptedException {
+        echo(FRAMES);
+
+        long allocated = allocated();
+        echo(FRAMES);
+        long bytes = allocated() - allocated;
+
+        assertTrue("Allocated " + bytes + " bytes for " + FRAMES + " frames",
+                bytes / FRAMES <= MAX_BYTES_PER_FRAME);
+    }
+
+    private void spin(int wakeups) throws InterruptedException {
+        final long target = this.statistics.getIterations() + wakeups;
+        while (this.statistics.getIterations() < target) {
+            this.clientReactor.wakeup();
+            Thread.yield();
+        }
+    }
+
+    private void echo(int frames) throws InterruptedException {
+        final byte[] message = "{\"jsonrpc\": \"2.0\", \"method\": \"echo\", \"id\": 1}".getBytes();
+        for (int i = 0; i < frames; i++) {
+            this.client.sendMessage(message);
+            assertNotNull(this.queue.poll(TIMEOUT_SEC, TimeUnit.SECONDS));
+        }
+    }
+
+    private long allocated() {
+        return this.threads.getThreadAllocatedBytes(this.clientReactor.getId());
+    }
+}
@@ -0,0 +1,103 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
+import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorGroup.Assignment;
+import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompReactor;
+
+public class ReactorGroupTestCase {
+    private static final int SIZE = 3;
+    private final List<Reactor> reactors = new ArrayList<>();
+
+    private ReactorGroup createGroup(Assignment assignment) throws IOException {
+        for (int i = 0; i < SIZE; i++) {
+            this.reactors.add(new StompReactor(i));
+        }
+        return ReactorGroup.create(this.reactors, assignment);
+    }
+
+    @After
+    public void tearDown() {
+        this.reactors.forEach(Reactor::close);
+    }
+
+    @Test
+    public void testLeastLoadedAssignment() throws IOException, ClientConnectionException {
+        ReactorGroup group = createGroup(Assignment.LEAST_LOADED);
+        Reactor primary = group.getPrimary();
+
+        for (int i = 0; i < SIZE * 4; i++) {
+            primary.createClient("host" + i, 54321);
+        }
+
+        for (Reactor reactor : group.getReactors()) {
+            assertEquals(4, reactor.getLoad());
+        }
+    }
+
+    @Test
+    public void testCloseReleasesLoad() throws IOException, ClientConnectionException {
+        ReactorGroup group = createGroup(Assignment.LEAST_LOADED);
+        ReactorClient client = group.getPrimary().createClient("host", 54321);
+        assertEquals(1, client.reactor.getLoad());
+
+        client.close();
+        client.close();
+
+        assertEquals(0, client.reactor.getLoad());
+    }
+
+    @Test
+    public void testHostnameHashAssignment() throws IOException, ClientConnectionException {
+        ReactorGroup group = createGroup(Assignment.HOSTNAME_HASH);
+
+        for (int i = 0; i < 20; i++) {
+            String hostname = "host" + i;
+            ReactorClient first = group.getPrimary().createClient(hostname, 54321);
+            ReactorClient second = group.getReactors().get(SIZE - 1).createClient(hostname, 54321);
+            assertSame(first.reactor, second.reactor);
+        }
+    }
+
+    @Test
+    public void testMembersNamedBeforeStart() throws IOException {
+        ReactorGroup group = createGroup(Assignment.LEAST_LOADED);
+
+        for (int i = 0; i < SIZE; i++) {
+            Reactor reactor = group.getReactors().get(i);
+            assertEquals("Stomp Reactor " + i, reactor.getName());
+            assertSame(group, reactor.getGroup());
+        }
+    }
+
+    @Test
+    public void testConsistentHashRange() {
+        for (int i = 0; i < 1000; i++) {
+            int bucket = ReactorGroup.consistentHash(Integer.toString(i).hashCode(), SIZE);
+            assertTrue(bucket >= 0 && bucket < SIZE);
+            assertEquals(0, ReactorGroup.consistentHash(i, 1));
+        }
+    }
+
+    @Test
+    public void testCloseStopsAllReactors() throws IOException, InterruptedException {
+        ReactorGroup group = createGroup(Assignment.LEAST_LOADED);
+
+        group.getPrimary().close();
+
+        for (Reactor reactor : group.getReactors()) {
+            reactor.join(2000);
+            assertFalse(reactor.isAlive());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompCommonClient.DEFAULT_REQUEST_QUEUE;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompCommonClient.DEFAULT_RESPONSE_QUEUE;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompClientPolicy;
+import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompReactor;
+import org.ovirt.vdsm.jsonrpc.client.utils.Histogram;
+import org.ovirt.vdsm.jsonrpc.testutils.FreePorts;
+
+public class ReactorStatisticsTestCase {
+    private static final int TIMEOUT_SEC = 6;
+    private static final String HOSTNAME = "127.0.0.1";
+
+    private static ReactorClient client(String id) {
+        ReactorClient client = mock(ReactorClient.class);
+        when(client.getClientId()).thenReturn(id);
+        return client;
+    }
+
+    @Test
+    public void testHistogram() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getSum());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0.001);
+        long median = histogram.getPercentile(0.5);
+        assertTrue(median >= 50 && median < 100);
+        assertEquals(100, histogram.getPercentile(0.99));
+        assertEquals(0, new Histogram().getPercentile(0.5));
+    }
+
+    @Test
+    public void testSlowestCalls() {
+        ReactorStatistics statistics = new ReactorStatistics(2);
+        statistics.onProcess(client("a"), 10);
+        statistics.onProcess(client("b"), 30);
+        statistics.onProcess(client("c"), 5);
+        statistics.onProcess(client("d"), 20);
+
+        List<String> slowest = statistics.getSlowCalls().stream()
+                .map(ReactorStatistics.SlowCall::getClientId)
+                .collect(Collectors.toList());
+        assertEquals(List.of("b", "d"), slowest);
+        assertEquals(4, statistics.getProcessTime().getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSlowCallsLimit() {
+        new ReactorStatistics(0);
+    }
+
+    @Test
+    public void testUtilization() {
+        ReactorStatistics statistics = new ReactorStatistics();
+        statistics.onIteration(300, 100, 2);
+        statistics.onIteration(500, 100, 0);
+        statistics.onTasks(4, 400);
+
+        assertEquals(2, statistics.getIterations());
+        assertEquals(0.2, statistics.getUtilization(), 0.001);
+        assertEquals(2, statistics.getSelectedKeys().getMax());
+        assertEquals(100, statistics.getTaskDelay().getMax());
+    }
+
+    @Test
+    public void testReactorPublishes() throws Exception {
+        Reactor listenerReactor = new StompReactor();
+        Reactor clientReactor = new StompReactor();
+        ReactorStatistics statistics = new ReactorStatistics();
+        clientReactor.setMetrics(statistics);
+        try {
+            int port = FreePorts.findFreePort();
+            ReactorListener listener = listenerReactor.createListener(HOSTNAME,
+                    port,
+                    client -> client.addEventListener(client::sendMessage)).get(TIMEOUT_SEC, TimeUnit.SECONDS);
+            ReactorClient client = clientReactor.createClient(HOSTNAME, port);
+            client.setClientPolicy(new StompClientPolicy(180000,
+                    0,
+                    10000,
+                    IOException.class,
+                    DEFAULT_REQUEST_QUEUE,
+                    DEFAULT_RESPONSE_QUEUE));
+            final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(1);
+            client.addEventListener(queue::add);
+            client.connect();
+
+            client.sendMessage("metrics".getBytes());
+            byte[] message = queue.poll(TIMEOUT_SEC, TimeUnit.SECONDS);
+            assertNotNull(message);
+            assertArrayEquals("metrics".getBytes(), message);
+
+            assertTrue(statistics.getIterations() > 0);
+            assertTrue(statistics.getTasks().getCount() > 0);
+            assertTrue(statistics.getBytesRead() > 0);
+            assertTrue(statistics.getBytesWritten() > 0);
+            // CONNECTED and the echoed message
+            assertTrue(statistics.getFramesIn() >= 2);
+            assertTrue(statistics.getProcessTime().getCount() > 0);
+            assertTrue(client.getReceivedBytes() > 0);
+            assertTrue(client.getReceivedFrames() >= 2);
+
+            listener.close().get(TIMEOUT_SEC, TimeUnit.SECONDS);
+        } finally {
+            clientReactor.close();
+            listenerReactor.close();
+        }
+    }
+
+    @Test
+    public void testFailingMetricsKeepConnection() throws Exception {
+        Reactor listenerReactor = new StompReactor();
+        Reactor clientReactor = new StompReactor();
+        clientReactor.setMetrics(new ReactorMetrics() {
+
+            @Override
+            public void onProcess(ReactorClient client, long time) {
+                throw new IllegalStateException("metrics failure");
+            }
+        });
+        try {
+            int port = FreePorts.findFreePort();
+            ReactorListener listener = listenerReactor.createListener(HOSTNAME,
+                    port,
+                    client -> client.addEventListener(client::sendMessage)).get(TIMEOUT_SEC, TimeUnit.SECONDS);
+            ReactorClient client = clientReactor.createClient(HOSTNAME, port);
+            client.setClientPolicy(new StompClientPolicy(180000,
+                    0,
+                    10000,
+                    IOException.class,
+                    DEFAULT_REQUEST_QUEUE,
+                    DEFAULT_RESPONSE_QUEUE));
+            final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(2);
+            client.addEventListener(queue::add);
+            client.connect();
+
+            client.sendMessage("first".getBytes());
+            assertArrayEquals("first".getBytes(), queue.poll(TIMEOUT_SEC, TimeUnit.SECONDS));
+            client.sendMessage("second".getBytes());
+            assertArrayEquals("second".getBytes(), queue.poll(TIMEOUT_SEC, TimeUnit.SECONDS));
+            assertTrue(client.isOpen());
+
+            listener.close().get(TIMEOUT_SEC, TimeUnit.SECONDS);
+        } finally {
+            clientReactor.close();
+            listenerReactor.close();
+        }
+    }
+}
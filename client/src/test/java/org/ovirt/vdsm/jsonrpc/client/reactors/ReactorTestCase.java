@@ -1,16 +1,20 @@
 package org.ovirt.vdsm.jsonrpc.client.reactors;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompCommonClient.DEFAULT_REQUEST_QUEUE;
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompCommonClient.DEFAULT_RESPONSE_QUEUE;
 
 import java.io.IOException;
+import java.net.ConnectException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -139,6 +143,54 @@ public class ReactorTestCase {
         closeWithTimeout(listener.close());
     }
 
+    @Test
+    public void testConnectAsync() throws InterruptedException, ExecutionException, TimeoutException,
+            ClientConnectionException {
+        int port = FreePorts.findFreePort();
+        ReactorListener listener = this.reactorForListener.createListener(HOSTNAME,
+                port,
+                client -> client.addEventListener(client::sendMessage)).get(TIMEOUT_SEC, TimeUnit.SECONDS);
+
+        ReactorClient client = this.reactorForClient.createClient(HOSTNAME, port);
+        client.setClientPolicy(new StompClientPolicy(180000,
+                0,
+                10000,
+                IOException.class,
+                DEFAULT_REQUEST_QUEUE,
+                DEFAULT_RESPONSE_QUEUE));
+
+        CompletableFuture<Void> future = client.connectAsync();
+        assertSame(future, client.connectAsync());
+        future.get(TIMEOUT_SEC, TimeUnit.SECONDS);
+
+        assertTrue(client.isOpen());
+        assertFalse(client.isConnecting());
+        assertTrue(client.connectAsync().isDone());
+
+        closeWithTimeout(client.close());
+        closeWithTimeout(listener.close());
+    }
+
+    @Test
+    public void testConnectAsyncRefused() throws InterruptedException, TimeoutException, ClientConnectionException {
+        ReactorClient client = this.reactorForClient.createClient(HOSTNAME, FreePorts.findFreePort());
+        client.setClientPolicy(new StompClientPolicy(180000,
+                0,
+                10000,
+                IOException.class,
+                DEFAULT_REQUEST_QUEUE,
+                DEFAULT_RESPONSE_QUEUE));
+
+        try {
+            client.connectAsync().get(TIMEOUT_SEC, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ConnectException);
+        }
+        assertFalse(client.isOpen());
+        assertFalse(client.isConnecting());
+    }
+
     private static void closeWithTimeout(Future<Void> closeTask) throws ExecutionException, InterruptedException, TimeoutException {
         closeTask.get(2, TimeUnit.SECONDS);
     }
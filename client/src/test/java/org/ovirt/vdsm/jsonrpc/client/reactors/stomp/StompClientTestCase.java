@@ -2,10 +2,10 @@ package org.ovirt.vdsm.jsonrpc.client.reactors.stomp;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.SSLStompClientTestCase.generateRandomMessage;
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompCommonClient.DEFAULT_REQUEST_QUEUE;
 import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompCommonClient.DEFAULT_RESPONSE_QUEUE;
-import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.UTF8;
 
 import java.io.IOException;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -17,16 +17,33 @@ import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
 import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
 import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient;
 import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorListener;
+import org.ovirt.vdsm.jsonrpc.client.utils.PayloadFormat;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+@RunWith(Parameterized.class)
 public class StompClientTestCase {
     private static final int TIMEOUT_SEC = 20;
     private static final String HOSTNAME = "localhost";
     private StompReactor listeningReactor;
     private StompReactor sendingReactor;
 
+    @Parameter
+    public PayloadFormat format;
+
+    @Parameters(name = "{0}")
+    public static Object[] formats() {
+        return PayloadFormat.values();
+    }
+
     @Before
     public void setUp() throws IOException {
         this.listeningReactor = new StompReactor();
@@ -49,31 +66,84 @@ public class StompClientTestCase {
         testEchoMessage(generateRandomMessage(524288));
     }
 
+    @Test
+    public void testCompressedMessage() throws InterruptedException, ExecutionException, ClientConnectionException,
+            IOException {
+        StringBuilder message = new StringBuilder("[");
+        for (int i = 0; i < 10000; i++) {
+            message.append("{\"vmId\": \"").append(i).append("\", \"status\": \"Up\"},");
+        }
+        message.append("{}]");
+        JsonNode json = PayloadFormat.JSON.getMapper().readTree(message.toString());
+        final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(1);
+        Future<ReactorListener> futureListener =
+                this.listeningReactor.createListener(HOSTNAME,
+                        0,
+                        client -> {
+                            client.getRetryPolicy().setCompressionThreshold(1024);
+                            client.getRetryPolicy().setPayloadFormat(this.format);
+                            client.addEventListener(client::sendMessage);
+                        });
+        ReactorListener listener = futureListener.get();
+        StompClientPolicy policy = createPolicy();
+        policy.setCompressionThreshold(1024);
+        StompCommonClient client = (StompCommonClient) this.sendingReactor.createClient(HOSTNAME, listener.getPort());
+        client.setClientPolicy(policy);
+        client.addEventListener(queue::add);
+        client.connect();
+
+        client.sendMessage(client.getPayloadFormat().toByteArray(json));
+        byte[] response = queue.poll(TIMEOUT_SEC, TimeUnit.SECONDS);
+
+        client.close();
+        listener.close();
+
+        assertNotNull(response);
+        assertEquals(json, PayloadFormat.readTree(response));
+        assertTrue(client.isCompressing());
+        assertTrue(client.getReceivedBytes() < message.length() / 4);
+        assertTrue(client.getFlushedBytes() < message.length() / 4);
+    }
+
+    private StompClientPolicy createPolicy() {
+        StompClientPolicy policy =
+                new StompClientPolicy(180000, 0, 1000000, DEFAULT_REQUEST_QUEUE, DEFAULT_RESPONSE_QUEUE);
+        policy.setPayloadFormat(this.format);
+        return policy;
+    }
+
     private void testEchoMessage(String message) throws ClientConnectionException, InterruptedException,
             ExecutionException {
         final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(1);
         Future<ReactorListener> futureListener =
                 this.listeningReactor.createListener(HOSTNAME,
                         0,
-                        client -> client.addEventListener(client::sendMessage)
-                );
+                        client -> {
+                            client.getRetryPolicy().setPayloadFormat(this.format);
+                            client.addEventListener(client::sendMessage);
+                        });
 
         ReactorListener listener = futureListener.get();
         assertNotNull(listener);
 
         ReactorClient client = this.sendingReactor.createClient(HOSTNAME, listener.getPort());
-        client.setClientPolicy(
-                new StompClientPolicy(180000, 0, 1000000, DEFAULT_REQUEST_QUEUE, DEFAULT_RESPONSE_QUEUE));
+        client.setClientPolicy(createPolicy());
         client.addEventListener(queue::add);
         client.connect();
 
-        client.sendMessage(message.getBytes(UTF8));
+        assertEquals(this.format, client.getPayloadFormat());
+        client.sendMessage(this.format.toByteArray(TextNode.valueOf(message)));
         byte[] response = queue.poll(TIMEOUT_SEC, TimeUnit.SECONDS);
 
         client.close();
         listener.close();
 
         assertNotNull(response);
-        assertEquals(message, new String(response, UTF8));
+        assertEquals(this.format, PayloadFormat.detect(response));
+        try {
+            assertEquals(message, PayloadFormat.readTree(response).asText());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
     }
 }
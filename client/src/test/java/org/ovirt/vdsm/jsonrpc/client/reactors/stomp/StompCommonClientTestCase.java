@@ -0,0 +1,53 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors.stomp;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.ovirt.vdsm.jsonrpc.testutils.MockReactors.mockReactor;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.ovirt.vdsm.jsonrpc.client.reactors.Reactor;
+
+public class StompCommonClientTestCase {
+
+    @Test
+    public void testBurstSchedulesSingleUpdate() {
+        Reactor reactor = mockReactor();
+        StompClient client = new StompClient(reactor, mock(Selector.class), "localhost", 0);
+
+        for (int i = 0; i < 100; i++) {
+            client.send(new byte[] { 'a' });
+        }
+        client.sendNow(new byte[] { 'b' });
+
+        verify(reactor, times(1)).queueFuture(any());
+    }
+
+    @Test
+    public void testUpdateScheduledAfterPendingOneRuns() {
+        Reactor reactor = mockReactor();
+        SelectionKey selectionKey = mock(SelectionKey.class);
+        StompClient client = new StompClient(reactor, mock(Selector.class), "localhost", 0) {
+            @Override
+            public SelectionKey getSelectionKey() {
+                return selectionKey;
+            }
+        };
+        ArgumentCaptor<Future<?>> captor = ArgumentCaptor.forClass(Future.class);
+
+        client.send(new byte[] { 'a' });
+        verify(reactor, times(1)).queueFuture(captor.capture());
+        ((FutureTask<?>) captor.getValue()).run();
+        verify(selectionKey).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+
+        client.send(new byte[] { 'b' });
+        verify(reactor, times(2)).queueFuture(any());
+    }
+}
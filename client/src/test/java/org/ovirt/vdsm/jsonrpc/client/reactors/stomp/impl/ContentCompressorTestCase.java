@@ -0,0 +1,60 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.UTF8;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
+
+public class ContentCompressorTestCase {
+    private static final int MAX_LENGTH = 1024 * 1024;
+
+    @Test
+    public void testRoundTrip() throws ClientConnectionException {
+        ContentCompressor compressor = new ContentCompressor();
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'a');
+        byte[] content = new String(chars).getBytes(UTF8);
+
+        byte[] compressed = compressor.deflate(content);
+
+        assertTrue(compressed.length < content.length / 100);
+        assertArrayEquals(content, compressor.inflate(ByteBuffer.wrap(compressed), content.length));
+        // state is reset between frames
+        assertArrayEquals("next".getBytes(UTF8),
+                compressor.inflate(ByteBuffer.wrap(compressor.deflate("next".getBytes(UTF8))), MAX_LENGTH));
+    }
+
+    @Test(expected = ClientConnectionException.class)
+    public void testTruncatedContent() throws ClientConnectionException {
+        ContentCompressor compressor = new ContentCompressor();
+        byte[] compressed = compressor.deflate("{\"jsonrpc\": \"2.0\", \"result\": true}".getBytes(UTF8));
+
+        compressor.inflate(ByteBuffer.wrap(compressed, 0, compressed.length / 2), MAX_LENGTH);
+    }
+
+    @Test(expected = ClientConnectionException.class)
+    public void testInvalidContent() throws ClientConnectionException {
+        new ContentCompressor().inflate(ByteBuffer.wrap("plain".getBytes(UTF8)), MAX_LENGTH);
+    }
+
+    @Test
+    public void testMaxLength() throws ClientConnectionException {
+        ContentCompressor compressor = new ContentCompressor();
+        byte[] content = new byte[MAX_LENGTH + 1];
+        byte[] compressed = compressor.deflate(content);
+
+        try {
+            compressor.inflate(ByteBuffer.wrap(compressed), MAX_LENGTH);
+            fail();
+        } catch (ClientConnectionException expected) {
+        }
+        // failed frame does not affect the next one
+        assertArrayEquals(content, compressor.inflate(ByteBuffer.wrap(compressed), content.length));
+    }
+}
@@ -0,0 +1,212 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_DESTINATION;
+import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.UTF8;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
+import org.ovirt.vdsm.jsonrpc.client.reactors.BufferPool;
+import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient.ContentConsumer;
+
+public class FrameDecoderTestCase {
+
+    private static byte[] frame(String content) {
+        return new Message().message().withHeader(HEADER_DESTINATION, "queue").withContent(content.getBytes(UTF8))
+                .build();
+    }
+
+    private static List<Message> feed(FrameDecoder decoder, byte[] data) throws ClientConnectionException {
+        List<Message> messages = new ArrayList<>();
+        int offset = 0;
+        while (offset < data.length) {
+            ByteBuffer buffer = decoder.buffer();
+            int length = Math.min(buffer.remaining(), data.length - offset);
+            buffer.put(data, offset, length);
+            offset += length;
+            Message message;
+            while ((message = decoder.next()) != null) {
+                // body is valid only until the decoder is used again
+                message.getContent();
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        ByteBuffer buffer = ByteBuffer.allocate(Arrays.stream(arrays).mapToInt(a -> a.length).sum());
+        Arrays.stream(arrays).forEach(buffer::put);
+        return buffer.array();
+    }
+
+    @Test
+    public void testFramesAndHeartbeatsInSingleRead() throws ClientConnectionException {
+        FrameDecoder decoder = new FrameDecoder();
+        byte[] data = concat("\n".getBytes(UTF8),
+                frame("first"),
+                "\n\r\n".getBytes(UTF8),
+                "CONNECTED\nheart-beat:0,0\n\n\000".getBytes(UTF8),
+                frame("second"));
+
+        List<Message> messages = feed(decoder, data);
+
+        assertEquals(3, messages.size());
+        assertArrayEquals("first".getBytes(UTF8), messages.get(0).getContent());
+        assertEquals("queue", messages.get(0).getHeaders().get(HEADER_DESTINATION));
+        assertEquals("CONNECTED", messages.get(1).getCommand());
+        assertEquals("0,0", messages.get(1).getHeaders().get(Message.HEADER_HEART_BEAT));
+        assertEquals(0, messages.get(1).getContent().length);
+        assertArrayEquals("second".getBytes(UTF8), messages.get(2).getContent());
+        assertEquals(3, decoder.getHeartbeats());
+    }
+
+    @Test
+    public void testFrameSplitAcrossReads() throws ClientConnectionException {
+        FrameDecoder decoder = new FrameDecoder();
+        byte[] data = concat(frame("{\"jsonrpc\": \"2.0\", \"result\": true}"), frame("next"));
+        List<Message> messages = new ArrayList<>();
+
+        for (byte b : data) {
+            messages.addAll(feed(decoder, new byte[] { b }));
+        }
+
+        assertEquals(2, messages.size());
+        assertArrayEquals("{\"jsonrpc\": \"2.0\", \"result\": true}".getBytes(UTF8), messages.get(0).getContent());
+        assertArrayEquals("next".getBytes(UTF8), messages.get(1).getContent());
+    }
+
+    @Test
+    public void testFrameWithoutContentLength() throws ClientConnectionException {
+        FrameDecoder decoder = new FrameDecoder();
+
+        List<Message> messages = feed(decoder, "ERROR\r\nmessage:failed\r\n\r\nbody\000".getBytes(UTF8));
+
+        assertEquals(1, messages.size());
+        assertEquals("ERROR", messages.get(0).getCommand());
+        assertEquals("failed", messages.get(0).getHeaders().get(Message.HEADER_MESSAGE));
+        assertArrayEquals("body".getBytes(UTF8), messages.get(0).getContent());
+    }
+
+    @Test
+    public void testBodyIsSlice() throws ClientConnectionException {
+        FrameDecoder decoder = new FrameDecoder();
+        byte[] frame = frame("slice");
+        ByteBuffer buffer = decoder.buffer();
+        buffer.put(frame);
+
+        Message message = decoder.next();
+
+        assertNotNull(message);
+        assertNull(decoder.next());
+        ByteBuffer body = message.getBody();
+        assertEquals(5, body.remaining());
+        // content is not copied until requested
+        buffer.array()[frame.length - 6] = 'S';
+        assertEquals('S', body.get(0));
+        assertArrayEquals("Slice".getBytes(UTF8), message.getContent());
+    }
+
+    @Test
+    public void testBigFrame() throws ClientConnectionException {
+        FrameDecoder decoder = new FrameDecoder(new BufferPool(), 16);
+        char[] content = new char[100000];
+        Arrays.fill(content, 'a');
+
+        List<Message> messages = feed(decoder, frame(new String(content)));
+
+        assertEquals(1, messages.size());
+        assertEquals(content.length, messages.get(0).getContent().length);
+    }
+
+    @Test
+    public void testBufferReleasedWhenDecoded() throws ClientConnectionException {
+        BufferPool pool = new BufferPool();
+        FrameDecoder decoder = new FrameDecoder(pool, FrameDecoder.DEFAULT_BUFFER_SIZE);
+        byte[] frame = frame("released");
+
+        decoder.buffer().put(frame, 0, 10);
+        assertNull(decoder.next());
+        decoder.release();
+        assertEquals(0, pool.getPooled());
+
+        decoder.buffer().put(frame, 10, frame.length - 10);
+        assertNotNull(decoder.next());
+        decoder.release();
+        assertEquals(1, pool.getPooled());
+        assertNull(decoder.next());
+    }
+
+    @Test
+    public void testStreamedContent() throws ClientConnectionException {
+        BufferPool pool = new BufferPool();
+        FrameDecoder decoder = new FrameDecoder(pool, 512);
+        char[] content = new char[10000];
+        Arrays.fill(content, 'a');
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        AtomicInteger completed = new AtomicInteger();
+        decoder.setContentConsumers(message -> "queue".equals(message.getHeaders().get(HEADER_DESTINATION))
+                ? new ContentConsumer() {
+
+                    @Override
+                    public void accept(byte[] array, int offset, int length) {
+                        streamed.write(array, offset, length);
+                    }
+
+                    @Override
+                    public void complete() {
+                        completed.incrementAndGet();
+                    }
+                }
+                : null);
+
+        List<Message> messages = feed(decoder, concat(frame(new String(content)),
+                "ERROR\nmessage:failed\ncontent-length:4\n\nbody\000".getBytes(UTF8)));
+
+        assertEquals(1, messages.size());
+        assertEquals("ERROR", messages.get(0).getCommand());
+        assertEquals(1, completed.get());
+        assertArrayEquals(new String(content).getBytes(UTF8), streamed.toByteArray());
+        // the buffer does not grow to hold streamed content
+        assertEquals(0, pool.getDropped());
+        assertEquals(1, pool.getMisses());
+    }
+
+    @Test(expected = ClientConnectionException.class)
+    public void testUnknownCommand() throws ClientConnectionException {
+        feed(new FrameDecoder(), "UNKNOWN\n\n\000".getBytes(UTF8));
+    }
+
+    @Test(expected = ClientConnectionException.class)
+    public void testContentLengthOverflow() throws ClientConnectionException {
+        FrameDecoder decoder = new FrameDecoder();
+        feed(decoder, ("MESSAGE\ncontent-length:" + (Integer.MAX_VALUE - 1) + "\n\n").getBytes(UTF8));
+    }
+
+    @Test
+    public void testMaxFrameLength() throws ClientConnectionException {
+        FrameDecoder decoder = new FrameDecoder(new BufferPool(), 16);
+        decoder.setMaxFrameLength(64);
+        assertEquals(1, feed(decoder, frame("short")).size());
+
+        char[] content = new char[64];
+        Arrays.fill(content, 'a');
+        byte[] unterminated = ("MESSAGE\n\n" + new String(content)).getBytes(UTF8);
+        try {
+            feed(decoder, unterminated);
+            fail("Frame without content length has to be limited");
+        } catch (ClientConnectionException expected) {
+        }
+    }
+}
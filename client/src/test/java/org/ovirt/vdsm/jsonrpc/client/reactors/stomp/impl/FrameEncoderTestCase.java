@@ -0,0 +1,86 @@
+package org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_CORRELATION_ID;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_DESTINATION;
+import static org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message.HEADER_REPLY_TO;
+import static org.ovirt.vdsm.jsonrpc.client.utils.JsonUtils.UTF8;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
+import org.ovirt.vdsm.jsonrpc.client.reactors.BufferPool;
+
+public class FrameEncoderTestCase {
+
+    private static byte[] toArray(ByteBuffer[] frame) {
+        ByteBuffer result = ByteBuffer.allocate(Arrays.stream(frame).mapToInt(ByteBuffer::remaining).sum());
+        Arrays.stream(frame).forEach(b -> result.put(b.duplicate()));
+        return result.array();
+    }
+
+    private static Message decode(ByteBuffer[] frame) throws ClientConnectionException {
+        FrameDecoder decoder = new FrameDecoder();
+        decoder.buffer().put(toArray(frame));
+        return decoder.next();
+    }
+
+    @Test
+    public void testRequest() throws ClientConnectionException {
+        FrameEncoder encoder = new FrameEncoder();
+        byte[] content = "{\"jsonrpc\": \"2.0\", \"method\": \"Host.ping\", \"id\": \"ąę\"}".getBytes(UTF8);
+        byte[] prefix = FrameEncoder.prefix("SEND", HEADER_DESTINATION, "requests", HEADER_REPLY_TO, "responses");
+
+        ByteBuffer[] frame = encoder.encode(prefix, Collections.singletonMap(HEADER_CORRELATION_ID, "żółw"), content);
+
+        assertEquals(3, frame.length);
+        assertSame(content, frame[1].array());
+        Message message = decode(frame);
+        assertNotNull(message);
+        assertEquals("SEND", message.getCommand());
+        assertEquals("requests", message.getHeaders().get(HEADER_DESTINATION));
+        assertEquals("responses", message.getHeaders().get(HEADER_REPLY_TO));
+        assertEquals("żółw", message.getHeaders().get(HEADER_CORRELATION_ID));
+        assertEquals(content.length, message.getContentLength());
+        assertArrayEquals(content, message.getContent());
+    }
+
+    @Test
+    public void testSameAsBuild() {
+        Message message = new Message().subscribe().withHeader(Message.HEADER_ID, "1").withHeader(HEADER_DESTINATION,
+                "queue");
+
+        assertArrayEquals(message.build(), toArray(new FrameEncoder().encode(message)));
+    }
+
+    @Test
+    public void testHeaderBufferReused() {
+        BufferPool pool = new BufferPool();
+        FrameEncoder encoder = new FrameEncoder(pool);
+        ByteBuffer[] frame = encoder.encode(new Message().message().withContent("a".getBytes(UTF8)));
+        encoder.release(frame);
+
+        ByteBuffer[] next = encoder.encode(new Message().message());
+
+        assertSame(frame[0], next[0]);
+        assertEquals(1, pool.getHits());
+        encoder.release(new ByteBuffer[] { ByteBuffer.allocate(512) });
+        assertEquals(0, pool.getPooled());
+    }
+
+    @Test
+    public void testLongHeaders() throws ClientConnectionException {
+        char[] value = new char[4096];
+        Arrays.fill(value, 'v');
+
+        ByteBuffer[] frame = new FrameEncoder().encode(new Message().error().withHeader("long", new String(value)));
+
+        assertEquals(new String(value), decode(frame).getHeaders().get("long"));
+    }
+}
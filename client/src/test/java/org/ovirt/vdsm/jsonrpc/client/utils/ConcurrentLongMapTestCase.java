@@ -0,0 +1,56 @@
+package org.ovirt.vdsm.jsonrpc.client.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ConcurrentLongMapTestCase {
+
+    @Test
+    public void testPutGetRemove() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+
+        assertNull(map.put(1, "one"));
+        assertEquals("one", map.put(1, "first"));
+        assertEquals("first", map.putIfAbsent(1, "other"));
+        assertNull(map.putIfAbsent(2, "two"));
+
+        assertEquals("first", map.get(1));
+        assertTrue(map.containsKey(2));
+        assertFalse(map.containsKey(3));
+        assertEquals(2, map.size());
+
+        assertEquals("first", map.remove(1));
+        assertNull(map.remove(1));
+        assertNull(map.get(1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+        // narrow key range makes collisions, resizing and removals of probed entries frequent
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            long key = random.nextInt(5000) - 100;
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = -100; key < 4900; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+}
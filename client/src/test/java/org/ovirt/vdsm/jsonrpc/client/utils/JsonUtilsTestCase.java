@@ -0,0 +1,147 @@
+package org.ovirt.vdsm.jsonrpc.client.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.ovirt.vdsm.jsonrpc.client.utils.PayloadFormatTestCase.createResponse;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
+import org.ovirt.vdsm.jsonrpc.client.ResponseDecomposer;
+import org.ovirt.vdsm.jsonrpc.testutils.Performance;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+public class JsonUtilsTestCase {
+    private static final ObjectMapper MAPPER =
+            new ObjectMapper().configure(DeserializationFeature.USE_JAVA_ARRAY_FOR_JSON_ARRAY, true);
+    private static final int TIMES = 2000;
+
+    private static Object roundTrip(JsonNode node) throws IOException {
+        return MAPPER.readValue(MAPPER.writeValueAsBytes(node), Object.class);
+    }
+
+    private static void assertSameValue(Object expected, Object actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertEquals(expected.getClass(), actual.getClass());
+        if (expected instanceof Object[]) {
+            Object[] expectedArray = (Object[]) expected;
+            Object[] actualArray = (Object[]) actual;
+            assertEquals(expectedArray.length, actualArray.length);
+            for (int i = 0; i < expectedArray.length; i++) {
+                assertSameValue(expectedArray[i], actualArray[i]);
+            }
+        } else if (expected instanceof Map) {
+            Map<?, ?> expectedMap = (Map<?, ?>) expected;
+            Map<?, ?> actualMap = (Map<?, ?>) actual;
+            assertEquals(expectedMap.keySet(), actualMap.keySet());
+            for (Object key : expectedMap.keySet()) {
+                assertSameValue(expectedMap.get(key), actualMap.get(key));
+            }
+        } else {
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testSameAsRoundTrip() throws IOException {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("int", 1);
+        node.put("smallLong", 2L);
+        node.put("long", 10737418240L);
+        node.put("bigInteger", new BigInteger("123456789012345678901234567890"));
+        node.put("smallBigInteger", BigInteger.TEN);
+        node.put("double", 0.1);
+        node.put("float", 0.1f);
+        node.put("decimal", new BigDecimal("1.50"));
+        node.put("text", "żółw");
+        node.put("boolean", true);
+        node.putNull("null");
+        node.put("binary", new byte[] { 1, 2, 3 });
+        ArrayNode array = node.putArray("array");
+        array.add(1).addNull().addArray().add("nested");
+        array.addObject().putObject("empty");
+        node.set("response", createResponse(5));
+
+        assertSameValue(roundTrip(node), JsonUtils.toJavaValue(node));
+        assertSameValue(roundTrip(array), JsonUtils.toJavaValue(array));
+        assertSameValue(roundTrip(TextNode.valueOf("text")), JsonUtils.toJavaValue(TextNode.valueOf("text")));
+    }
+
+    @Test
+    public void testMapValues() {
+        JsonNode node = createResponse(1);
+        Map<String, Object> map = JsonUtils.mapValues(node);
+
+        assertEquals(HashMap.class, map.getClass());
+        assertEquals(LinkedHashMap.class, ((Object[]) map.get("result"))[0].getClass());
+        assertNull(JsonUtils.mapValues(null));
+        assertNull(JsonUtils.mapValues(TextNode.valueOf("text")));
+    }
+
+    @Test
+    public void testRawResult() throws IOException {
+        byte[] content = PayloadFormat.JSON.toByteArray(createResponse(5).get("result"));
+        JsonSlice slice = new JsonSlice(content, 0, content.length);
+        JsonRpcResponse lazy = new JsonRpcResponse(slice, TextNode.valueOf("1"));
+        JsonRpcResponse tree = new JsonRpcResponse(MAPPER.readTree(content), null, TextNode.valueOf("1"));
+
+        Object decoded = new ResponseDecomposer(lazy).decomposeResponse(Object[].class);
+
+        assertFalse(slice.isParsed());
+        assertSameValue(new ResponseDecomposer(tree).decomposeResponse(Object[].class), decoded);
+        assertSameValue(roundTrip(tree.getResult()), decoded);
+    }
+
+    @Test
+    @Category(Performance.class)
+    public void testDecodingCost() throws IOException {
+        JsonNode result = createResponse(500).get("result");
+        byte[] content = PayloadFormat.JSON.toByteArray(result);
+        JsonRpcResponse response = new JsonRpcResponse(result, null, TextNode.valueOf("1"));
+        for (int i = 0; i < TIMES; i++) {
+            roundTrip(result);
+            JsonUtils.toJavaValue(result);
+            new ResponseDecomposer(new JsonRpcResponse(new JsonSlice(content, 0, content.length), null))
+                    .decomposeResponse(Object[].class);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < TIMES; i++) {
+            roundTrip(result);
+        }
+        System.out.println("Round trip " + (System.nanoTime() - start) / TIMES + " ns");
+        start = System.nanoTime();
+        for (int i = 0; i < TIMES; i++) {
+            new ResponseDecomposer(response).decomposeResponse(Object[].class);
+        }
+        System.out.println("Tree conversion " + (System.nanoTime() - start) / TIMES + " ns");
+        start = System.nanoTime();
+        for (int i = 0; i < TIMES; i++) {
+            MAPPER.readTree(content);
+        }
+        System.out.println("Tree parsing " + (System.nanoTime() - start) / TIMES + " ns");
+        start = System.nanoTime();
+        for (int i = 0; i < TIMES; i++) {
+            new ResponseDecomposer(new JsonRpcResponse(new JsonSlice(content, 0, content.length), null))
+                    .decomposeResponse(Object[].class);
+        }
+        System.out.println("Raw content decoding " + (System.nanoTime() - start) / TIMES + " ns");
+    }
+}
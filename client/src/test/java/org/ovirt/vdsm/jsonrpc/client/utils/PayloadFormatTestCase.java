@@ -0,0 +1,179 @@
+package org.ovirt.vdsm.jsonrpc.client.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcRequest;
+import org.ovirt.vdsm.jsonrpc.client.RequestBuilder;
+import org.ovirt.vdsm.jsonrpc.testutils.Performance;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class PayloadFormatTestCase {
+    private static final int TIMES = 2000;
+
+    static JsonNode createResponse(int vms) {
+        ObjectNode response = PayloadFormat.JSON.getMapper().createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.put("id", "e2b5d4a4-4f0f-4d3a-9d0c-7b1b8f0d8a11");
+        ArrayNode result = response.putArray("result");
+        for (int i = 0; i < vms; i++) {
+            ObjectNode vm = result.addObject();
+            vm.put("vmId", "7b1b8f0d-8a11-4d3a-9d0c-" + String.format("%012d", i));
+            vm.put("status", "Up");
+            vm.put("cpuUser", 1.5 * i);
+            vm.put("cpuSys", 0.25 * i);
+            vm.put("memUsage", i % 100);
+            vm.put("elapsedTime", 123456L + i);
+            vm.put("monitorResponse", 0);
+            ObjectNode disk = vm.putObject("disks").putObject("vda");
+            disk.put("readRate", 512.0 * i);
+            disk.put("writeRate", 1024.0 * i);
+            disk.put("truesize", 10737418240L);
+        }
+        return response;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        JsonNode response = createResponse(10);
+        for (PayloadFormat format : PayloadFormat.values()) {
+            byte[] content = format.toByteArray(response);
+
+            assertEquals(format, PayloadFormat.detect(content));
+            // numbers are parsed into the smallest fitting type
+            assertEquals(response.toString(), PayloadFormat.readTree(content).toString());
+        }
+    }
+
+    private static JsonRpcRequest createRequest(int devices) {
+        Map<String, Object> vm = new HashMap<>();
+        vm.put("vmId", "7b1b8f0d-8a11-4d3a-9d0c-000000000001");
+        vm.put("memSize", 4096);
+        vm.put("custom", Collections.singletonMap("password", "żółw"));
+        Object[] list = new Object[devices];
+        for (int i = 0; i < devices; i++) {
+            list[i] = Collections.singletonMap("device", "disk" + i);
+        }
+        vm.put("devices", list);
+        return new RequestBuilder("VM.create").withParameter("vmID", "1").withParameter("vmParams", vm).build();
+    }
+
+    @Test
+    public void testRequestEncoding() throws IOException {
+        JsonRpcRequest request = createRequest(3);
+        JsonRpcRequest empty = new JsonRpcRequest(null, null, null);
+        List<JsonRpcRequest> batch = Arrays.asList(request, empty);
+        for (PayloadFormat format : PayloadFormat.values()) {
+            assertArrayEquals(format.toByteArray(request.toJson()), format.toByteArray(request));
+            assertArrayEquals(format.toByteArray(empty.toJson()), format.toByteArray(empty));
+            JsonNode tree = format.getMapper().createArrayNode().add(request.toJson()).add(empty.toJson());
+            assertArrayEquals(format.toByteArray(tree), format.toByteArray(batch));
+        }
+    }
+
+    @Test
+    public void testRequestEncodedOnce() throws IOException {
+        JsonRpcRequest request = createRequest(1);
+        byte[] json = request.toByteArray(PayloadFormat.JSON);
+
+        assertSame(json, request.toByteArray(PayloadFormat.JSON));
+        byte[] smile = request.toByteArray(PayloadFormat.SMILE);
+        assertEquals(PayloadFormat.SMILE, PayloadFormat.detect(smile));
+        assertEquals(PayloadFormat.readTree(json), PayloadFormat.readTree(smile));
+
+        request.setId(TextNode.valueOf("1"));
+        byte[] changed = request.toByteArray(PayloadFormat.SMILE);
+        assertNotSame(smile, changed);
+        assertEquals("1", PayloadFormat.readTree(changed).get("id").asText());
+    }
+
+    @Test
+    public void testDetect() {
+        assertEquals(PayloadFormat.JSON, PayloadFormat.detect(new byte[0]));
+        assertEquals(PayloadFormat.JSON, PayloadFormat.detect(":)".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(PayloadFormat.JSON, PayloadFormat.detect("{}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testFromContentType() {
+        assertEquals(PayloadFormat.JSON, PayloadFormat.fromContentType("application/json"));
+        assertEquals(PayloadFormat.JSON, PayloadFormat.fromContentType("application/json; charset=utf-8"));
+        assertEquals(PayloadFormat.SMILE, PayloadFormat.fromContentType(" Application/X-Jackson-Smile "));
+        assertNull(PayloadFormat.fromContentType("application/cbor"));
+        assertNull(PayloadFormat.fromContentType(null));
+    }
+
+    @Test
+    @Category(Performance.class)
+    public void testEncodingCost() throws IOException {
+        JsonNode response = createResponse(500);
+        for (PayloadFormat format : PayloadFormat.values()) {
+            byte[] content = format.toByteArray(response);
+            // warm up
+            for (int i = 0; i < TIMES; i++) {
+                PayloadFormat.readTree(content);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < TIMES; i++) {
+                PayloadFormat.readTree(content);
+            }
+            long parse = (System.nanoTime() - start) / TIMES;
+            start = System.nanoTime();
+            for (int i = 0; i < TIMES; i++) {
+                format.toByteArray(response);
+            }
+            long encode = (System.nanoTime() - start) / TIMES;
+            System.out.println(format + " bytes " + content.length + ", parse " + parse + " ns, encode " + encode
+                    + " ns");
+            assertTrue(content.length > 0);
+        }
+    }
+
+    @Test
+    @Category(Performance.class)
+    public void testRequestEncodingCost() {
+        JsonRpcRequest request = createRequest(100);
+        for (PayloadFormat format : PayloadFormat.values()) {
+            // warm up
+            for (int i = 0; i < TIMES; i++) {
+                format.toByteArray(request.toJson());
+                format.toByteArray(request);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < TIMES; i++) {
+                format.toByteArray(request.toJson());
+            }
+            long tree = (System.nanoTime() - start) / TIMES;
+            start = System.nanoTime();
+            for (int i = 0; i < TIMES; i++) {
+                format.toByteArray(request);
+            }
+            long streamed = (System.nanoTime() - start) / TIMES;
+            start = System.nanoTime();
+            for (int i = 0; i < TIMES; i++) {
+                request.toByteArray(format);
+            }
+            long retried = (System.nanoTime() - start) / TIMES;
+            System.out.println(format + " request tree " + tree + " ns, streamed " + streamed + " ns, retried "
+                    + retried + " ns");
+        }
+    }
+}
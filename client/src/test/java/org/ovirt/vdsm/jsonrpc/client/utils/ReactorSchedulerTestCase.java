@@ -0,0 +1,108 @@
+package org.ovirt.vdsm.jsonrpc.client.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ReactorSchedulerTestCase {
+
+    private static FutureTask<Void> task(Runnable runnable) {
+        return new FutureTask<>(runnable, null);
+    }
+
+    @Test
+    public void testRunsInOrderWithinBudget() {
+        ReactorScheduler scheduler = new ReactorScheduler(16, 4, 0);
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            final int value = i;
+            scheduler.queueFuture(task(() -> order.add(value)));
+        }
+        assertEquals(6, scheduler.getQueueDepth());
+
+        assertTrue(scheduler.performPendingOperations());
+        assertEquals(List.of(0, 1, 2, 3), order);
+        assertEquals(2, scheduler.getQueueDepth());
+
+        assertFalse(scheduler.performPendingOperations());
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), order);
+        assertEquals(6, scheduler.getExecutedTasks());
+    }
+
+    @Test
+    public void testRejectWhenFull() {
+        ReactorScheduler scheduler = new ReactorScheduler(4, 16, TimeUnit.MILLISECONDS.toNanos(1));
+        for (int i = 0; i < 4; i++) {
+            scheduler.queueFuture(task(() -> {}));
+        }
+
+        try {
+            scheduler.queueFuture(task(() -> {}));
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+        assertEquals(1, scheduler.getRejectedTasks());
+        assertEquals(4, scheduler.getQueueDepth());
+
+        scheduler.performPendingOperations();
+        scheduler.queueFuture(task(() -> {}));
+        assertEquals(1, scheduler.getQueueDepth());
+    }
+
+    @Test
+    public void testConsumerDefersWhenFull() {
+        ReactorScheduler scheduler = new ReactorScheduler(2, 1, 0);
+        AtomicInteger count = new AtomicInteger();
+        scheduler.queueFuture(task(() -> {
+            for (int i = 0; i < 5; i++) {
+                scheduler.queueFuture(task(count::incrementAndGet));
+            }
+        }));
+
+        assertTrue(scheduler.performPendingOperations());
+        assertEquals(5, scheduler.getQueueDepth());
+        assertEquals(0, scheduler.getRejectedTasks());
+
+        while (scheduler.performPendingOperations()) {
+            assertEquals(0, scheduler.getRejectedTasks());
+        }
+        assertEquals(5, count.get());
+        assertEquals(6, scheduler.getExecutedTasks());
+    }
+
+    @Test
+    public void testMultipleProducers() throws InterruptedException {
+        final int producers = 4;
+        final int tasks = 10000;
+        ReactorScheduler scheduler = new ReactorScheduler(64, 32, TimeUnit.SECONDS.toNanos(10));
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int i = 0; i < producers; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < tasks; j++) {
+                    scheduler.queueFuture(task(count::incrementAndGet));
+                }
+                done.countDown();
+            }).start();
+        }
+
+        while (done.getCount() > 0 || scheduler.getQueueDepth() > 0) {
+            scheduler.performPendingOperations();
+        }
+
+        assertEquals(producers * tasks, count.get());
+        assertEquals(producers * tasks, scheduler.getExecutedTasks());
+        assertTrue(scheduler.getMaxLatency() >= scheduler.getAverageLatency());
+    }
+}
@@ -0,0 +1,153 @@
+package org.ovirt.vdsm.jsonrpc.client.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReactorTimerTestCase {
+
+    private static final long TICK = 10;
+    private static final int WHEEL_SIZE = 8;
+
+    private AtomicLong clock;
+    private ReactorTimer timer;
+    private List<String> fired;
+
+    @Before
+    public void setUp() {
+        this.clock = new AtomicLong(1000);
+        this.timer = new ReactorTimer(this.clock::get, TICK, WHEEL_SIZE);
+        this.fired = new ArrayList<>();
+    }
+
+    @Test
+    public void testExpireInOrder() {
+        // Given
+        this.timer.schedule(() -> this.fired.add("late"), 35);
+        this.timer.schedule(() -> this.fired.add("early"), 5);
+
+        // When
+        this.clock.addAndGet(4);
+        this.timer.expire();
+
+        // Then
+        assertTrue(this.fired.isEmpty());
+
+        // When
+        this.clock.addAndGet(1);
+        this.timer.expire();
+
+        // Then
+        assertEquals(List.of("early"), this.fired);
+
+        // When
+        this.clock.addAndGet(30);
+        this.timer.expire();
+
+        // Then
+        assertEquals(List.of("early", "late"), this.fired);
+        assertEquals(0, this.timer.size());
+    }
+
+    @Test
+    public void testExpireAfterFullRound() {
+        // Given
+        long round = TICK * WHEEL_SIZE;
+        this.timer.schedule(() -> this.fired.add("next round"), round + 15);
+        this.timer.schedule(() -> this.fired.add("this round"), 15);
+
+        // When
+        this.clock.addAndGet(20);
+        this.timer.expire();
+
+        // Then
+        assertEquals(List.of("this round"), this.fired);
+
+        // When
+        this.clock.addAndGet(round);
+        this.timer.expire();
+
+        // Then
+        assertEquals(List.of("this round", "next round"), this.fired);
+    }
+
+    @Test
+    public void testExpireAfterLongPause() {
+        // Given
+        for (int i = 0; i < 3 * WHEEL_SIZE; i++) {
+            this.timer.schedule(() -> this.fired.add("task"), i * TICK);
+        }
+
+        // When
+        this.clock.addAndGet(10 * TICK * WHEEL_SIZE);
+        int expired = this.timer.expire();
+
+        // Then
+        assertEquals(3 * WHEEL_SIZE, expired);
+        assertEquals(3 * WHEEL_SIZE, this.fired.size());
+    }
+
+    @Test
+    public void testCancel() {
+        // Given
+        ReactorTimer.Timeout timeout = this.timer.schedule(() -> this.fired.add("cancelled"), 10);
+        this.timer.schedule(() -> this.fired.add("kept"), 10);
+
+        // When
+        timeout.cancel();
+        this.clock.addAndGet(10);
+        this.timer.expire();
+
+        // Then
+        assertEquals(List.of("kept"), this.fired);
+        assertEquals(0, this.timer.size());
+    }
+
+    @Test
+    public void testRescheduleFromTask() {
+        // Given
+        this.timer.schedule(() -> {
+            this.fired.add("first");
+            this.timer.schedule(() -> this.fired.add("second"), 10);
+        }, 10);
+
+        // When
+        this.clock.addAndGet(10);
+        this.timer.expire();
+
+        // Then
+        assertEquals(List.of("first"), this.fired);
+        assertEquals(10, this.timer.nextDelay(1000));
+
+        // When
+        this.clock.addAndGet(10);
+        this.timer.expire();
+
+        // Then
+        assertEquals(List.of("first", "second"), this.fired);
+    }
+
+    @Test
+    public void testNextDelay() {
+        // Given
+        assertEquals(1000, this.timer.nextDelay(1000));
+        this.timer.schedule(() -> this.fired.add("task"), 37);
+        this.timer.schedule(() -> this.fired.add("far"), 10 * TICK * WHEEL_SIZE);
+
+        // Then
+        assertEquals(37, this.timer.nextDelay(1000));
+        assertEquals(20, this.timer.nextDelay(20));
+
+        // When
+        this.clock.addAndGet(50);
+
+        // Then
+        assertEquals(0, this.timer.nextDelay(1000));
+    }
+}
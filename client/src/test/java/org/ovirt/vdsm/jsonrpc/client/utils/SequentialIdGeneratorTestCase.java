@@ -0,0 +1,150 @@
+package org.ovirt.vdsm.jsonrpc.client.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.ovirt.vdsm.jsonrpc.client.JsonRpcRequest;
+import org.ovirt.vdsm.jsonrpc.client.RequestBuilder;
+import org.ovirt.vdsm.jsonrpc.testutils.Performance;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+public class SequentialIdGeneratorTestCase {
+    private static final int THREADS = 16;
+    private static final int TIMES = 100000;
+
+    @Test
+    public void testUniqueIds() throws Exception {
+        SequentialIdGenerator generator = new SequentialIdGenerator();
+        Set<Long> keys = ConcurrentHashMap.newKeySet();
+        Set<JsonNode> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    JsonNode id = generator.next();
+                    ids.add(id);
+                    keys.add(generator.toKey(id));
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        assertEquals(4000, ids.size());
+        assertEquals(4000, keys.size());
+    }
+
+    @Test
+    public void testKeyOfParsedId() throws Exception {
+        SequentialIdGenerator generator = new SequentialIdGenerator();
+        JsonNode id = generator.next();
+        JsonNode parsed = PayloadFormat.readTree(PayloadFormat.JSON.toByteArray(id));
+
+        assertEquals(TextNode.class, parsed.getClass());
+        assertEquals(id, parsed);
+        assertEquals(parsed, id);
+        assertEquals(id.hashCode(), parsed.hashCode());
+        assertEquals(1, generator.toKey(parsed));
+        assertEquals(-1, new SequentialIdGenerator().toKey(parsed));
+    }
+
+    @Test
+    public void testForeignIds() {
+        SequentialIdGenerator generator = new SequentialIdGenerator();
+        String prefix = generator.next().textValue();
+        prefix = prefix.substring(0, prefix.length() - 1);
+
+        assertEquals(-1, generator.toKey(null));
+        assertEquals(-1, generator.toKey(IntNode.valueOf(1)));
+        assertEquals(-1, generator.toKey(TextNode.valueOf(UUID.randomUUID().toString())));
+        assertEquals(-1, generator.toKey(TextNode.valueOf(prefix)));
+        assertEquals(-1, generator.toKey(TextNode.valueOf(prefix + "01")));
+        assertEquals(-1, generator.toKey(TextNode.valueOf(prefix + "A")));
+        assertEquals(-1, generator.toKey(TextNode.valueOf(prefix + "10000000000000000")));
+        assertEquals(0xa, generator.toKey(TextNode.valueOf(prefix + "a")));
+    }
+
+    @Test
+    public void testDefaultGenerator() {
+        JsonRpcRequest request = new RequestBuilder("Host.ping").build();
+
+        assertTrue(SequentialIdGenerator.getDefault().toKey(request.getId()) > 0);
+        assertNotEquals(request.getId(), new RequestBuilder("Host.ping").build().getId());
+    }
+
+    private static long measure(Supplier<JsonNode> generator) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < TIMES; i++) {
+                    generator.get();
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        return elapsed / (THREADS * TIMES);
+    }
+
+    @Test
+    @Category(Performance.class)
+    public void testGenerationCost() throws Exception {
+        SequentialIdGenerator generator = new SequentialIdGenerator();
+        Supplier<JsonNode> uuid = () -> TextNode.valueOf(UUID.randomUUID().toString());
+        for (int i = 0; i < 2; i++) {
+            System.out.println("Random UUID " + measure(uuid) + " ns, sequential "
+                    + measure(generator::next) + " ns per id with " + THREADS + " threads");
+        }
+
+        JsonNode[] uuids = new JsonNode[TIMES];
+        JsonNode[] sequential = new JsonNode[TIMES];
+        ConcurrentHashMap<Object, Object> byNode = new ConcurrentHashMap<>();
+        ConcurrentHashMap<Object, Object> byKey = new ConcurrentHashMap<>();
+        for (int i = 0; i < TIMES; i++) {
+            uuids[i] = uuid.get();
+            sequential[i] = generator.next();
+            byNode.put(uuids[i], uuids[i]);
+            byKey.put(generator.toKey(sequential[i]), sequential[i]);
+            // responses carry freshly parsed ids
+            uuids[i] = TextNode.valueOf(new String(uuids[i].textValue()));
+            sequential[i] = TextNode.valueOf(new String(sequential[i].textValue()));
+        }
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (JsonNode id : uuids) {
+                byNode.get(id);
+            }
+            long node = (System.nanoTime() - start) / TIMES;
+            start = System.nanoTime();
+            for (JsonNode id : sequential) {
+                byKey.get(generator.toKey(id));
+            }
+            long key = (System.nanoTime() - start) / TIMES;
+            System.out.println("Lookup by UUID node " + node + " ns, by sequence key " + key + " ns");
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.ovirt.vdsm.jsonrpc.testutils;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.ovirt.vdsm.jsonrpc.client.reactors.BufferPool;
+import org.ovirt.vdsm.jsonrpc.client.reactors.Reactor;
+import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorMetrics;
+
+/**
+ * Creates reactor mocks providing the resources clients obtain from their reactor.
+ */
+public class MockReactors {
+
+    public static Reactor mockReactor() {
+        Reactor reactor = mock(Reactor.class);
+        when(reactor.getBufferPool()).thenReturn(new BufferPool());
+        when(reactor.getMetrics()).thenReturn(ReactorMetrics.NOOP);
+        return reactor;
+    }
+}